@@ -10,11 +10,13 @@ import aima.core.environment.eightpuzzle.EightPuzzleBoard;
 import aima.core.environment.eightpuzzle.ManhattanHeuristicFunction;
 import aima.core.environment.eightpuzzle.MisplacedTilleHeuristicFunction;
 import aima.core.search.framework.Node;
+import aima.core.search.framework.PrioritySearch;
 import aima.core.search.framework.SearchAgent;
 import aima.core.search.framework.SearchForActions;
 import aima.core.search.framework.problem.Problem;
 import aima.core.search.framework.qsearch.BidirectionalSearch;
 import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.framework.qsearch.QueueSearch;
 import aima.core.search.informed.AStarSearch;
 import aima.core.search.informed.GreedyBestFirstSearch;
 import aima.core.search.local.SimulatedAnnealingSearch;
@@ -138,6 +140,9 @@ public class EightPuzzleApp extends SimpleAgentApp {
 		//used for clearing the view
 		private boolean isClear;
 
+		//search tree recorded by the last search, handed over by the search thread
+		private volatile EightPuzzleTree searchTree;
+
 		EmptyEightPuzzleView () {
 			setLayout(null);
 			setPreferredSize(new Dimension(5000,5000));
@@ -176,24 +181,25 @@ public class EightPuzzleApp extends SimpleAgentApp {
 		}
 
 		public void drawTree2() {
+			EightPuzzleTree tree = searchTree;
+			if (tree == null)
+				return;
 			Border border = BorderFactory.createLineBorder(Color.YELLOW,10);
 			Border goalStateBorder = BorderFactory.createLineBorder(Color.GREEN,10);
 
-			int orderChosenFromFrontier = 0;
-			int currentDepth = 0;
-			while (orderChosenFromFrontier <= EightPuzzleTree.numberOfExpandedNodes) {
-				int[] nodeToExpand = EightPuzzleTree.getCurrentExpandedNode(currentDepth,orderChosenFromFrontier);
-				int x = nodeToExpand[0];  //depth
-				int y = nodeToExpand[1];  //position in depth
-				EightPuzzleView newView = EightPuzzleTree.tree.get(x).get(y).view;
+			for (int order = 0; order < tree.getNumberOfChosenNodes(); order++) {
+				EightPuzzleTree.EightPuzzleTreeNode treeNode = tree.getChosenNode(order);
+				int x = treeNode.getDepth();  //depth
+				int y = treeNode.getPosition();  //position in depth
+				EightPuzzleView newView = treeNode.getView();
 				//only need to add root node
-				if (orderChosenFromFrontier == 0){
+				if (order == 0){
 					add(newView);
-					newView.updateView(EightPuzzleTree.tree.get(x).get(y).node.getPathCost());
+					newView.updateView(treeNode.getNode().getPathCost());
 					newView.setSize(200, 200);
 					newView.setLocation(400 * y + 100, 400 * x + 100);
 				}
-				if (orderChosenFromFrontier == EightPuzzleTree.numberOfExpandedNodes) {
+				if (treeNode.isGoalState()) {
 					newView.setBorder(goalStateBorder);
 				} else {
 					try {
@@ -205,44 +211,42 @@ public class EightPuzzleApp extends SimpleAgentApp {
 				}
 
 				//draw child views
-				if (x < EightPuzzleTree.tree.size() - 1) {
-					for (int i = 0; i < EightPuzzleTree.tree.get(x + 1).size(); i++) {
-						EightPuzzleTree.EightPuzzleTreeNode childNode = EightPuzzleTree.tree.get(x + 1).get(i);
-						if (childNode.hasParent(y,x)) {
-							EightPuzzleView childView = EightPuzzleTree.tree.get(x + 1).get(i).view;
-							add(childView);
-							childView.updateView(EightPuzzleTree.tree.get(x).get(y).node.getPathCost());
-							childView.setSize(200, 200);
-							childView.setLocation(400 * i + 100, 400 * (x + 1) + 100);
-
-							int x1 = 400 * i + 200;
-							int y1 = 400 * (x + 1) + 100;
-							int x2 = 400 * y+ 200;
-							int y2 = 400 * x + 300;
-							Vector<Integer> newChildVector = new Vector<Integer>();
-							newChildVector.add(x1);
-							newChildVector.add(y1);
-							Vector<Integer> newParentVector = new Vector<Integer>();
-							newParentVector.add(x2);
-							newParentVector.add(y2);
-							childCoord.add(newChildVector);
-							parentCoord.add(newParentVector);
-							paintComponent(getGraphics());
-
-							try {
-								Thread.sleep(500);
-							} catch (InterruptedException e) {
-								e.printStackTrace();
-							}
-						}
+				for (EightPuzzleTree.EightPuzzleTreeNode childNode : treeNode.getChildren()) {
+					int i = childNode.getPosition();
+					EightPuzzleView childView = childNode.getView();
+					add(childView);
+					childView.updateView(treeNode.getNode().getPathCost());
+					childView.setSize(200, 200);
+					childView.setLocation(400 * i + 100, 400 * (x + 1) + 100);
+
+					int x1 = 400 * i + 200;
+					int y1 = 400 * (x + 1) + 100;
+					int x2 = 400 * y+ 200;
+					int y2 = 400 * x + 300;
+					Vector<Integer> newChildVector = new Vector<Integer>();
+					newChildVector.add(x1);
+					newChildVector.add(y1);
+					Vector<Integer> newParentVector = new Vector<Integer>();
+					newParentVector.add(x2);
+					newParentVector.add(y2);
+					childCoord.add(newChildVector);
+					parentCoord.add(newParentVector);
+					paintComponent(getGraphics());
+
+					try {
+						Thread.sleep(500);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
 					}
 				}
-				orderChosenFromFrontier++;
-				if (x == currentDepth)
-					currentDepth++;
 			}
 		}
 
+		/** Sets the search tree which is drawn by {@link #drawTree2()}. */
+		public void setSearchTree(EightPuzzleTree tree) {
+			searchTree = tree;
+		}
+
 		public void setClearView(boolean set) {
 			isClear = set;
 		}
@@ -520,7 +524,21 @@ public class EightPuzzleApp extends SimpleAgentApp {
 				int pSel = frame.getSelection().getIndex(EightPuzzleFrame.SEARCH_SEL);
 				Problem problem = new BidirectionalEightPuzzleProblem(env.getBoard());
 				SearchForActions search = SEARCH_ALGOS.get(pSel);
-				agent = new SearchAgent(problem, search);
+				// only queue searches report their search trees
+				EightPuzzleTree tree = null;
+				QueueSearch impl = null;
+				if (search instanceof PrioritySearch) {
+					tree = new EightPuzzleTree();
+					impl = ((PrioritySearch) search).getImplementation();
+					impl.setEventSink(tree);
+				}
+				try {
+					agent = new SearchAgent(problem, search);
+				} finally {
+					if (impl != null)
+						impl.setEventSink(null);
+				}
+				mainView.setSearchTree(tree);
 				env.addAgent(agent);
 			}
 		}
@@ -1,115 +1,193 @@
 package Presentation;
 
-import aima.core.environment.eightpuzzle.EightPuzzleBoard;
 import aima.core.search.framework.Node;
-import java.util.Vector;
+import aima.core.search.framework.SearchEventSink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the search tree explored by a queue search so that it can be drawn
+ * afterwards. Tree nodes are indexed by node identity, so parent lookup,
+ * chosen-order tracking and goal marking take constant time. A recorder is
+ * attached to a search as its {@link SearchEventSink} for the duration of one
+ * search and handed over to the view when the search is done. After
+ * {@link #getMaxNodes()} nodes have been recorded, recording stops and the
+ * tree is marked as truncated.
+ */
+public class EightPuzzleTree implements SearchEventSink {
+    /** Default upper bound for the number of recorded nodes. */
+    public static final int DEFAULT_MAX_NODES = 5000;
+
+    private final List<List<EightPuzzleTreeNode>> levels = new ArrayList<List<EightPuzzleTreeNode>>();
+    private final Map<Node, EightPuzzleTreeNode> index = new IdentityHashMap<Node, EightPuzzleTreeNode>();
+    private final List<EightPuzzleTreeNode> chosenNodes = new ArrayList<EightPuzzleTreeNode>();
+    private final int maxNodes;
+    private boolean truncated;
+
+    public EightPuzzleTree() {
+        this(DEFAULT_MAX_NODES);
+    }
 
-public class EightPuzzleTree {
-    public static Vector<Vector<EightPuzzleTreeNode>> tree = new Vector<Vector<EightPuzzleTreeNode>>();
-    public static int numberOfExpandedNodes = 0;
+    public EightPuzzleTree(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
 
-    public static void addToTree(Node state) {
-        if (state.getDepth() > (tree.size() - 1)) {
-            tree.add(new Vector<EightPuzzleTreeNode>());
-        }
-        EightPuzzleTreeNode nodeToAdd = new EightPuzzleTreeNode(state);
-        int[] fatherPosition = findFather(state);
-        if (fatherPosition != null) {
-            nodeToAdd.setFatherPosition(fatherPosition);
-        }
-        tree.get(((int) state.getDepth())).add(nodeToAdd);
+    @Override
+    public void onRoot(Node root) {
+        clearTree();
+    }
+
+    @Override
+    public void onEnqueue(Node node) {
+        addToTree(node);
     }
 
-    public static int[] findFather(Node state) {
-        if (state.getParent() == null) {
-            return null;
+    @Override
+    public void onDequeue(Node node) {
+        setChosenNodeFromFrontier(node);
+    }
+
+    @Override
+    public void onExpand(Node node) {
+    }
+
+    @Override
+    public void onGoal(Node node) {
+        setGoalState(node);
+    }
+
+    public void addToTree(Node state) {
+        if (index.size() >= maxNodes) {
+            truncated = true;
+            return;
         }
-        int fatherDepth = state.getParent().getDepth();
-        int[] retVal = new int[2];
-        for (int i = 0; i < tree.get(fatherDepth).size();i++) {
-            EightPuzzleBoard currentState = (EightPuzzleBoard)tree.get(fatherDepth).get(i).node.getState();
-            EightPuzzleBoard parentState = (EightPuzzleBoard) state.getParent().getState();
-            if (currentState.toString().equals(parentState.toString())) {
-                retVal[0] = i;
-                retVal[1] = fatherDepth;
-                return retVal;
-            }
+        EightPuzzleTreeNode father = state.getParent() != null ? index.get(state.getParent()) : null;
+        int depth = state.getDepth();
+        while (depth >= levels.size()) {
+            levels.add(new ArrayList<EightPuzzleTreeNode>());
+        }
+        List<EightPuzzleTreeNode> level = levels.get(depth);
+        EightPuzzleTreeNode nodeToAdd = new EightPuzzleTreeNode(state, depth, level.size());
+        level.add(nodeToAdd);
+        if (father != null) {
+            nodeToAdd.setFather(father);
         }
-        return null;
+        index.put(state, nodeToAdd);
     }
 
-    public static void setChosenNodeFromFrontier(Node state, int depth) {
-        for (int i = 0; i < tree.get(depth).size(); i++) {
-            EightPuzzleBoard currentState = (EightPuzzleBoard)tree.get(depth).get(i).node.getState();
-            EightPuzzleBoard stateToFind = (EightPuzzleBoard) state.getState();
-            if (currentState.toString().equals(stateToFind.toString())) {
-                tree.get(depth).get(i).setIsChosen();
-                tree.get(depth).get(i).setOrderChosenFromFrontier(numberOfExpandedNodes);
-            }
+    public void setChosenNodeFromFrontier(Node state) {
+        EightPuzzleTreeNode treeNode = index.get(state);
+        if (treeNode != null && !treeNode.isChosen()) {
+            treeNode.setIsChosen();
+            treeNode.setOrderChosenFromFrontier(chosenNodes.size());
+            chosenNodes.add(treeNode);
         }
     }
 
-    public static void setGoalState(Node state, int depth) {
-        for (int i = 0; i < tree.get(depth).size(); i++) {
-            EightPuzzleBoard currentState = (EightPuzzleBoard)tree.get(depth).get(i).node.getState();
-            EightPuzzleBoard stateToFind = (EightPuzzleBoard) state.getState();
-            if (currentState.toString().equals(stateToFind.toString())) {
-                tree.get(depth).get(i).setIsGoalState();
-            }
+    public void setGoalState(Node state) {
+        EightPuzzleTreeNode treeNode = index.get(state);
+        if (treeNode != null) {
+            treeNode.setIsGoalState();
         }
     }
 
-    public static int[] getCurrentExpandedNode(int currentDepth, int currentChosenOrder) {
-        for (int i = 0; i <= currentDepth; i++) {
-            for (int j = 0; j < tree.get(i).size(); j++) {
-                if (tree.get(i).get(j).orderChosenFromFrontier == currentChosenOrder + 1) {
-                    //{depth, position in depth}
-                    int[] retVal = {i,j};
-                    return retVal;
-                }
-            }
-        }
-        return null;
+    /** Returns the number of recorded nodes which were chosen from the frontier. */
+    public int getNumberOfChosenNodes() {
+        return chosenNodes.size();
+    }
+
+    /** Returns the recorded node which was chosen from the frontier at the given position. */
+    public EightPuzzleTreeNode getChosenNode(int order) {
+        return chosenNodes.get(order);
+    }
+
+    public int getDepth() {
+        return levels.size();
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
     }
 
-    public static void clearTree() {
-        tree.clear();
+    /** Returns true if recording stopped because the node budget was exhausted. */
+    public boolean isTruncated() {
+        return truncated;
     }
+
+    public void clearTree() {
+        levels.clear();
+        index.clear();
+        chosenNodes.clear();
+        truncated = false;
+    }
+
     public static class EightPuzzleTreeNode {
-        EightPuzzleApp.EightPuzzleView view;
-        Node node;
+        private EightPuzzleApp.EightPuzzleView view;
+        private final Node node;
 
         /**
-         * the position of father node in the tree
-         * X: the position of the father in the same depth
-         * Y: the depth of the father
+         * the position of the node in the tree
+         * depth: the depth of the node
+         * position: the position of the node in the same depth
          */
-        public int fatherX;
-        public int fatherY;
+        private final int depth;
+        private final int position;
 
-        boolean isChosenFromFrontier;
-        int orderChosenFromFrontier;
-        boolean isGoalState;
+        private EightPuzzleTreeNode father;
+        private List<EightPuzzleTreeNode> children;
 
-        EightPuzzleTreeNode() {
-            view = null;
-            node = null;
-        }
+        private boolean isChosenFromFrontier;
+        private int orderChosenFromFrontier;
+        private boolean isGoalState;
 
-        EightPuzzleTreeNode(Node state) {
+        EightPuzzleTreeNode(Node state, int depth, int position) {
             node = state;
-            view = new EightPuzzleApp.EightPuzzleView();
-            view.copyStateFromNode(state);
-            fatherX = -1;
-            fatherY = -1;
+            this.depth = depth;
+            this.position = position;
             orderChosenFromFrontier = -1;
             isChosenFromFrontier = false;
             isGoalState = false;
         }
 
-        public void setFatherPosition(int[] father) {
-            fatherX = father[0];
-            fatherY = father[1];
+        public Node getNode() {
+            return node;
+        }
+
+        /** Creates the view of the node on first access. */
+        public EightPuzzleApp.EightPuzzleView getView() {
+            if (view == null) {
+                view = new EightPuzzleApp.EightPuzzleView();
+                view.copyStateFromNode(node);
+            }
+            return view;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public EightPuzzleTreeNode getFather() {
+            return father;
+        }
+
+        void setFather(EightPuzzleTreeNode father) {
+            this.father = father;
+            if (father.children == null) {
+                father.children = new ArrayList<EightPuzzleTreeNode>(4);
+            }
+            father.children.add(this);
+        }
+
+        public List<EightPuzzleTreeNode> getChildren() {
+            return children != null ? children : Collections.<EightPuzzleTreeNode>emptyList();
         }
 
         public void setIsChosen() {
@@ -132,8 +210,8 @@ public class EightPuzzleTree {
             orderChosenFromFrontier = order;
         }
 
-        public boolean hasParent(int fatherX, int fatherY) {
-            return this.fatherX == fatherX && this.fatherY == fatherY;
+        public int getOrderChosenFromFrontier() {
+            return orderChosenFromFrontier;
         }
     }
 }
@@ -5,19 +5,97 @@ import java.util.Collections;
 import java.util.List;
 import aima.core.search.adversarial.Game;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
+import aima.core.search.framework.Metrics;
 
 /**
  * Implements an iterative deepening Minimax search with alpha-beta pruning and
- * a special action ordering optimized for the Connect Four game.
+ * a special action ordering optimized for the Connect Four game. Before
+ * searching, the player consults an opening book (see {@link ConnectFourBook})
+ * and, close to the end of the game, tries to solve the position exactly with
+ * a {@link ConnectFourSolver}.
  * 
  * @author Ruediger Lunde
  */
 public class ConnectFourAIPlayer extends
 		IterativeDeepeningAlphaBetaSearch<ConnectFourState, Integer, String> {
 
+	public final static String METRICS_BOOK_HIT = "bookHit";
+	public final static String METRICS_BOOK_SOLVED = "bookSolved";
+	public final static String METRICS_SOLVER_NODES = "solverNodes";
+
+	private final int time;
+	private ConnectFourBook book;
+	private int endgameSpaces = 24;
+	private ConnectFourSolver solver;
+	// metrics of decisions which were taken without search
+	private Metrics decisionMetrics;
+
 	public ConnectFourAIPlayer(Game<ConnectFourState, Integer, String> game,
 			int time) {
 		super(game, 0.0, 1.0, time);
+		this.time = time;
+		setTranspositionTableSize(1 << 20);
+		setNumThreads(Runtime.getRuntime().availableProcessors());
+		ConnectFourState initialState = game.getInitialState();
+		book = ConnectFourBook.getDefault(initialState.getRows(),
+				initialState.getCols());
+	}
+
+	/**
+	 * Sets the opening book which is consulted before searching (default:
+	 * {@link ConnectFourBook#getDefault(int, int)}). Null disables the book.
+	 */
+	public void setOpeningBook(ConnectFourBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * Sets the number of empty spaces below which positions are solved exactly
+	 * before searching (default 24). The solver may use up to half of the
+	 * time limit; if it gives up, the search gets the remaining time. 0
+	 * disables the solver.
+	 */
+	public void setEndgameSpaces(int spaces) {
+		endgameSpaces = spaces;
+	}
+
+	/**
+	 * Returns the move of the opening book or of the endgame solver if
+	 * available, and the result of the search otherwise. Unsolved book
+	 * entries are only played if their bound proves at least a draw, as their
+	 * move is not known to be best otherwise.
+	 */
+	@Override
+	public Integer makeDecision(ConnectFourState state) {
+		long startTime = System.currentTimeMillis();
+		decisionMetrics = null;
+		if (book != null) {
+			ConnectFourBook.Entry entry = book.lookup(state);
+			if (entry != null && (entry.isSolved() || entry.getScore() >= 0)) {
+				decisionMetrics = new Metrics();
+				decisionMetrics.set(METRICS_BOOK_HIT, 1);
+				decisionMetrics.set(METRICS_BOOK_SOLVED, entry.isSolved() ? 1 : 0);
+				return entry.getMove();
+			}
+		}
+		int spaces = state.getRows() * state.getCols() - state.getMoves();
+		if (spaces <= endgameSpaces && state.getUtility() == -1) {
+			if (solver == null)
+				solver = new ConnectFourSolver(state.getRows(), state.getCols());
+			solver.setDeadline(startTime + 500L * time);
+			boolean solved = solver.solve(state);
+			if (solved) {
+				decisionMetrics = new Metrics();
+				decisionMetrics.set(METRICS_SOLVER_NODES, solver.getNodeCount());
+				return solver.getBestMove();
+			}
+		}
+		return super.makeDecision(state, startTime);
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return decisionMetrics != null ? decisionMetrics : super.getMetrics();
 	}
 
 	@Override
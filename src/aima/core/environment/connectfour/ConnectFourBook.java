@@ -0,0 +1,331 @@
+package aima.core.environment.connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import aima.core.search.adversarial.TranspositionTable;
+
+/**
+ * Opening book for Connect Four which contains the positions of the first
+ * moves of the game, as evaluated by {@link ConnectFourSolver}. Each entry
+ * consists of the score of the position (see {@link ConnectFourSolver}) and a
+ * best move. Positions which could not be solved within the node limit of the
+ * solver are marked as unsolved; their score is a lower bound and their move
+ * achieves this bound (see {@link Entry#isSolved()}). Entries are keyed by
+ * position keys (see {@link ConnectFourState#getPositionKey()}). A position
+ * and its mirror image share the entry of the smaller key, which halves the
+ * size of the book.<br>
+ * <br>
+ * Books are created by {@link #create(File, int, int, int, int, long)} and
+ * stored in a compact binary file: a header, the sorted keys, the scores, and
+ * the moves. The file is memory-mapped when the book is opened, so opening is
+ * fast, the operating system loads only the pages which are needed, and the
+ * data is shared by all players. Lookups use binary search and are
+ * thread-safe.
+ */
+public class ConnectFourBook implements Closeable {
+
+	private static final int MAGIC = 0x43344243; // "C4BC"
+	private static final int HEADER_SIZE = 24;
+	// flag in the move byte of unsolved entries
+	private static final int UNSOLVED = 0x80;
+	private static final Map<String, ConnectFourBook> defaultBooks = new HashMap<String, ConnectFourBook>();
+
+	private final RandomAccessFile file;
+	private final int rows;
+	private final int cols;
+	private final int maxPly;
+	private final int size;
+	private final int unsolvedCount;
+	private final LongBuffer keys;
+	private final MappedByteBuffer data;
+
+	/**
+	 * Opens the book stored in the specified file.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read or is not a book.
+	 */
+	public static ConnectFourBook open(File file) throws IOException {
+		return new ConnectFourBook(new RandomAccessFile(file, "r"));
+	}
+
+	/**
+	 * Returns the book for boards of the specified size from the file
+	 * <code>connectfour-&lt;rows&gt;x&lt;cols&gt;.book</code> in the working
+	 * directory, or null if the file does not exist. Each file is opened only
+	 * once.
+	 */
+	public static synchronized ConnectFourBook getDefault(int rows, int cols) {
+		String name = "connectfour-" + rows + "x" + cols + ".book";
+		if (!defaultBooks.containsKey(name)) {
+			ConnectFourBook book = null;
+			File file = new File(name);
+			if (file.isFile()) {
+				try {
+					book = open(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			defaultBooks.put(name, book);
+		}
+		return defaultBooks.get(name);
+	}
+
+	private ConnectFourBook(RandomAccessFile file) throws IOException {
+		this.file = file;
+		try {
+			FileChannel channel = file.getChannel();
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER_SIZE || data.getInt(0) != MAGIC)
+				throw new IOException("Not a Connect Four book.");
+			rows = data.getInt(4);
+			cols = data.getInt(8);
+			maxPly = data.getInt(12);
+			size = data.getInt(16);
+			unsolvedCount = data.getInt(20);
+			if (channel.size() != HEADER_SIZE + 10L * size)
+				throw new IOException("Connect Four book is corrupted.");
+			data.position(HEADER_SIZE);
+			keys = data.slice().asLongBuffer();
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	/** Returns the number of disks of the deepest positions in the book. */
+	public int getMaxPly() {
+		return maxPly;
+	}
+
+	/** Returns the number of entries. */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the number of entries of positions which are not solved. */
+	public int getUnsolvedCount() {
+		return unsolvedCount;
+	}
+
+	/**
+	 * Returns the entry of the specified position with the best move for the
+	 * orientation of the position, or null if the book does not contain it.
+	 */
+	public Entry lookup(ConnectFourState state) {
+		if (state.getRows() != rows || state.getCols() != cols || state.getMoves() > maxPly)
+			return null;
+		long key = state.getPositionKey();
+		long mirroredKey = state.getMirroredPositionKey();
+		boolean mirrored = Long.compareUnsigned(mirroredKey, key) < 0;
+		int index = find(mirrored ? mirroredKey : key);
+		if (index < 0)
+			return null;
+		int move = data.get(HEADER_SIZE + 8 * size + size + index) & 0xFF;
+		boolean solved = (move & UNSOLVED) == 0;
+		move &= ~UNSOLVED;
+		return new Entry(data.get(HEADER_SIZE + 8 * size + index), mirrored ? cols - 1 - move : move, solved);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Solves all non-terminal positions with at most <code>maxPly</code> disks
+	 * and stores them as book. Positions are solved by several threads, which
+	 * share a transposition table.
+	 *
+	 * @param nodeLimit
+	 *            the maximal number of nodes per position (0 means no limit);
+	 *            positions which cannot be solved within the limit are stored
+	 *            as unsolved entries with the result of the limited search.
+	 * @return the number of entries of the book, including the unsolved
+	 *         ones.
+	 */
+	public static int create(File file, int rows, int cols, int maxPly, int numThreads, long nodeLimit)
+			throws IOException {
+		Map<Long, ConnectFourState> positions = new LinkedHashMap<Long, ConnectFourState>();
+		collectPositions(new ConnectFourState(rows, cols), maxPly, positions);
+		final List<ConnectFourState> states = new ArrayList<ConnectFourState>(positions.values());
+		final long[] keys = new long[states.size()];
+		final byte[] scores = new byte[states.size()];
+		final byte[] moves = new byte[states.size()];
+		final TranspositionTable table = new TranspositionTable(1 << 22);
+		final AtomicInteger next = new AtomicInteger();
+		final Throwable[] failure = new Throwable[1];
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < numThreads; i++) {
+			Thread thread = new Thread(() -> {
+				ConnectFourSolver solver = new ConnectFourSolver(rows, cols, table);
+				solver.setNodeLimit(nodeLimit);
+				int index;
+				// positions are ordered by ply, so the hard ones come first
+				while ((index = next.getAndIncrement()) < states.size()) {
+					ConnectFourState state = states.get(index);
+					boolean solved = solver.solve(state);
+					long key = state.getPositionKey();
+					long mirroredKey = state.getMirroredPositionKey();
+					boolean mirrored = Long.compareUnsigned(mirroredKey, key) < 0;
+					int move = solver.getBestMove();
+					keys[index] = mirrored ? mirroredKey : key;
+					scores[index] = (byte) solver.getScore();
+					moves[index] = (byte) ((mirrored ? cols - 1 - move : move) | (solved ? 0 : UNSOLVED));
+				}
+			});
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler((t, e) -> failure[0] = e);
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Book creation interrupted.", e);
+			}
+		}
+		if (failure[0] != null)
+			throw new RuntimeException(failure[0]);
+
+		// sort the entries by key
+		int size = states.size();
+		Integer[] order = new Integer[size];
+		int unsolvedCount = 0;
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+			if ((moves[i] & UNSOLVED) != 0)
+				unsolvedCount++;
+		}
+		Arrays.sort(order, (i1, i2) -> Long.compareUnsigned(keys[i1], keys[i2]));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(rows);
+			out.writeInt(cols);
+			out.writeInt(maxPly);
+			out.writeInt(size);
+			out.writeInt(unsolvedCount);
+			for (int i = 0; i < size; i++)
+				out.writeLong(keys[order[i]]);
+			for (int i = 0; i < size; i++)
+				out.writeByte(scores[order[i]]);
+			for (int i = 0; i < size; i++)
+				out.writeByte(moves[order[i]]);
+		}
+		return size;
+	}
+
+	/** Score and best move of a position. */
+	public static class Entry {
+		private final int score;
+		private final int move;
+		private final boolean solved;
+
+		public Entry(int score, int move, boolean solved) {
+			this.score = score;
+			this.move = move;
+			this.solved = solved;
+		}
+
+		/**
+		 * Returns the score from the perspective of the player to move
+		 * (positive: win, 0: draw, negative: loss). For unsolved positions,
+		 * the score is a lower bound.
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/** Returns the column of a best move. */
+		public int getMove() {
+			return move;
+		}
+
+		/**
+		 * Returns false if the solver gave up on the position. Then the move
+		 * only achieves the lower bound given by the score.
+		 */
+		public boolean isSolved() {
+			return solved;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the index of the key, or -1. */
+	private int find(long key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = Long.compareUnsigned(keys.get(mid), key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Collects the non-terminal positions up to the specified ply, one
+	 * position for each pair of mirror images, ordered by the number of disks.
+	 */
+	private static void collectPositions(ConnectFourState root, int maxPly, Map<Long, ConnectFourState> positions) {
+		List<ConnectFourState> level = new ArrayList<ConnectFourState>();
+		level.add(root);
+		for (int ply = 0; ply <= maxPly && !level.isEmpty(); ply++) {
+			List<ConnectFourState> nextLevel = new ArrayList<ConnectFourState>();
+			for (ConnectFourState state : level) {
+				long key = state.getPositionKey();
+				long mirroredKey = state.getMirroredPositionKey();
+				Long canonicalKey = Long.compareUnsigned(mirroredKey, key) < 0 ? mirroredKey : key;
+				if (state.getUtility() != -1 || positions.containsKey(canonicalKey))
+					continue;
+				positions.put(canonicalKey, state);
+				if (ply < maxPly) {
+					for (int col = 0; col < state.getCols(); col++) {
+						if (!state.isColumnFull(col)) {
+							ConnectFourState child = state.clone();
+							child.dropDisk(col);
+							nextLevel.add(child);
+						}
+					}
+				}
+			}
+			level = nextLevel;
+		}
+	}
+}
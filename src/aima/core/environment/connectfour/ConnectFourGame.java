@@ -3,16 +3,18 @@ package aima.core.environment.connectfour;
 import java.util.ArrayList;
 import java.util.List;
 
-import aima.core.search.adversarial.Game;
+import aima.core.search.adversarial.ReversibleGame;
 
 /**
  * Provides an implementation of the ConnectFour game which can be used for
- * experiments with the Minimax algorithm.
+ * experiments with the Minimax algorithm. Moves can be applied in place and
+ * taken back (see {@link ReversibleGame}), so searches need not clone a state
+ * for each explored action.
  * 
  * @author Ruediger Lunde
  * 
  */
-public class ConnectFourGame implements Game<ConnectFourState, Integer, String> {
+public class ConnectFourGame implements ReversibleGame<ConnectFourState, Integer, String> {
 
 	String[] players = new String[] { "red", "yellow" };
 	ConnectFourState initialState = new ConnectFourState(6, 7);
@@ -63,7 +65,7 @@ public class ConnectFourGame implements Game<ConnectFourState, Integer, String>
 	public List<Integer> getActions(ConnectFourState state) {
 		List<Integer> result = new ArrayList<Integer>();
 		for (int i = 0; i < state.getCols(); i++)
-			if (state.getPlayerNum(0, i) == 0)
+			if (!state.isColumnFull(i))
 				result.add(i);
 		return result;
 	}
@@ -75,6 +77,16 @@ public class ConnectFourGame implements Game<ConnectFourState, Integer, String>
 		return result;
 	}
 
+	@Override
+	public void makeMove(ConnectFourState state, Integer action) {
+		state.dropDisk(action);
+	}
+
+	@Override
+	public void undoMove(ConnectFourState state, Integer action) {
+		state.undoDisk(action);
+	}
+
 	@Override
 	public boolean isTerminal(ConnectFourState state) {
 		return state.getUtility() != -1;
@@ -0,0 +1,312 @@
+package aima.core.environment.connectfour;
+
+import aima.core.search.adversarial.TranspositionTable;
+
+/**
+ * Computes the game-theoretic value and a best move of Connect Four positions
+ * by an exhaustive negamax search with alpha-beta pruning. The search works
+ * directly on the bitboards of {@link ConnectFourState}: it never plays a move
+ * which allows the opponent to win immediately, orders moves by the number of
+ * win positions they create, and narrows the score by null-window searches.
+ * Results are stored in a {@link TranspositionTable}, which can be shared by
+ * several solvers running in different threads.<br>
+ * <br>
+ * The score of a position is given from the perspective of the player to move:
+ * positive if he wins, negative if he loses, 0 for a draw. A win with the
+ * disk number k of the winner has score (rows * cols / 2 + 1 - k), so faster
+ * wins have higher scores.<br>
+ * <br>
+ * Instances are not thread-safe.
+ */
+public class ConnectFourSolver {
+
+	private final int rows;
+	private final int cols;
+	private final int colBits;
+	private final long bottomMask;
+	private final long boardMask;
+	/** The columns from the center to the borders. */
+	private final int[] columnOrder;
+	private final TranspositionTable table;
+	private final TranspositionTable.Entry tableEntry = new TranspositionTable.Entry();
+	// move lists of all search depths
+	private final long[][] moveBuffers;
+	private final int[][] scoreBuffers;
+
+	private long nodeLimit;
+	private long deadline;
+	private long nodeCount;
+	private boolean aborted;
+	private int rootMoves;
+	// the move which caused the last cutoff at the root
+	private int rootCutoffMove;
+	private int score;
+	private int bestMove;
+
+	/** Creates a solver with a transposition table of 2^20 entries. */
+	public ConnectFourSolver(int rows, int cols) {
+		this(rows, cols, new TranspositionTable(1 << 20));
+	}
+
+	/**
+	 * Creates a solver which uses the specified transposition table. The table
+	 * must only be shared with solvers for boards of the same size.
+	 */
+	public ConnectFourSolver(int rows, int cols, TranspositionTable table) {
+		ConnectFourState state = new ConnectFourState(rows, cols);
+		this.rows = rows;
+		this.cols = cols;
+		colBits = rows + 1;
+		bottomMask = state.getBottomMask();
+		boardMask = state.getBoardMask();
+		this.table = table;
+		columnOrder = new int[cols];
+		for (int i = 0; i < cols; i++)
+			columnOrder[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+		moveBuffers = new long[rows * cols + 1][cols];
+		scoreBuffers = new int[rows * cols + 1][cols];
+	}
+
+	/**
+	 * Limits the number of nodes per call of {@link #solve(ConnectFourState)}.
+	 * 0 (default) means no limit.
+	 */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Lets {@link #solve(ConnectFourState)} give up at the specified time (see
+	 * {@link System#currentTimeMillis()}). 0 (default) means no deadline.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Solves the specified non-terminal position. If the node limit or the
+	 * deadline is reached first, the score is only a lower bound, and the best
+	 * move is the move which proved this bound or, if no bound was proved, the
+	 * first move of the move ordering.
+	 *
+	 * @return false if the position could not be solved within the node limit
+	 *         and the deadline.
+	 */
+	public boolean solve(ConnectFourState state) {
+		if (state.getUtility() != -1)
+			throw new IllegalArgumentException("State is terminal.");
+		if (state.getRows() != rows || state.getCols() != cols)
+			throw new IllegalArgumentException("Wrong board size.");
+		long current = state.getDisks(state.getPlayerToMove());
+		long mask = current | state.getDisks(3 - state.getPlayerToMove());
+		int moves = state.getMoves();
+		nodeCount = 0;
+		aborted = false;
+		rootMoves = moves;
+		bestMove = -1;
+
+		long possible = possibleMoves(mask);
+		long wins = winPositions(current, mask) & possible;
+		if (wins != 0) {
+			score = (rows * cols + 1 - moves) / 2;
+			bestMove = Long.numberOfTrailingZeros(wins) / colBits;
+			return true;
+		}
+		// narrow the score interval by null-window searches
+		int min = -(rows * cols - moves) / 2;
+		int max = (rows * cols + 1 - moves) / 2;
+		int boundMove = -1;
+		while (min < max) {
+			int med = min + (max - min) / 2;
+			if (med <= 0 && min / 2 < med)
+				med = min / 2;
+			else if (med >= 0 && max / 2 > med)
+				med = max / 2;
+			rootCutoffMove = -1;
+			int r = negamax(current, mask, moves, med, med + 1);
+			if (aborted)
+				break;
+			if (r <= med) {
+				max = r;
+			} else {
+				min = r;
+				boundMove = rootCutoffMove;
+			}
+		}
+		score = min;
+
+		// find a move which achieves the score
+		long nonLosing = nonLosingMoves(current, mask);
+		if (nonLosing == 0) {
+			bestMove = Long.numberOfTrailingZeros(possible) / colBits;
+			return !aborted;
+		}
+		int n = sortMoves(current, mask, moves, nonLosing, -1);
+		int fallbackMove = boundMove != -1 ? boundMove : Long.numberOfTrailingZeros(moveBuffers[moves][0]) / colBits;
+		if (aborted) {
+			bestMove = fallbackMove;
+			return false;
+		}
+		for (int i = 0; i < n && bestMove == -1; i++) {
+			long move = moveBuffers[moves][i];
+			int r = -negamax(current ^ mask, mask | move, moves + 1, -score, -score + 1);
+			if (aborted) {
+				bestMove = fallbackMove;
+				return false;
+			}
+			if (r >= score)
+				bestMove = Long.numberOfTrailingZeros(move) / colBits;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the score of the last position, or a lower bound of it if the
+	 * position was not solved.
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/** Returns the column of a best move in the last position. */
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	/** Returns the number of nodes of the last call of solve. */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the score if it is within the window, otherwise a bound of it
+	 * which is outside the window. The player to move must not have an
+	 * immediate win.
+	 */
+	private int negamax(long current, long mask, int moves, int alpha, int beta) {
+		if ((++nodeCount > nodeLimit && nodeLimit > 0)
+				|| ((nodeCount & 0x3FF) == 0 && deadline > 0 && System.currentTimeMillis() > deadline)) {
+			aborted = true;
+			return 0;
+		}
+		long next = nonLosingMoves(current, mask);
+		if (next == 0)
+			return -(rows * cols - moves) / 2;
+		if (moves >= rows * cols - 2)
+			return 0; // no one can win with the last two disks
+		int min = -(rows * cols - 2 - moves) / 2;
+		if (alpha < min) {
+			alpha = min;
+			if (alpha >= beta)
+				return alpha;
+		}
+		int max = (rows * cols - 1 - moves) / 2;
+		if (beta > max) {
+			beta = max;
+			if (alpha >= beta)
+				return beta;
+		}
+		long key = current + mask;
+		int ttMove = -1;
+		if (table.load(key, tableEntry)) {
+			int value = (int) tableEntry.value;
+			ttMove = tableEntry.actionIndex;
+			// the move of exact and lower bound entries achieves the value
+			if (moves == rootMoves && tableEntry.boundType != TranspositionTable.UPPER_BOUND)
+				rootCutoffMove = ttMove;
+			if (tableEntry.boundType == TranspositionTable.EXACT)
+				return value;
+			if (tableEntry.boundType == TranspositionTable.LOWER_BOUND && value > alpha)
+				alpha = value;
+			else if (tableEntry.boundType == TranspositionTable.UPPER_BOUND && value < beta)
+				beta = value;
+			if (alpha >= beta)
+				return alpha;
+		}
+
+		int n = sortMoves(current, mask, moves, next, ttMove);
+		long[] moveList = moveBuffers[moves];
+		int alphaOrig = alpha;
+		int best = -1;
+		for (int i = 0; i < n; i++) {
+			long move = moveList[i];
+			int value = -negamax(current ^ mask, mask | move, moves + 1, -beta, -alpha);
+			if (aborted)
+				return 0;
+			if (value >= beta) {
+				if (moves == rootMoves)
+					rootCutoffMove = Long.numberOfTrailingZeros(move) / colBits;
+				table.store(key, 0, value, TranspositionTable.LOWER_BOUND, false,
+						Long.numberOfTrailingZeros(move) / colBits);
+				return value;
+			}
+			if (value > alpha) {
+				alpha = value;
+				best = Long.numberOfTrailingZeros(move) / colBits;
+			}
+		}
+		table.store(key, 0, alpha, alpha > alphaOrig ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND,
+				false, best);
+		return alpha;
+	}
+
+	/**
+	 * Stores the specified moves in the move buffer of the depth, ordered by
+	 * the number of win positions they create for the player to move. The
+	 * move of the transposition table comes first, ties are broken by
+	 * closeness to the center. Returns the number of moves.
+	 */
+	private int sortMoves(long current, long mask, int moves, long candidates, int firstCol) {
+		long[] moveList = moveBuffers[moves];
+		int[] scores = scoreBuffers[moves];
+		int n = 0;
+		for (int col : columnOrder) {
+			long move = candidates & columnMask(col);
+			if (move != 0) {
+				int s = col == firstCol ? Integer.MAX_VALUE
+						: Long.bitCount(winPositions(current | move, mask | move));
+				int pos = n++;
+				for (; pos > 0 && scores[pos - 1] < s; pos--) {
+					moveList[pos] = moveList[pos - 1];
+					scores[pos] = scores[pos - 1];
+				}
+				moveList[pos] = move;
+				scores[pos] = s;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the playable spaces which do not allow the opponent to win with
+	 * his next move. The player to move must not have an immediate win.
+	 */
+	private long nonLosingMoves(long current, long mask) {
+		long possible = possibleMoves(mask);
+		long opponentWins = winPositions(current ^ mask, mask);
+		long forced = possible & opponentWins;
+		if (forced != 0) {
+			if ((forced & (forced - 1)) != 0)
+				return 0; // two threats cannot be blocked
+			possible = forced;
+		}
+		// do not play directly below a win position of the opponent
+		return possible & ~(opponentWins >>> 1);
+	}
+
+	private long possibleMoves(long mask) {
+		return (mask + bottomMask) & boardMask;
+	}
+
+	private long winPositions(long p, long mask) {
+		return ConnectFourState.getWinPositions(p, mask, colBits, boardMask);
+	}
+
+	private long columnMask(int col) {
+		return ((1L << rows) - 1) << (col * colBits);
+	}
+}
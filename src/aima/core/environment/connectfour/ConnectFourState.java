@@ -1,22 +1,41 @@
 package aima.core.environment.connectfour;
 
+import java.util.Random;
+
+import aima.core.search.adversarial.ZobristHashable;
+
 /**
  * A state of the Connect Four game is characterized by a board containing a
  * grid of spaces for disks, the next player to move, and some utility
  * informations. A win position for a player x is an empty space which turns a
  * situation into a win situation for x if he is able to place a disk there.
- * 
+ * <br>
+ * <br>
+ * The board is represented by bitboards: one <code>long</code> for the disks
+ * of each player. Each column occupies <code>rows + 1</code> consecutive bits,
+ * starting with the bottom space; the additional bit on top of each column is
+ * always zero and separates the columns. So a line of four disks in any
+ * direction can be detected by a few shifts and masks, and win positions are
+ * computed for the whole board at once. This requires
+ * <code>(rows + 1) * cols &lt;= 64</code>. Cloning is cheap, and moves can be
+ * taken back with {@link #undoDisk(int)} for searches which modify a single
+ * state.
+ *
  * @author Ruediger Lunde
- * 
+ *
  */
-public class ConnectFourState implements Cloneable {
-	private int cols;
-	/**
-	 * Uses special bit coding. First bit: disk of player 1, second bit: disk of
-	 * player 2, third bit: win position for player 1, fourth bit: win position
-	 * for player 2.
-	 */
-	private byte[] board;
+public class ConnectFourState implements Cloneable, ZobristHashable {
+	private final int rows;
+	private final int cols;
+	/** Number of bits per column. */
+	private final int colBits;
+	/** The bottom space of each column. */
+	private final long bottomMask;
+	/** All spaces of the board (without the separator bits). */
+	private final long boardMask;
+
+	private long disks1;
+	private long disks2;
 
 	private int moveCount;
 	/**
@@ -26,15 +45,33 @@ public class ConnectFourState implements Cloneable {
 	private double utility;
 	public int winPositions1;
 	public int winPositions2;
+	/**
+	 * Random keys for the disks of both players on all spaces, shared by
+	 * clones. The same seed is used for all boards of the same size.
+	 */
+	private final long[] zobristKeys;
+	private long zobristHash;
 
 	public ConnectFourState(int rows, int cols) {
+		if ((rows + 1) * cols > 64)
+			throw new IllegalArgumentException("Board too large for 64-bit representation.");
 		utility = -1;
+		this.rows = rows;
 		this.cols = cols;
-		board = new byte[rows * cols];
+		colBits = rows + 1;
+		long bottom = 0;
+		for (int col = 0; col < cols; col++)
+			bottom |= 1L << (col * colBits);
+		bottomMask = bottom;
+		boardMask = bottom * ((1L << rows) - 1);
+		Random random = new Random(rows * cols);
+		zobristKeys = new long[2 * colBits * cols];
+		for (int i = 0; i < zobristKeys.length; i++)
+			zobristKeys[i] = random.nextLong();
 	}
 
 	public int getRows() {
-		return board.length / cols;
+		return rows;
 	}
 
 	public int getCols() {
@@ -46,37 +83,93 @@ public class ConnectFourState implements Cloneable {
 	}
 
 	public int getPlayerNum(int row, int col) {
-		return board[row * cols + col] & 3;
+		long bit = getBit(row, col);
+		return (disks1 & bit) != 0 ? 1 : (disks2 & bit) != 0 ? 2 : 0;
 	}
 
 	public int getPlayerToMove() {
 		return moveCount % 2 + 1;
 	}
-	
+
 	public int getMoves() {
 		return moveCount;
 	}
 
+	/**
+	 * Returns the XOR of the keys of all disks. The player to move is implied
+	 * by the number of disks.
+	 */
+	@Override
+	public long getZobristHash() {
+		return zobristHash;
+	}
+
+	/**
+	 * Returns a key which identifies the position uniquely: the disks of the
+	 * player to move plus the bitboard of all disks. Adding the disks sets the
+	 * bit on top of each column and encodes the column heights; the player to
+	 * move is implied by the number of disks. Columns do not influence each
+	 * other, so the key of the mirrored position is obtained by reversing the
+	 * order of the columns (see {@link #getMirroredPositionKey()}).
+	 */
+	public long getPositionKey() {
+		return getDisks(getPlayerToMove()) + (disks1 | disks2);
+	}
+
+	/**
+	 * Returns the position key of the board which is mirrored at its vertical
+	 * axis.
+	 */
+	public long getMirroredPositionKey() {
+		long key = getPositionKey();
+		long colMask = (1L << colBits) - 1;
+		long result = 0;
+		for (int col = 0; col < cols; col++)
+			result |= ((key >>> (col * colBits)) & colMask) << ((cols - 1 - col) * colBits);
+		return result;
+	}
+
+	/** Returns true if the specified column has no empty space. */
+	public boolean isColumnFull(int col) {
+		return ((disks1 | disks2) & getBit(0, col)) != 0;
+	}
+
 	public void dropDisk(int col) {
-		int playerNum = getPlayerToMove();
-		int row = getFreeRow(col);
-		if (row != -1) {
+		long move = ((disks1 | disks2) + (bottomMask & columnMask(col))) & columnMask(col);
+		if (move != 0) {
+			int playerNum = getPlayerToMove();
 			moveCount++;
-			if (moveCount == board.length)
-				utility = 0.5;
-			if (isWinPositionFor(row, col, 1)) {
-				winPositions1--;
-				if (playerNum == 1)
+			if (playerNum == 1) {
+				disks1 |= move;
+				if (hasFourInLine(disks1))
 					utility = 1.0;
-			}
-			if (isWinPositionFor(row, col, 2)) {
-				winPositions2--;
-				if (playerNum == 2)
+			} else {
+				disks2 |= move;
+				if (hasFourInLine(disks2))
 					utility = 0.0;
 			}
-			board[row * cols + col] = (byte) playerNum;
-			if (utility == -1)
-				analyzeWinPositions(row, col);
+			if (utility == -1 && moveCount == rows * cols)
+				utility = 0.5;
+			zobristHash ^= zobristKeys[2 * Long.numberOfTrailingZeros(move) + playerNum - 1];
+			updateWinPositions();
+		}
+	}
+
+	/**
+	 * Removes the topmost disk of the specified column. This is the inverse of
+	 * {@link #dropDisk(int)} if the column was used in the last move.
+	 */
+	public void undoDisk(int col) {
+		long colDisks = (disks1 | disks2) & columnMask(col);
+		if (colDisks != 0) {
+			long move = Long.highestOneBit(colDisks);
+			int playerNum = (disks1 & move) != 0 ? 1 : 2;
+			disks1 &= ~move;
+			disks2 &= ~move;
+			moveCount--;
+			utility = -1;
+			zobristHash ^= zobristKeys[2 * Long.numberOfTrailingZeros(move) + playerNum - 1];
+			updateWinPositions();
 		}
 	}
 
@@ -85,86 +178,25 @@ public class ConnectFourState implements Cloneable {
 	 * if the column is full.
 	 */
 	private int getFreeRow(int col) {
-		for (int row = getRows() - 1; row >= 0; row--)
-			if (getPlayerNum(row, col) == 0)
-				return row;
-		return -1;
+		int height = Long.bitCount((disks1 | disks2) & columnMask(col));
+		return height < rows ? rows - 1 - height : -1;
 	}
 
 	public boolean isWinMoveFor(int col, int playerNum) {
-		return isWinPositionFor(getFreeRow(col), col, playerNum);
-	}
-	
-	public boolean isWinPositionFor(int row, int col, int playerNum) {
-		return (board[row * cols + col] & playerNum * 4) > 0;
+		int row = getFreeRow(col);
+		return row != -1 && isWinPositionFor(row, col, playerNum);
 	}
 
-	private void setWinPositionFor(int row, int col, int playerNum) {
-		if (playerNum == 1) {
-			if (!isWinPositionFor(row, col, 1))
-				winPositions1++;
-		} else if (playerNum == 2) {
-			if (!isWinPositionFor(row, col, 2))
-				winPositions2++;
-		} else {
-			throw new IllegalArgumentException("Wrong player number.");
-		}
-		board[row * cols + col] |= playerNum * 4;
+	public boolean isWinPositionFor(int row, int col, int playerNum) {
+		return (getWinPositions(playerNum) & getBit(row, col)) != 0;
 	}
 
 	/**
-	 * Assumes a disk at position <code>moveRow</code> and <code>moveCol</code>
-	 * and analyzes the vicinity with respect to win positions.
+	 * Returns a bitboard of all empty spaces which complete a line of four
+	 * disks for the specified player.
 	 */
-	private void analyzeWinPositions(int moveRow, int moveCol) {
-		final int[] rowIncr = new int[] { 1, 0, 1, 1 };
-		final int[] colIncr = new int[] { 0, 1, -1, 1 };
-		int playerNum = getPlayerNum(moveRow, moveCol);
-		WinPositionInfo[] wInfo = new WinPositionInfo[] {
-				new WinPositionInfo(), new WinPositionInfo() };
-		for (int i = 0; i < 4; i++) {
-			int rIncr = rowIncr[i];
-			int cIncr = colIncr[i];
-			int diskCount = 1;
-
-			for (int j = 0; j < 2; j++) {
-				WinPositionInfo wInf = wInfo[j];
-				wInf.clear();
-				int rBound = rIncr > 0 ? getRows() : -1;
-				int cBound = cIncr > 0 ? getCols() : -1;
-
-				int row = moveRow + rIncr;
-				int col = moveCol + cIncr;
-				while (row != rBound && col != cBound) {
-					int plNum = getPlayerNum(row, col);
-					if (plNum == playerNum) {
-						if (wInf.hasData())
-							wInf.diskCount++;
-						else
-							diskCount++;
-					} else if (plNum == 0) {
-						if (!wInf.hasData()) {
-							wInf.row = row;
-							wInf.col = col;
-						} else {
-							break;
-						}
-					} else {
-						break;
-					}
-					row += rIncr;
-					col += cIncr;
-				}
-				rIncr = -rIncr;
-				cIncr = -cIncr;
-			}
-			for (int j = 0; j < 2; j++) {
-				WinPositionInfo wInf = wInfo[j];
-				if (wInf.hasData() && diskCount + wInf.diskCount >= 3) {
-					setWinPositionFor(wInf.row, wInf.col, playerNum);
-				}
-			}
-		}
+	public long getWinPositions(int playerNum) {
+		return getWinPositions(getDisks(playerNum), disks1 | disks2, colBits, boardMask);
 	}
 
 	public int analyzePotentialWinPositions(Integer action) {
@@ -212,46 +244,97 @@ public class ConnectFourState implements Cloneable {
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 		}
-		result.board = board.clone();
 		return result;
 	}
 
 	@Override
 	public int hashCode() {
-		int result = 0;
-		for (int i = 0; i < board.length; i++)
-			result = result * 7 + board[i] + 1;
-		return result;
+		return (int) (zobristHash ^ (zobristHash >>> 32));
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof ConnectFourState) {
 			ConnectFourState s = (ConnectFourState) obj;
-			for (int i = 0; i < board.length; i++)
-				if (board[i] != s.board[i])
-					return false;
-			return true;
+			return disks1 == s.disks1 && disks2 == s.disks2 && rows == s.rows && cols == s.cols;
 		}
 		return false;
 	}
 
-	// ////////////////////////////////////////////////////////////////////
-	// nested classes
+	/** Returns the bitboard of the disks of the specified player. */
+	long getDisks(int playerNum) {
+		return playerNum == 1 ? disks1 : disks2;
+	}
 
-	static class WinPositionInfo {
-		int row = -1;
-		int col = -1;
-		int diskCount;
+	long getBottomMask() {
+		return bottomMask;
+	}
 
-		void clear() {
-			row = -1;
-			col = -1;
-			diskCount = 0;
-		}
+	long getBoardMask() {
+		return boardMask;
+	}
+
+	/**
+	 * Returns a bitboard of all empty spaces which complete a line of four
+	 * disks of the bitboard <code>p</code>.
+	 */
+	static long getWinPositions(long p, long allDisks, int colBits, long boardMask) {
+		// vertical (only from above), horizontal, and both diagonals
+		long result = (p << 1) & (p << 2) & (p << 3);
+		result |= getLineCompletions(p, colBits);
+		result |= getLineCompletions(p, colBits - 1);
+		result |= getLineCompletions(p, colBits + 1);
+		return result & (boardMask ^ allDisks);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the bit of a space. Row 0 is the top row. */
+	private long getBit(int row, int col) {
+		return 1L << (col * colBits + rows - 1 - row);
+	}
+
+	private long columnMask(int col) {
+		return ((1L << rows) - 1) << (col * colBits);
+	}
+
+	/**
+	 * Checks for four disks in a line by shifting the bitboard along each
+	 * direction. The separator bits prevent lines which wrap around.
+	 */
+	private boolean hasFourInLine(long p) {
+		return hasFourInLine(p, 1) || hasFourInLine(p, colBits) || hasFourInLine(p, colBits - 1)
+				|| hasFourInLine(p, colBits + 1);
+	}
 
-		boolean hasData() {
-			return row != -1;
+	private static boolean hasFourInLine(long p, int shift) {
+		long m = p & (p >>> shift);
+		return (m & (m >>> 2 * shift)) != 0;
+	}
+
+	/**
+	 * Returns the spaces which complete three disks to a line of four along
+	 * the direction given by the shift, including gaps within the line.
+	 */
+	private static long getLineCompletions(long p, int shift) {
+		long q = (p << shift) & (p << 2 * shift);
+		long result = q & (p << 3 * shift);
+		result |= q & (p >>> shift);
+		q = (p >>> shift) & (p >>> 2 * shift);
+		result |= q & (p << shift);
+		result |= q & (p >>> 3 * shift);
+		return result;
+	}
+
+	private void updateWinPositions() {
+		if (utility == -1) {
+			winPositions1 = Long.bitCount(getWinPositions(1));
+			winPositions2 = Long.bitCount(getWinPositions(2));
+		} else {
+			winPositions1 = 0;
+			winPositions2 = 0;
 		}
 	}
 }
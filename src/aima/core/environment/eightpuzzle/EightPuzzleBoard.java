@@ -53,6 +53,11 @@ public class EightPuzzleBoard {
 		return new XYLocation(getXCoord(absPos), getYCoord(absPos));
 	}
 
+	/** Returns the position of the gap, counted row by row from 0 to 8. */
+	public int getGapPosition() {
+		return getPositionOf(0);
+	}
+
 	public void moveGapRight() {
 		int gapPos = getGapPosition();
 		int x = getXCoord(gapPos);
@@ -201,10 +206,6 @@ public class EightPuzzleBoard {
 		return state[getAbsPosition(x, y)];
 	}
 
-	private int getGapPosition() {
-		return getPositionOf(0);
-	}
-
 	private int getPositionOf(int val) {
 		for (int i = 0; i < 9; i++) {
 			if (state[i] == val) {
@@ -1,6 +1,9 @@
 package aima.core.environment.eightpuzzle;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import aima.core.agent.Action;
@@ -29,26 +32,34 @@ public class EightPuzzleFunctionFactory {
 		return _resultFunction;
 	}
 
+	/**
+	 * Returns shared, unmodifiable action sets. The applicable actions only
+	 * depend on the gap position, so one set per position is computed in
+	 * advance and no set is allocated per call.
+	 */
 	private static class EPActionsFunction implements ActionsFunction {
-		public Set<Action> actions(Object state) {
-			EightPuzzleBoard board = (EightPuzzleBoard) state;
-
-			Set<Action> actions = new LinkedHashSet<Action>();
+		private final List<Set<Action>> actionsByGapPos = new ArrayList<Set<Action>>();
 
-			if (board.canMoveGap(EightPuzzleBoard.UP)) {
-				actions.add(EightPuzzleBoard.UP);
-			}
-			if (board.canMoveGap(EightPuzzleBoard.DOWN)) {
-				actions.add(EightPuzzleBoard.DOWN);
-			}
-			if (board.canMoveGap(EightPuzzleBoard.LEFT)) {
-				actions.add(EightPuzzleBoard.LEFT);
-			}
-			if (board.canMoveGap(EightPuzzleBoard.RIGHT)) {
-				actions.add(EightPuzzleBoard.RIGHT);
+		EPActionsFunction() {
+			for (int pos = 0; pos < 9; pos++) {
+				int row = pos / 3;
+				int col = pos % 3;
+				Set<Action> actions = new LinkedHashSet<Action>();
+				if (row > 0)
+					actions.add(EightPuzzleBoard.UP);
+				if (row < 2)
+					actions.add(EightPuzzleBoard.DOWN);
+				if (col > 0)
+					actions.add(EightPuzzleBoard.LEFT);
+				if (col < 2)
+					actions.add(EightPuzzleBoard.RIGHT);
+				actionsByGapPos.add(Collections.unmodifiableSet(actions));
 			}
+		}
 
-			return actions;
+		public Set<Action> actions(Object state) {
+			EightPuzzleBoard board = (EightPuzzleBoard) state;
+			return actionsByGapPos.get(board.getGapPosition());
 		}
 	}
 
@@ -0,0 +1,183 @@
+package aima.core.environment.eightpuzzle;
+
+import aima.core.agent.Action;
+
+/**
+ * Describes a square sliding-tile puzzle of width 3 (8-puzzle) or 4
+ * (15-puzzle) whose states are packed into a single <code>long</code>, four
+ * bits per board position. The tile at position <code>p</code> is stored in
+ * bits <code>4p</code> to <code>4p+3</code>, the gap is represented by tile
+ * 0. Positions are numbered row by row as in {@link EightPuzzleBoard}, and
+ * the goal state places tile <code>i</code> at position <code>i</code>.
+ * Successor states are computed by bit operations, so search engines working
+ * on packed states do not allocate any objects per state.
+ */
+public class PackedPuzzle {
+
+	/** Direction indices, in the order used by {@link EightPuzzleFunctionFactory}. */
+	public static final int UP = 0;
+	public static final int DOWN = 1;
+	public static final int LEFT = 2;
+	public static final int RIGHT = 3;
+
+	private static final Action[] ACTIONS = { EightPuzzleBoard.UP, EightPuzzleBoard.DOWN, EightPuzzleBoard.LEFT,
+			EightPuzzleBoard.RIGHT };
+
+	/** The 8-puzzle. */
+	public static final PackedPuzzle EIGHT_PUZZLE = new PackedPuzzle(3);
+	/** The 15-puzzle. */
+	public static final PackedPuzzle FIFTEEN_PUZZLE = new PackedPuzzle(4);
+
+	private final int width;
+	private final int size;
+	private final long goal;
+	// neighbors[4 * pos + dir]: position the gap moves to, or -1
+	private final int[] neighbors;
+	// manhattan[size * tile + pos]: distance of tile at pos to its goal position
+	private final int[] manhattan;
+
+	public PackedPuzzle(int width) {
+		if (width < 2 || width > 4)
+			throw new IllegalArgumentException("Only puzzles of width 2 to 4 can be packed into a long.");
+		this.width = width;
+		size = width * width;
+		neighbors = new int[4 * size];
+		manhattan = new int[size * size];
+		long g = 0;
+		for (int pos = 0; pos < size; pos++) {
+			g |= ((long) pos) << (4 * pos);
+			int row = pos / width;
+			int col = pos % width;
+			neighbors[4 * pos + UP] = row > 0 ? pos - width : -1;
+			neighbors[4 * pos + DOWN] = row < width - 1 ? pos + width : -1;
+			neighbors[4 * pos + LEFT] = col > 0 ? pos - 1 : -1;
+			neighbors[4 * pos + RIGHT] = col < width - 1 ? pos + 1 : -1;
+			for (int tile = 1; tile < size; tile++)
+				manhattan[size * tile + pos] = Math.abs(row - tile / width) + Math.abs(col - tile % width);
+		}
+		goal = g;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/** Returns the number of board positions (including the gap). */
+	public int getSize() {
+		return size;
+	}
+
+	public long getGoal() {
+		return goal;
+	}
+
+	/** Packs a board given row by row, with 0 denoting the gap. */
+	public long pack(int[] tiles) {
+		if (tiles.length != size)
+			throw new IllegalArgumentException("Expected " + size + " tiles but got " + tiles.length + ".");
+		long result = 0;
+		for (int pos = 0; pos < size; pos++)
+			result |= ((long) tiles[pos]) << (4 * pos);
+		return result;
+	}
+
+	public long pack(EightPuzzleBoard board) {
+		return pack(board.getState());
+	}
+
+	public int[] unpack(long state) {
+		int[] tiles = new int[size];
+		for (int pos = 0; pos < size; pos++)
+			tiles[pos] = getTileAt(state, pos);
+		return tiles;
+	}
+
+	public int getTileAt(long state, int pos) {
+		return (int) (state >>> (4 * pos)) & 0xF;
+	}
+
+	/**
+	 * Returns the positions of all tiles, packed like a state: the position
+	 * of tile <code>t</code> is stored in bits <code>4t</code> to
+	 * <code>4t+3</code>, the gap position in the lowest four bits.
+	 */
+	public long getPositions(long state) {
+		long result = 0;
+		for (int pos = 0; pos < size; pos++)
+			result |= ((long) pos) << (4 * ((state >>> (4 * pos)) & 0xF));
+		return result;
+	}
+
+	public int getGapPosition(long state) {
+		for (int pos = 0; pos < size; pos++)
+			if (((state >>> (4 * pos)) & 0xF) == 0)
+				return pos;
+		return -1;
+	}
+
+	/**
+	 * Returns the position the gap moves to when moving it from
+	 * <code>gapPos</code> in the given direction, or -1 if the move is not
+	 * possible.
+	 */
+	public int getNeighbor(int gapPos, int dir) {
+		return neighbors[4 * gapPos + dir];
+	}
+
+	/**
+	 * Moves the gap from <code>gapPos</code> to the adjacent position
+	 * <code>to</code> and returns the resulting state.
+	 */
+	public long move(long state, int gapPos, int to) {
+		long tile = (state >>> (4 * to)) & 0xF;
+		return (state & ~(0xFL << (4 * to))) | (tile << (4 * gapPos));
+	}
+
+	/** Returns the Manhattan distance of the state to the goal. */
+	public int getManhattanDistance(long state) {
+		int result = 0;
+		for (int pos = 0; pos < size; pos++)
+			result += manhattan[size * (int) ((state >>> (4 * pos)) & 0xF) + pos];
+		return result;
+	}
+
+	/**
+	 * Returns the change of the Manhattan distance caused by moving the gap
+	 * from <code>gapPos</code> to <code>to</code> in the given state.
+	 */
+	public int getManhattanDelta(long state, int gapPos, int to) {
+		int tile = (int) (state >>> (4 * to)) & 0xF;
+		return manhattan[size * tile + gapPos] - manhattan[size * tile + to];
+	}
+
+	/** Returns the direction which undoes a move in the specified direction. */
+	public static int getReverseDirection(int dir) {
+		return dir ^ 1;
+	}
+
+	/** Returns the {@link EightPuzzleBoard} action corresponding to a direction. */
+	public static Action getAction(int dir) {
+		return ACTIONS[dir];
+	}
+
+	/**
+	 * Checks whether the goal state can be reached from the given state. Only
+	 * half of all tile permutations are solvable.
+	 */
+	public boolean isSolvable(long state) {
+		int inversions = 0;
+		for (int i = 0; i < size; i++) {
+			int ti = getTileAt(state, i);
+			for (int j = i + 1; j < size && ti != 0; j++) {
+				int tj = getTileAt(state, j);
+				if (tj != 0 && tj < ti)
+					inversions++;
+			}
+		}
+		if (width % 2 == 1)
+			return inversions % 2 == 0;
+		// gap row counted from the top; goal has the gap in row 0
+		int gapRow = getGapPosition(state) / width;
+		return (inversions + gapRow) % 2 == 0;
+	}
+}
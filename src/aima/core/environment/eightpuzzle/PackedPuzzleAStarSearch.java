@@ -0,0 +1,247 @@
+package aima.core.environment.eightpuzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.util.CancelableThread;
+import aima.core.util.datastructure.LongIntHashMap;
+
+/**
+ * A* graph search specialized for sliding-tile puzzles. States are packed into
+ * <code>long</code> values by a {@link PackedPuzzle}, the search tree is kept
+ * in parallel primitive arrays, the explored set and the frontier lookup share
+ * one {@link LongIntHashMap}, and successors are generated by bit operations.
+ * The Manhattan distance is used as heuristic and updated incrementally. As
+ * all step costs are 1, the frontier is organized as a bucket queue indexed by
+ * f-values, with last-in-first-out order within a bucket (deeper nodes first).
+ * <br>
+ * The search returns the same kind of action lists as
+ * {@link aima.core.search.informed.AStarSearch} with
+ * {@link ManhattanHeuristicFunction}, but allocates no objects per generated
+ * state. Besides 8-puzzle problems, it can solve 15-puzzle instances with
+ * {@link #findActions(int[])}.
+ */
+public class PackedPuzzleAStarSearch implements SearchForActions {
+
+	public static final String METRIC_NODES_GENERATED = "nodesGenerated";
+
+	private final PackedPuzzle puzzle;
+	private final NodeExpander nodeExpander = new NodeExpander();
+	private final Metrics metrics = new Metrics();
+
+	// search tree, one entry per generated state
+	private long[] states;
+	private int[] parents;
+	private int[] pathCosts;
+	private byte[] heuristics;
+	private byte[] moves; // direction of the move which generated the state
+	private boolean[] expanded;
+	private int nodeCount;
+	private LongIntHashMap nodeLookup;
+
+	// frontier: buckets[f] is a stack of node indices
+	private int[][] buckets = new int[0][];
+	private int[] bucketSizes = new int[0];
+	private int frontierSize;
+	private int maxFrontierSize;
+
+	/** Creates an A* search for the 8-puzzle. */
+	public PackedPuzzleAStarSearch() {
+		this(PackedPuzzle.EIGHT_PUZZLE);
+	}
+
+	public PackedPuzzleAStarSearch(PackedPuzzle puzzle) {
+		this.puzzle = puzzle;
+	}
+
+	/**
+	 * Searches a solution for a problem whose initial state is an
+	 * {@link EightPuzzleBoard} and whose goal is the standard goal board.
+	 */
+	@Override
+	public List<Action> findActions(Problem p) {
+		if (!(p.getInitialState() instanceof EightPuzzleBoard) || puzzle.getWidth() != 3)
+			throw new IllegalArgumentException("Packed search requires an 8-puzzle problem.");
+		if (!p.isGoalState(new EightPuzzleBoard(puzzle.unpack(puzzle.getGoal()))))
+			throw new IllegalArgumentException("Packed search supports only the standard goal state.");
+		return findActions(((EightPuzzleBoard) p.getInitialState()).getState());
+	}
+
+	/**
+	 * Searches a sequence of gap moves leading from the given board (row by
+	 * row, 0 denoting the gap) to the goal state.
+	 */
+	public List<Action> findActions(int[] tiles) {
+		clearInstrumentation();
+		long start = puzzle.pack(tiles);
+		if (!puzzle.isSolvable(start))
+			return SearchUtils.failure();
+		int goalIdx = search(start);
+		List<Action> result = goalIdx != -1 ? getSequenceOfActions(goalIdx) : SearchUtils.failure();
+		releaseMemory();
+		return result;
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns a node expander for compatibility with the search framework.
+	 * States are expanded without nodes here, so node listeners added to this
+	 * expander are never informed.
+	 */
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/** Returns the index of a goal node or -1 if no solution was found. */
+	private int search(long start) {
+		long goal = puzzle.getGoal();
+		allocate(1024);
+		nodeLookup = new LongIntHashMap();
+		addToFrontier(addNode(start, -1, 0, puzzle.getManhattanDistance(start), (byte) -1));
+		int expandedCount = 0;
+		int f = 0;
+		while (frontierSize > 0) {
+			while (bucketSizes[f] == 0)
+				f++;
+			int idx = buckets[f][--bucketSizes[f]];
+			frontierSize--;
+			// skip entries which were superseded by a cheaper path
+			if (expanded[idx] || pathCosts[idx] + heuristics[idx] != f)
+				continue;
+			long state = states[idx];
+			if (state == goal) {
+				metrics.set(QueueSearch.METRIC_PATH_COST, pathCosts[idx]);
+				updateMetrics(expandedCount);
+				return idx;
+			}
+			expanded[idx] = true;
+			if ((++expandedCount & 0x3FF) == 0 && CancelableThread.currIsCanceled())
+				break;
+			int gapPos = puzzle.getGapPosition(state);
+			int g = pathCosts[idx] + 1;
+			int reverse = moves[idx] >= 0 ? PackedPuzzle.getReverseDirection(moves[idx]) : -1;
+			for (int dir = 0; dir < 4; dir++) {
+				int to = puzzle.getNeighbor(gapPos, dir);
+				if (to == -1 || dir == reverse)
+					continue;
+				long succ = puzzle.move(state, gapPos, to);
+				int succIdx = nodeLookup.get(succ, -1);
+				if (succIdx == -1) {
+					int h = heuristics[idx] + puzzle.getManhattanDelta(state, gapPos, to);
+					addToFrontier(addNode(succ, idx, g, h, (byte) dir));
+				} else if (!expanded[succIdx] && g < pathCosts[succIdx]) {
+					pathCosts[succIdx] = g;
+					parents[succIdx] = idx;
+					moves[succIdx] = (byte) dir;
+					addToFrontier(succIdx);
+				}
+			}
+		}
+		updateMetrics(expandedCount);
+		return -1;
+	}
+
+	private int addNode(long state, int parent, int pathCost, int h, byte move) {
+		if (nodeCount == states.length)
+			allocate(states.length * 2);
+		int idx = nodeCount++;
+		states[idx] = state;
+		parents[idx] = parent;
+		pathCosts[idx] = pathCost;
+		heuristics[idx] = (byte) h;
+		moves[idx] = move;
+		nodeLookup.put(state, idx, -1);
+		return idx;
+	}
+
+	private void addToFrontier(int idx) {
+		int f = pathCosts[idx] + heuristics[idx];
+		if (f >= buckets.length) {
+			int newLength = Math.max(f + 1, buckets.length * 2);
+			buckets = Arrays.copyOf(buckets, newLength);
+			bucketSizes = Arrays.copyOf(bucketSizes, newLength);
+		}
+		int[] bucket = buckets[f];
+		if (bucket == null)
+			bucket = buckets[f] = new int[64];
+		else if (bucketSizes[f] == bucket.length)
+			bucket = buckets[f] = Arrays.copyOf(bucket, bucket.length * 2);
+		bucket[bucketSizes[f]++] = idx;
+		if (++frontierSize > maxFrontierSize)
+			maxFrontierSize = frontierSize;
+	}
+
+	private void updateMetrics(int expandedCount) {
+		metrics.set(QueueSearch.METRIC_NODES_EXPANDED, expandedCount);
+		metrics.set(QueueSearch.METRIC_QUEUE_SIZE, frontierSize);
+		metrics.set(QueueSearch.METRIC_MAX_QUEUE_SIZE, maxFrontierSize);
+		metrics.set(METRIC_NODES_GENERATED, nodeCount);
+	}
+
+	private List<Action> getSequenceOfActions(int idx) {
+		List<Action> actions = new ArrayList<Action>();
+		if (parents[idx] == -1)
+			actions.add(NoOpAction.NO_OP);
+		for (; parents[idx] != -1; idx = parents[idx])
+			actions.add(PackedPuzzle.getAction(moves[idx]));
+		Collections.reverse(actions);
+		return actions;
+	}
+
+	private void allocate(int capacity) {
+		if (states == null || nodeCount == 0) {
+			states = new long[capacity];
+			parents = new int[capacity];
+			pathCosts = new int[capacity];
+			heuristics = new byte[capacity];
+			moves = new byte[capacity];
+			expanded = new boolean[capacity];
+		} else {
+			states = Arrays.copyOf(states, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			pathCosts = Arrays.copyOf(pathCosts, capacity);
+			heuristics = Arrays.copyOf(heuristics, capacity);
+			moves = Arrays.copyOf(moves, capacity);
+			expanded = Arrays.copyOf(expanded, capacity);
+		}
+	}
+
+	private void clearInstrumentation() {
+		metrics.set(QueueSearch.METRIC_NODES_EXPANDED, 0);
+		metrics.set(QueueSearch.METRIC_QUEUE_SIZE, 0);
+		metrics.set(QueueSearch.METRIC_MAX_QUEUE_SIZE, 0);
+		metrics.set(QueueSearch.METRIC_PATH_COST, 0);
+		metrics.set(METRIC_NODES_GENERATED, 0);
+	}
+
+	/** Drops the search tree so that memory is not held between searches. */
+	private void releaseMemory() {
+		states = null;
+		parents = null;
+		pathCosts = null;
+		heuristics = null;
+		moves = null;
+		expanded = null;
+		nodeCount = 0;
+		nodeLookup = null;
+		buckets = new int[0][];
+		bucketSizes = new int[0];
+		frontierSize = 0;
+		maxFrontierSize = 0;
+	}
+}
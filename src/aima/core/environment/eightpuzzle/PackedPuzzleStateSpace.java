@@ -0,0 +1,109 @@
+package aima.core.environment.eightpuzzle;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.problem.ReversibleStateSpace;
+
+/**
+ * Reversible state space for sliding-tile puzzles based on
+ * {@link PackedPuzzle}. The current state is a single <code>long</code>,
+ * moves are the four gap directions, and the Manhattan distance and the tile
+ * positions are updated incrementally. Alternatively, an additive pattern
+ * database heuristic can be used. The goal state places tile <code>i</code> at position
+ * <code>i</code>, as in {@link EightPuzzleGoalTest}.
+ */
+public class PackedPuzzleStateSpace implements ReversibleStateSpace {
+
+	private final PackedPuzzle puzzle;
+	private long state;
+	private int gapPos;
+	// tile positions, see PackedPuzzle.getPositions(long)
+	private long positions;
+	private int manhattan;
+	private AdditivePatternDatabaseHeuristic patternDatabases;
+
+	/** Creates a state space for the 8-puzzle starting with the given board. */
+	public PackedPuzzleStateSpace(EightPuzzleBoard board) {
+		this(PackedPuzzle.EIGHT_PUZZLE, board.getState());
+	}
+
+	/**
+	 * Creates a state space for the given puzzle starting with a board given
+	 * row by row, with 0 denoting the gap.
+	 */
+	public PackedPuzzleStateSpace(PackedPuzzle puzzle, int[] tiles) {
+		this.puzzle = puzzle;
+		state = puzzle.pack(tiles);
+		gapPos = puzzle.getGapPosition(state);
+		positions = puzzle.getPositions(state);
+		manhattan = puzzle.getManhattanDistance(state);
+	}
+
+	/**
+	 * Creates a state space which uses the given pattern databases as
+	 * heuristic instead of the Manhattan distance.
+	 */
+	public PackedPuzzleStateSpace(AdditivePatternDatabaseHeuristic patternDatabases, int[] tiles) {
+		this(patternDatabases.getPuzzle(), tiles);
+		this.patternDatabases = patternDatabases;
+	}
+
+	public PackedPuzzle getPuzzle() {
+		return puzzle;
+	}
+
+	@Override
+	public boolean isSolvable() {
+		return puzzle.isSolvable(state);
+	}
+
+	@Override
+	public int getMoveCount() {
+		return 4;
+	}
+
+	@Override
+	public boolean isApplicable(int move) {
+		return puzzle.getNeighbor(gapPos, move) != -1;
+	}
+
+	@Override
+	public double apply(int move) {
+		int to = puzzle.getNeighbor(gapPos, move);
+		manhattan += puzzle.getManhattanDelta(state, gapPos, to);
+		int tile = puzzle.getTileAt(state, to);
+		positions = (positions & ~(0xFL << (4 * tile)) & ~0xFL) | ((long) gapPos << (4 * tile)) | to;
+		state = puzzle.move(state, gapPos, to);
+		gapPos = to;
+		return 1;
+	}
+
+	@Override
+	public void undo(int move) {
+		apply(PackedPuzzle.getReverseDirection(move));
+	}
+
+	@Override
+	public int getReverseMove(int move) {
+		return PackedPuzzle.getReverseDirection(move);
+	}
+
+	@Override
+	public boolean isGoalState() {
+		return state == puzzle.getGoal();
+	}
+
+	@Override
+	public double h() {
+		return patternDatabases != null ? patternDatabases.hForPositions(positions) : manhattan;
+	}
+
+	@Override
+	public long getStateKey() {
+		return state;
+	}
+
+	@Override
+	public Action getAction(int move) {
+		return PackedPuzzle.getAction(move);
+	}
+}
@@ -0,0 +1,376 @@
+package aima.core.environment.eightpuzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Pattern database for sliding-tile puzzles. For a subset of the tiles (the
+ * pattern), the database stores the minimal number of moves of pattern tiles
+ * which are needed to bring them to their goal positions, for every placement
+ * of the pattern tiles and the gap. Moves of other tiles are free. So the
+ * values of databases with disjoint patterns can be added to obtain an
+ * admissible heuristic (see {@link AdditivePatternDatabaseHeuristic}). As the
+ * gap position is part of the table index, the sum is also consistent.<br>
+ * <br>
+ * The database is computed by a breadth-first search backwards from the goal
+ * placement. Each pattern value is at least the Manhattan distance of the
+ * pattern tiles. Only the difference to this distance is stored, four bits
+ * per placement. Differences above 15 are stored as 15, so a value is the
+ * minimum of the exact value and the Manhattan distance plus 15. This keeps
+ * the values admissible and consistent: a move changes both terms by at most
+ * one, and it moves a single tile, so it changes the sum of disjoint
+ * databases by at most its cost. Placements are indexed by their rank among
+ * all arrangements of the pattern tiles on the board, times the board size,
+ * plus the gap position.<br>
+ * <br>
+ * Databases can be saved to a file and loaded again. Loading maps the file
+ * into memory, so the table is not copied onto the heap and pages are read on
+ * demand.
+ */
+public class PatternDatabase {
+
+	private static final int MAGIC = 0x50444231; // "PDB1"
+	// largest difference to the Manhattan distance which fits into a nibble
+	private static final int MAX_DELTA = 15;
+
+	private final PackedPuzzle puzzle;
+	private final int[] tiles;
+	private final ByteBuffer table;
+
+	private PatternDatabase(PackedPuzzle puzzle, int[] tiles, ByteBuffer table) {
+		this.puzzle = puzzle;
+		this.tiles = tiles;
+		this.table = table;
+	}
+
+	/**
+	 * Computes the pattern database for the specified pattern tiles. The
+	 * pattern must neither be empty nor contain the gap (tile 0).
+	 */
+	public static PatternDatabase build(PackedPuzzle puzzle, int... tiles) {
+		checkPattern(puzzle, tiles);
+		int[] pattern = tiles.clone();
+		Builder builder = new Builder(puzzle, pattern);
+		return new PatternDatabase(puzzle, pattern, ByteBuffer.wrap(builder.build()));
+	}
+
+	/**
+	 * Maps a database file into memory. The file must have been written by
+	 * {@link #save(File)} for a puzzle of the same width.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read or its contents are invalid.
+	 */
+	public static PatternDatabase load(PackedPuzzle puzzle, File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 12 || buffer.getInt() != MAGIC)
+				throw new IOException("Not a pattern database file: " + file);
+			if (buffer.getInt() != puzzle.getWidth())
+				throw new IOException("Pattern database was computed for a different puzzle size.");
+			int tileCount = buffer.getInt();
+			// the tiles and the table length must follow
+			if (tileCount <= 0 || tileCount >= puzzle.getSize() || buffer.remaining() < 4 * (tileCount + 1))
+				throw new IOException("Pattern database file is corrupt: " + file);
+			int[] tiles = new int[tileCount];
+			for (int i = 0; i < tiles.length; i++)
+				tiles[i] = buffer.getInt();
+			int expectedLength;
+			try {
+				checkPattern(puzzle, tiles);
+				expectedLength = getTableLength(puzzle, tiles.length);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Pattern database file is corrupt: " + file, e);
+			}
+			int tableLength = buffer.getInt();
+			if (tableLength != expectedLength || buffer.remaining() != tableLength)
+				throw new IOException("Pattern database file is corrupt: " + file);
+			return new PatternDatabase(puzzle, tiles, buffer.slice());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/** Writes the database to the specified file. */
+	public void save(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(MAGIC);
+			data.writeInt(puzzle.getWidth());
+			data.writeInt(tiles.length);
+			for (int tile : tiles)
+				data.writeInt(tile);
+			data.writeInt(table.capacity());
+			for (int i = 0; i < table.capacity(); i++)
+				data.write(table.get(i));
+			data.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	public PackedPuzzle getPuzzle() {
+		return puzzle;
+	}
+
+	/** Returns the pattern tiles. */
+	public int[] getTiles() {
+		return tiles.clone();
+	}
+
+	/** Returns the size of the table in bytes. */
+	public int getTableSize() {
+		return table.capacity();
+	}
+
+	/**
+	 * Returns the number of pattern tile moves needed to solve the pattern.
+	 *
+	 * @param positions
+	 *            positions of all tiles and the gap (index 0), indexed by tile
+	 *            number
+	 */
+	public int getValue(int[] positions) {
+		long packed = 0;
+		for (int tile = 0; tile < positions.length; tile++)
+			packed |= ((long) positions[tile]) << (4 * tile);
+		return getValueForPositions(packed);
+	}
+
+	/** Returns the value for a packed state. */
+	public int getValue(long state) {
+		return getValueForPositions(puzzle.getPositions(state));
+	}
+
+	/**
+	 * Returns the number of pattern tile moves needed to solve the pattern.
+	 *
+	 * @param positions
+	 *            positions of all tiles, packed as returned by
+	 *            {@link PackedPuzzle#getPositions(long)}
+	 */
+	public int getValueForPositions(long positions) {
+		int rank = 0;
+		int used = 0;
+		int manhattan = 0;
+		int size = puzzle.getSize();
+		for (int i = 0; i < tiles.length; i++) {
+			int pos = (int) (positions >>> (4 * tiles[i])) & 0xF;
+			rank = rank * (size - i) + pos - Integer.bitCount(used & ((1 << pos) - 1));
+			used |= 1 << pos;
+			manhattan += getManhattanDistance(tiles[i], pos);
+		}
+		int index = rank * size + (int) (positions & 0xF);
+		int b = table.get(index >> 1);
+		return manhattan + (((index & 1) == 0 ? b : b >> 4) & 0xF);
+	}
+
+	private int getManhattanDistance(int tile, int pos) {
+		int width = puzzle.getWidth();
+		return Math.abs(pos / width - tile / width) + Math.abs(pos % width - tile % width);
+	}
+
+	private static void checkPattern(PackedPuzzle puzzle, int[] tiles) {
+		if (tiles.length == 0 || tiles.length >= puzzle.getSize())
+			throw new IllegalArgumentException("Pattern must contain at least one and not all tiles.");
+		boolean[] seen = new boolean[puzzle.getSize()];
+		for (int tile : tiles) {
+			if (tile <= 0 || tile >= puzzle.getSize() || seen[tile])
+				throw new IllegalArgumentException("Invalid pattern tiles: " + Arrays.toString(tiles));
+			seen[tile] = true;
+		}
+	}
+
+	/** Returns the number of placements of k tiles times the number of gap positions. */
+	private static int getEntryCount(PackedPuzzle puzzle, int k) {
+		long entries = puzzle.getSize();
+		for (int i = 0; i < k; i++)
+			entries *= puzzle.getSize() - i;
+		if (entries > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Pattern too large.");
+		return (int) entries;
+	}
+
+	/** Returns the number of bytes needed for a pattern of k tiles. */
+	private static int getTableLength(PackedPuzzle puzzle, int k) {
+		return (int) ((getEntryCount(puzzle, k) + 1L) / 2);
+	}
+
+	/**
+	 * Breadth-first search in the abstract state space consisting of pattern
+	 * tile placements and gap positions. States are packed into an int, four
+	 * bits per pattern tile position followed by the gap position. Moves of
+	 * non-pattern tiles cost nothing, so each layer is first closed under
+	 * such moves before the next layer is generated.
+	 */
+	private static class Builder {
+		private final PackedPuzzle puzzle;
+		private final int[] tiles;
+		private final int size;
+		private final int k;
+		// distances indexed by rank * size + gap, -1 if not yet reached
+		private final byte[] distances;
+
+		Builder(PackedPuzzle puzzle, int[] tiles) {
+			this.puzzle = puzzle;
+			this.tiles = tiles;
+			size = puzzle.getSize();
+			k = tiles.length;
+			if (k > 7)
+				throw new IllegalArgumentException("Patterns of more than 7 tiles are not supported.");
+			distances = new byte[getEntryCount(puzzle, k)];
+		}
+
+		byte[] build() {
+			Arrays.fill(distances, (byte) -1);
+			int goal = 0;
+			for (int i = 0; i < k; i++)
+				goal |= tiles[i] << (4 * i);
+			// gap position 0 in the goal
+			IntList layer = new IntList();
+			IntList next = new IntList();
+			IntList stack = new IntList();
+			distances[index(goal)] = 0;
+			next.add(goal);
+			for (int d = 0; next.size > 0; d++) {
+				if (d == Byte.MAX_VALUE)
+					throw new IllegalStateException("Pattern distance exceeds supported range.");
+				// close the layer under free moves
+				layer.clear();
+				stack.clear();
+				stack.addAll(next);
+				next.clear();
+				while (stack.size > 0) {
+					int state = stack.data[--stack.size];
+					layer.add(state);
+					for (int dir = 0; dir < 4; dir++) {
+						int succ = move(state, dir, false);
+						if (succ != -1 && distances[index(succ)] == -1) {
+							distances[index(succ)] = (byte) d;
+							stack.add(succ);
+						}
+					}
+				}
+				// moves of pattern tiles lead to the next layer
+				for (int i = 0; i < layer.size; i++) {
+					int state = layer.data[i];
+					for (int dir = 0; dir < 4; dir++) {
+						int succ = move(state, dir, true);
+						if (succ != -1 && distances[index(succ)] == -1) {
+							distances[index(succ)] = (byte) (d + 1);
+							next.add(succ);
+						}
+					}
+				}
+			}
+			return compress();
+		}
+
+		/**
+		 * Moves the gap in the given direction if the moved tile is (or is
+		 * not) a pattern tile. Returns the new state or -1.
+		 */
+		private int move(int state, int dir, boolean patternTile) {
+			int gap = (state >>> (4 * k)) & 0xF;
+			int to = puzzle.getNeighbor(gap, dir);
+			if (to == -1)
+				return -1;
+			for (int i = 0; i < k; i++) {
+				if (((state >>> (4 * i)) & 0xF) == to) {
+					if (!patternTile)
+						return -1;
+					state = (state & ~(0xF << (4 * i))) | (gap << (4 * i));
+					return (state & ~(0xF << (4 * k))) | (to << (4 * k));
+				}
+			}
+			if (patternTile)
+				return -1;
+			return (state & ~(0xF << (4 * k))) | (to << (4 * k));
+		}
+
+		private int rank(int state) {
+			int rank = 0;
+			int used = 0;
+			for (int i = 0; i < k; i++) {
+				int pos = (state >>> (4 * i)) & 0xF;
+				rank = rank * (size - i) + pos - Integer.bitCount(used & ((1 << pos) - 1));
+				used |= 1 << pos;
+			}
+			return rank;
+		}
+
+		private int index(int state) {
+			return rank(state) * size + ((state >>> (4 * k)) & 0xF);
+		}
+
+		/** Stores the differences of the distances to the Manhattan distances. */
+		private byte[] compress() {
+			byte[] table = new byte[getTableLength(puzzle, k)];
+			int[] positions = new int[k];
+			enumerate(0, 0, positions, table);
+			return table;
+		}
+
+		private void enumerate(int i, int used, int[] positions, byte[] table) {
+			if (i == k) {
+				int state = 0;
+				int manhattan = 0;
+				int width = puzzle.getWidth();
+				for (int j = 0; j < k; j++) {
+					state |= positions[j] << (4 * j);
+					manhattan += Math.abs(positions[j] / width - tiles[j] / width)
+							+ Math.abs(positions[j] % width - tiles[j] % width);
+				}
+				int rank = rank(state);
+				for (int gap = 0; gap < size; gap++) {
+					int index = rank * size + gap;
+					int d = distances[index];
+					if ((used & (1 << gap)) == 0 && d >= 0) {
+						int delta = Math.min(d - manhattan, MAX_DELTA);
+						table[index >> 1] |= (index & 1) == 0 ? delta : delta << 4;
+					}
+				}
+				return;
+			}
+			for (int pos = 0; pos < size; pos++) {
+				if ((used & (1 << pos)) == 0) {
+					positions[i] = pos;
+					enumerate(i + 1, used | (1 << pos), positions, table);
+				}
+			}
+		}
+	}
+
+	/** Minimal growable int array. */
+	private static class IntList {
+		int[] data = new int[1024];
+		int size;
+
+		void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+
+		void addAll(IntList other) {
+			for (int i = 0; i < other.size; i++)
+				add(other.data[i]);
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+}
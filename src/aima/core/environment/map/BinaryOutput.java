@@ -0,0 +1,86 @@
+package aima.core.environment.map;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes primitive values and arrays to a file in big-endian order, as read
+ * by {@link MappedInput}. Arrays are transferred to the file channel in
+ * blocks through a direct buffer.
+ */
+class BinaryOutput implements Closeable {
+
+	private final FileOutputStream out;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+	BinaryOutput(File file) throws IOException {
+		out = new FileOutputStream(file);
+		channel = out.getChannel();
+	}
+
+	void writeInt(int value) throws IOException {
+		if (buffer.remaining() < 4)
+			flush();
+		buffer.putInt(value);
+	}
+
+	void writeDouble(double value) throws IOException {
+		if (buffer.remaining() < 8)
+			flush();
+		buffer.putDouble(value);
+	}
+
+	void writeInts(int[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			if (buffer.remaining() < 4)
+				flush();
+			int count = Math.min(values.length - off, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, off, count);
+			buffer.position(buffer.position() + count * 4);
+			off += count;
+		}
+	}
+
+	void writeDoubles(double[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			if (buffer.remaining() < 8)
+				flush();
+			int count = Math.min(values.length - off, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(values, off, count);
+			buffer.position(buffer.position() + count * 8);
+			off += count;
+		}
+	}
+
+	void writeBytes(byte[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			if (!buffer.hasRemaining())
+				flush();
+			int count = Math.min(values.length - off, buffer.remaining());
+			buffer.put(values, off, count);
+			off += count;
+		}
+	}
+
+	/** Writes the buffered data and closes the file. */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,93 @@
+package aima.core.environment.map;
+
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.problem.DefaultGoalTest;
+import aima.core.search.framework.problem.Problem;
+
+/**
+ * Decorator which answers map problems from a {@link RouteCache} if possible
+ * and stores the results of the decorated search otherwise. It can be passed to
+ * {@link MapAgent} and {@link SimpleMapAgent} like any other search. Only
+ * problems with an explicit goal location are cached. The problems should be
+ * defined on the versioned map of the cache; the cache cannot notice
+ * modifications made elsewhere.<br>
+ * <br>
+ * The algorithm name distinguishes results of different searches sharing one
+ * cache. Searches with different heuristics or settings should use different
+ * names.
+ */
+public class CachingMapSearch implements SearchForActions {
+
+	public static final String METRIC_CACHE_HIT = "cacheHit";
+
+	private final SearchForActions search;
+	private final RouteCache cache;
+	private final String algorithm;
+	private Metrics metrics = new Metrics();
+
+	/** Uses the class name of the search as algorithm name. */
+	public CachingMapSearch(SearchForActions search, RouteCache cache) {
+		this(search, cache, search.getClass().getName());
+	}
+
+	public CachingMapSearch(SearchForActions search, RouteCache cache, String algorithm) {
+		this.search = search;
+		this.cache = cache;
+		this.algorithm = algorithm;
+	}
+
+	/** Returns the decorated search. */
+	public SearchForActions getSearch() {
+		return search;
+	}
+
+	public RouteCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		if (!(p.getGoalTest() instanceof DefaultGoalTest) || !(p.getInitialState() instanceof String)) {
+			List<Action> result = search.findActions(p);
+			metrics = search.getMetrics();
+			return result;
+		}
+		String from = (String) p.getInitialState();
+		String to = ((DefaultGoalTest) p.getGoalTest()).getGoalState().toString();
+		List<Action> result = cache.get(from, to, algorithm);
+		if (result != null) {
+			metrics = new Metrics();
+			metrics.set(METRIC_CACHE_HIT, 1);
+		} else {
+			long version = cache.getMap().getVersion();
+			result = search.findActions(p);
+			cache.put(from, to, algorithm, version, result);
+			metrics = search.getMetrics();
+			metrics.set(METRIC_CACHE_HIT, 0);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node expander of the decorated search, which is not used
+	 * for cache hits.
+	 */
+	@Override
+	public NodeExpander getNodeExpander() {
+		return search.getNodeExpander();
+	}
+
+	/**
+	 * Returns the metrics of the decorated search, or of the cache lookup only
+	 * if the result was found in the cache.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+}
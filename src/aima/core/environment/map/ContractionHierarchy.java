@@ -0,0 +1,685 @@
+package aima.core.environment.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import aima.core.util.datastructure.IndexedIntPriorityQueue;
+
+/**
+ * Contraction hierarchy of a {@link CsrMap}. Locations are contracted one
+ * after the other: a contracted location is removed from the graph, and
+ * shortcut links are inserted between its remaining neighbors wherever the
+ * path over the location was the only shortest one (witness search). The
+ * contraction order defines a rank for every location. Afterwards, a shortest
+ * path between any two locations can be found by two Dijkstra searches which
+ * only follow links to locations of higher rank (see
+ * {@link ContractionHierarchySearch}). Such searches settle only a tiny part
+ * of the map.<br>
+ * <br>
+ * The order is determined by the edge difference (number of shortcuts needed
+ * minus number of removed links) plus the number of already contracted
+ * neighbors. Preprocessing works in rounds: locations whose priority is lower
+ * than the priorities of all their neighbors form an independent set. The
+ * witness searches for these locations and the priority updates of their
+ * neighbors are run in parallel; the graph is only modified in between.<br>
+ * <br>
+ * Each shortcut refers to the two links it replaces, so paths can be unpacked
+ * into original links. A hierarchy can be saved to a file and loaded again
+ * for the same map.
+ */
+public class ContractionHierarchy {
+
+	private static final int MAGIC = 0x43484231; // "CHB1"
+	/** Maximal number of locations settled by a witness search. */
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	private final CsrMap map;
+	private final int[] ranks;
+	// all links, originals first (same indices as in the map), then shortcuts
+	private final int[] edgeTails;
+	private final int[] edgeHeads;
+	private final double[] edgeWeights;
+	// replaced links of shortcuts, -1 for original links
+	private final int[] edgeFirstParts;
+	private final int[] edgeSecondParts;
+	// links to higher ranked locations, grouped by tail
+	private final int[] firstUp;
+	private final int[] upEdges;
+	// links from higher ranked locations, grouped by head
+	private final int[] firstDown;
+	private final int[] downEdges;
+
+	/** Builds the hierarchy using all available processors. */
+	public static ContractionHierarchy build(CsrMap map) {
+		return build(map, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Builds the hierarchy using the specified number of threads. */
+	public static ContractionHierarchy build(CsrMap map, int numThreads) {
+		Contractor contractor = new Contractor(map, Math.max(numThreads, 1));
+		contractor.contract();
+		return new ContractionHierarchy(map, contractor.ranks, Arrays.copyOf(contractor.tails, contractor.edgeCount),
+				Arrays.copyOf(contractor.heads, contractor.edgeCount),
+				Arrays.copyOf(contractor.weights, contractor.edgeCount),
+				Arrays.copyOf(contractor.firstParts, contractor.edgeCount),
+				Arrays.copyOf(contractor.secondParts, contractor.edgeCount));
+	}
+
+	/**
+	 * Loads a hierarchy written by {@link #save(File)}. It must have been
+	 * built for a map with the same locations and links.
+	 */
+	public static ContractionHierarchy load(CsrMap map, File file) throws IOException {
+		MappedInput in = new MappedInput(file);
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a contraction hierarchy file: " + file);
+			int n = in.readInt();
+			int originalCount = in.readInt();
+			int m = in.readInt();
+			if (n != map.getLocationCount() || originalCount != map.getLinkCount() || m < originalCount)
+				throw new IOException("Contraction hierarchy was built for a different map.");
+			int[] ranks = new int[n];
+			in.readInts(ranks);
+			int[] firstParts = new int[m];
+			int[] secondParts = new int[m];
+			in.readInts(firstParts);
+			in.readInts(secondParts);
+			int[] tails = new int[m];
+			int[] heads = new int[m];
+			double[] weights = new double[m];
+			// original links are taken from the map
+			for (int v = 0; v < n; v++) {
+				for (int e = map.getFirstEdge(v); e < map.getFirstEdge(v + 1); e++) {
+					tails[e] = v;
+					heads[e] = map.getHead(e);
+					weights[e] = map.getWeight(e);
+				}
+			}
+			for (int e = originalCount; e < m; e++) {
+				int first = firstParts[e];
+				int second = secondParts[e];
+				if (first < 0 || first >= e || second < 0 || second >= e)
+					throw new IOException("Contraction hierarchy file is corrupt: " + file);
+				tails[e] = tails[first];
+				heads[e] = heads[second];
+				weights[e] = weights[first] + weights[second];
+			}
+			return new ContractionHierarchy(map, ranks, tails, heads, weights, firstParts, secondParts);
+		} finally {
+			in.close();
+		}
+	}
+
+	private ContractionHierarchy(CsrMap map, int[] ranks, int[] tails, int[] heads, double[] weights,
+			int[] firstParts, int[] secondParts) {
+		this.map = map;
+		this.ranks = ranks;
+		edgeTails = tails;
+		edgeHeads = heads;
+		edgeWeights = weights;
+		edgeFirstParts = firstParts;
+		edgeSecondParts = secondParts;
+		int n = map.getLocationCount();
+		firstUp = new int[n + 1];
+		firstDown = new int[n + 1];
+		int upCount = 0;
+		int downCount = 0;
+		for (int e = 0; e < tails.length; e++) {
+			if (ranks[heads[e]] > ranks[tails[e]]) {
+				firstUp[tails[e] + 1]++;
+				upCount++;
+			} else if (ranks[heads[e]] < ranks[tails[e]]) {
+				firstDown[heads[e] + 1]++;
+				downCount++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			firstUp[v + 1] += firstUp[v];
+			firstDown[v + 1] += firstDown[v];
+		}
+		upEdges = new int[upCount];
+		downEdges = new int[downCount];
+		int[] nextUp = Arrays.copyOf(firstUp, n);
+		int[] nextDown = Arrays.copyOf(firstDown, n);
+		for (int e = 0; e < tails.length; e++) {
+			if (ranks[heads[e]] > ranks[tails[e]])
+				upEdges[nextUp[tails[e]]++] = e;
+			else if (ranks[heads[e]] < ranks[tails[e]])
+				downEdges[nextDown[heads[e]]++] = e;
+		}
+	}
+
+	/**
+	 * Writes the hierarchy to a file. Only the ranks and the composition of
+	 * the shortcuts are stored, everything else is derived from the map.
+	 */
+	public void save(File file) throws IOException {
+		BinaryOutput out = new BinaryOutput(file);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(map.getLocationCount());
+			out.writeInt(map.getLinkCount());
+			out.writeInt(edgeTails.length);
+			out.writeInts(ranks);
+			out.writeInts(edgeFirstParts);
+			out.writeInts(edgeSecondParts);
+		} finally {
+			out.close();
+		}
+	}
+
+	public CsrMap getMap() {
+		return map;
+	}
+
+	/** Returns the position of the location in the contraction order. */
+	public int getRank(int location) {
+		return ranks[location];
+	}
+
+	/** Returns the number of inserted shortcuts. */
+	public int getShortcutCount() {
+		return edgeTails.length - map.getLinkCount();
+	}
+
+	//
+	// package-private access for the query
+	//
+
+	int getFirstUpEdge(int location) {
+		return firstUp[location];
+	}
+
+	int getUpEdge(int index) {
+		return upEdges[index];
+	}
+
+	int getFirstDownEdge(int location) {
+		return firstDown[location];
+	}
+
+	int getDownEdge(int index) {
+		return downEdges[index];
+	}
+
+	int getTail(int edge) {
+		return edgeTails[edge];
+	}
+
+	int getHead(int edge) {
+		return edgeHeads[edge];
+	}
+
+	double getWeight(int edge) {
+		return edgeWeights[edge];
+	}
+
+	/**
+	 * Appends the heads of the original links represented by the link to the
+	 * path.
+	 */
+	void unpack(int edge, List<Integer> path) {
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = edge;
+		while (size > 0) {
+			int e = stack[--size];
+			if (edgeFirstParts[e] == -1) {
+				path.add(edgeHeads[e]);
+			} else {
+				if (size + 2 > stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				// the first part is processed first
+				stack[size++] = edgeSecondParts[e];
+				stack[size++] = edgeFirstParts[e];
+			}
+		}
+	}
+
+	/** Performs the contraction and records ranks and shortcuts. */
+	private static class Contractor {
+		private final int n;
+		private final int numThreads;
+		// links
+		int[] tails;
+		int[] heads;
+		double[] weights;
+		int[] firstParts;
+		int[] secondParts;
+		int edgeCount;
+		// remaining graph: ids of outgoing and incoming links per location
+		private final int[][] outEdges;
+		private final int[] outCounts;
+		private final int[][] inEdges;
+		private final int[] inCounts;
+		private final boolean[] contracted;
+		private final int[] contractedNeighbors;
+		private final int[] priorities;
+		final int[] ranks;
+		private final WitnessSearch[] workspaces;
+
+		Contractor(CsrMap map, int numThreads) {
+			n = map.getLocationCount();
+			this.numThreads = numThreads;
+			int m = map.getLinkCount();
+			int capacity = Math.max(m * 2, 16);
+			tails = new int[capacity];
+			heads = new int[capacity];
+			weights = new double[capacity];
+			firstParts = new int[capacity];
+			secondParts = new int[capacity];
+			outEdges = new int[n][];
+			outCounts = new int[n];
+			inEdges = new int[n][];
+			inCounts = new int[n];
+			for (int v = 0; v < n; v++) {
+				outEdges[v] = new int[map.getFirstEdge(v + 1) - map.getFirstEdge(v) + 2];
+				inEdges[v] = new int[map.getFirstInEdge(v + 1) - map.getFirstInEdge(v) + 2];
+			}
+			for (int v = 0; v < n; v++) {
+				for (int e = map.getFirstEdge(v); e < map.getFirstEdge(v + 1); e++) {
+					tails[e] = v;
+					heads[e] = map.getHead(e);
+					weights[e] = map.getWeight(e);
+					firstParts[e] = -1;
+					secondParts[e] = -1;
+					// self loops are never part of shortest paths
+					if (heads[e] != v) {
+						outEdges[v][outCounts[v]++] = e;
+						inEdges[heads[e]][inCounts[heads[e]]++] = e;
+					}
+				}
+			}
+			edgeCount = m;
+			contracted = new boolean[n];
+			contractedNeighbors = new int[n];
+			priorities = new int[n];
+			ranks = new int[n];
+			workspaces = new WitnessSearch[numThreads];
+			for (int i = 0; i < numThreads; i++)
+				workspaces[i] = new WitnessSearch();
+		}
+
+		void contract() {
+			int[] remaining = new int[n];
+			for (int v = 0; v < n; v++)
+				remaining[v] = v;
+			int remainingCount = n;
+			updatePriorities(remaining, remainingCount);
+			boolean[] selected = new boolean[n];
+			boolean[] dirty = new boolean[n];
+			int[] batch = new int[n];
+			int[] dirtyList = new int[n];
+			int nextRank = 0;
+			ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+			try {
+				while (remainingCount > 0) {
+					// independent set of local priority minima
+					int batchSize = 0;
+					for (int i = 0; i < remainingCount; i++) {
+						int v = remaining[i];
+						if (isLocalMinimum(v))
+							batch[batchSize++] = v;
+					}
+					for (int i = 0; i < batchSize; i++)
+						selected[batch[i]] = true;
+					final int[] fBatch = batch;
+					final boolean[] fSelected = selected;
+					List<ShortcutList> shortcuts = runParallel(executor, batchSize, (ws, i) -> {
+						ws.findShortcuts(fBatch[i], fSelected);
+						return ws.shortcuts.copy();
+					});
+					// apply the contractions
+					int dirtyCount = 0;
+					for (int i = 0; i < batchSize; i++) {
+						int v = batch[i];
+						ranks[v] = nextRank++;
+						contracted[v] = true;
+						shortcuts.get(i).addTo(this);
+					}
+					for (int i = 0; i < batchSize; i++) {
+						int v = batch[i];
+						selected[v] = false;
+						dirtyCount = markNeighbors(v, outEdges[v], outCounts[v], true, dirty, dirtyList, dirtyCount);
+						dirtyCount = markNeighbors(v, inEdges[v], inCounts[v], false, dirty, dirtyList, dirtyCount);
+					}
+					int count = 0;
+					for (int i = 0; i < remainingCount; i++)
+						if (!contracted[remaining[i]])
+							remaining[count++] = remaining[i];
+					remainingCount = count;
+					for (int i = 0; i < dirtyCount; i++)
+						dirty[dirtyList[i]] = false;
+					compactAdjacency(dirtyList, dirtyCount);
+					updatePriorities(executor, dirtyList, dirtyCount);
+				}
+			} finally {
+				if (executor != null)
+					executor.shutdownNow();
+			}
+		}
+
+		private void updatePriorities(int[] locations, int count) {
+			ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+			try {
+				updatePriorities(executor, locations, count);
+			} finally {
+				if (executor != null)
+					executor.shutdownNow();
+			}
+		}
+
+		private void updatePriorities(ExecutorService executor, final int[] locations, int count) {
+			List<Integer> values = runParallel(executor, count, (ws, i) -> ws.computePriority(locations[i]));
+			for (int i = 0; i < count; i++)
+				priorities[locations[i]] = values.get(i);
+		}
+
+		/** Checks whether the location precedes all its remaining neighbors. */
+		private boolean isLocalMinimum(int v) {
+			for (int i = 0; i < outCounts[v]; i++)
+				if (!precedes(v, heads[outEdges[v][i]]))
+					return false;
+			for (int i = 0; i < inCounts[v]; i++)
+				if (!precedes(v, tails[inEdges[v][i]]))
+					return false;
+			return true;
+		}
+
+		private boolean precedes(int v, int w) {
+			return contracted[w] || priorities[v] < priorities[w] || priorities[v] == priorities[w] && v < w;
+		}
+
+		private int markNeighbors(int v, int[] edges, int count, boolean outgoing, boolean[] dirty, int[] list,
+				int size) {
+			for (int i = 0; i < count; i++) {
+				int w = outgoing ? heads[edges[i]] : tails[edges[i]];
+				if (!contracted[w]) {
+					if (!dirty[w]) {
+						dirty[w] = true;
+						list[size++] = w;
+					}
+					contractedNeighbors[w]++;
+				}
+			}
+			return size;
+		}
+
+		/** Removes links to contracted locations from the adjacency lists. */
+		private void compactAdjacency(int[] locations, int count) {
+			for (int i = 0; i < count; i++) {
+				int v = locations[i];
+				int size = 0;
+				for (int j = 0; j < outCounts[v]; j++)
+					if (!contracted[heads[outEdges[v][j]]])
+						outEdges[v][size++] = outEdges[v][j];
+				outCounts[v] = size;
+				size = 0;
+				for (int j = 0; j < inCounts[v]; j++)
+					if (!contracted[tails[inEdges[v][j]]])
+						inEdges[v][size++] = inEdges[v][j];
+				inCounts[v] = size;
+			}
+		}
+
+		/** Adds a shortcut unless an equally short link already exists. */
+		void addShortcut(int tail, int head, double weight, int first, int second) {
+			for (int i = 0; i < outCounts[tail]; i++) {
+				int e = outEdges[tail][i];
+				if (heads[e] == head && weights[e] <= weight)
+					return;
+			}
+			if (edgeCount == tails.length) {
+				int capacity = edgeCount * 2;
+				tails = Arrays.copyOf(tails, capacity);
+				heads = Arrays.copyOf(heads, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+				firstParts = Arrays.copyOf(firstParts, capacity);
+				secondParts = Arrays.copyOf(secondParts, capacity);
+			}
+			int e = edgeCount++;
+			tails[e] = tail;
+			heads[e] = head;
+			weights[e] = weight;
+			firstParts[e] = first;
+			secondParts[e] = second;
+			if (outCounts[tail] == outEdges[tail].length)
+				outEdges[tail] = Arrays.copyOf(outEdges[tail], outCounts[tail] * 2);
+			outEdges[tail][outCounts[tail]++] = e;
+			if (inCounts[head] == inEdges[head].length)
+				inEdges[head] = Arrays.copyOf(inEdges[head], inCounts[head] * 2);
+			inEdges[head][inCounts[head]++] = e;
+		}
+
+		/**
+		 * Runs a task for the indices from 0 to count-1, distributing them
+		 * among the threads. Each thread uses its own workspace.
+		 */
+		private <T> List<T> runParallel(ExecutorService executor, int count, final IndexTask<T> task) {
+			final List<T> results = new ArrayList<T>(count);
+			for (int i = 0; i < count; i++)
+				results.add(null);
+			if (executor == null || count < 64) {
+				for (int i = 0; i < count; i++)
+					results.set(i, task.run(workspaces[0], i));
+				return results;
+			}
+			final Object[] array = new Object[count];
+			final int total = count;
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < numThreads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = thread; i < total; i += numThreads)
+							array[i] = task.run(workspaces[thread], i);
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<Void> future : futures)
+					future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Contraction was interrupted.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Contraction failed.", e.getCause());
+			}
+			for (int i = 0; i < count; i++) {
+				@SuppressWarnings("unchecked")
+				T result = (T) array[i];
+				results.set(i, result);
+			}
+			return results;
+		}
+
+		private interface IndexTask<T> {
+			T run(WitnessSearch workspace, int index);
+		}
+
+		/** Local Dijkstra searches and shortcut computation of one thread. */
+		private class WitnessSearch {
+			private final double[] distances = new double[n];
+			private final int[] stamps = new int[n];
+			private int stamp;
+			private final IndexedIntPriorityQueue queue = new IndexedIntPriorityQueue(n);
+			// cheapest link to each neighbor of the contracted location
+			private final int[] neighborSlots = new int[n];
+			private final int[] neighborStamps = new int[n];
+			private final IntDoubleList ins = new IntDoubleList();
+			private final IntDoubleList outs = new IntDoubleList();
+			final ShortcutList shortcuts = new ShortcutList();
+
+			int computePriority(int v) {
+				findShortcuts(v, null);
+				return shortcuts.size - ins.size - outs.size + contractedNeighbors[v];
+			}
+
+			/**
+			 * Computes the shortcuts needed to contract v. Witness paths must
+			 * avoid v and all selected locations.
+			 */
+			void findShortcuts(int v, boolean[] selected) {
+				shortcuts.clear();
+				collect(v, outEdges[v], outCounts[v], true, outs);
+				collect(v, inEdges[v], inCounts[v], false, ins);
+				if (outs.size == 0)
+					return;
+				double maxOut = 0;
+				for (int j = 0; j < outs.size; j++)
+					maxOut = Math.max(maxOut, outs.values[j]);
+				for (int i = 0; i < ins.size; i++) {
+					int u = ins.locations[i];
+					double inWeight = ins.values[i];
+					search(u, v, selected, inWeight + maxOut);
+					for (int j = 0; j < outs.size; j++) {
+						int w = outs.locations[j];
+						if (w == u)
+							continue;
+						double viaWeight = inWeight + outs.values[j];
+						if (stamps[w] != stamp || distances[w] > viaWeight)
+							shortcuts.add(u, w, viaWeight, ins.edges[i], outs.edges[j]);
+					}
+				}
+			}
+
+			/** Collects the cheapest link to each remaining neighbor. */
+			private void collect(int v, int[] edges, int count, boolean outgoing, IntDoubleList result) {
+				result.clear();
+				newStamp();
+				for (int i = 0; i < count; i++) {
+					int e = edges[i];
+					int w = outgoing ? heads[e] : tails[e];
+					if (contracted[w])
+						continue;
+					if (neighborStamps[w] != stamp) {
+						neighborStamps[w] = stamp;
+						neighborSlots[w] = result.size;
+						result.add(w, weights[e], e);
+					} else if (weights[e] < result.values[neighborSlots[w]]) {
+						result.values[neighborSlots[w]] = weights[e];
+						result.edges[neighborSlots[w]] = e;
+					}
+				}
+			}
+
+			/** Bounded Dijkstra search from the source in the remaining graph. */
+			private void search(int source, int excluded, boolean[] selected, double maxDistance) {
+				newStamp();
+				queue.clear();
+				stamps[source] = stamp;
+				distances[source] = 0;
+				queue.offer(source, 0);
+				int settled = 0;
+				while (!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+					int x = queue.poll();
+					double dist = distances[x];
+					if (dist > maxDistance)
+						break;
+					settled++;
+					for (int i = 0; i < outCounts[x]; i++) {
+						int e = outEdges[x][i];
+						int y = heads[e];
+						if (y == excluded || contracted[y] || selected != null && selected[y])
+							continue;
+						double newDist = dist + weights[e];
+						if (stamps[y] != stamp || newDist < distances[y]) {
+							stamps[y] = stamp;
+							distances[y] = newDist;
+							queue.offer(y, newDist);
+						}
+					}
+				}
+			}
+
+			private void newStamp() {
+				if (++stamp == Integer.MAX_VALUE) {
+					Arrays.fill(stamps, 0);
+					Arrays.fill(neighborStamps, 0);
+					stamp = 1;
+				}
+			}
+		}
+	}
+
+	/** Neighbors with link weights and link ids. */
+	private static class IntDoubleList {
+		int[] locations = new int[16];
+		double[] values = new double[16];
+		int[] edges = new int[16];
+		int size;
+
+		void add(int location, double value, int edge) {
+			if (size == locations.length) {
+				locations = Arrays.copyOf(locations, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+				edges = Arrays.copyOf(edges, size * 2);
+			}
+			locations[size] = location;
+			values[size] = value;
+			edges[size] = edge;
+			size++;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	/** Shortcuts found for a contracted location. */
+	private static class ShortcutList {
+		int[] tails = new int[16];
+		int[] heads = new int[16];
+		double[] weights = new double[16];
+		int[] firstParts = new int[16];
+		int[] secondParts = new int[16];
+		int size;
+
+		void add(int tail, int head, double weight, int first, int second) {
+			if (size == tails.length) {
+				tails = Arrays.copyOf(tails, size * 2);
+				heads = Arrays.copyOf(heads, size * 2);
+				weights = Arrays.copyOf(weights, size * 2);
+				firstParts = Arrays.copyOf(firstParts, size * 2);
+				secondParts = Arrays.copyOf(secondParts, size * 2);
+			}
+			tails[size] = tail;
+			heads[size] = head;
+			weights[size] = weight;
+			firstParts[size] = first;
+			secondParts[size] = second;
+			size++;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		ShortcutList copy() {
+			ShortcutList result = new ShortcutList();
+			result.tails = Arrays.copyOf(tails, size);
+			result.heads = Arrays.copyOf(heads, size);
+			result.weights = Arrays.copyOf(weights, size);
+			result.firstParts = Arrays.copyOf(firstParts, size);
+			result.secondParts = Arrays.copyOf(secondParts, size);
+			result.size = size;
+			return result;
+		}
+
+		void addTo(Contractor contractor) {
+			for (int i = 0; i < size; i++)
+				contractor.addShortcut(tails[i], heads[i], weights[i], firstParts[i], secondParts[i]);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.problem.DefaultGoalTest;
+import aima.core.search.framework.problem.Problem;
+import aima.core.util.datastructure.IndexedIntPriorityQueue;
+
+/**
+ * Shortest path queries on a {@link ContractionHierarchy}. A forward search
+ * from the start follows links to higher ranked locations, a backward search
+ * from the goal follows links from higher ranked locations. The searches
+ * alternate and stop as soon as neither queue can improve the best meeting
+ * point found so far. Shortcuts of the resulting path are unpacked, so the
+ * result consists of original links.<br>
+ * <br>
+ * Like {@link CsrMapSearch}, this search answers map problems with
+ * {@link MoveToAction}s, so it can be used by search agents unchanged. The
+ * hierarchy only supports explicit goal locations; problems with other goal
+ * tests are solved by a {@link CsrMapSearch} on the underlying map.
+ */
+public class ContractionHierarchySearch implements SearchForActions {
+
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_PATH_COST = "pathCost";
+
+	private final ContractionHierarchy hierarchy;
+	private final CsrMap map;
+	private final NodeExpander nodeExpander = new NodeExpander();
+	private Metrics metrics = new Metrics();
+	private CsrMapSearch fallback;
+
+	private final Direction forward;
+	private final Direction backward;
+	private int stamp;
+	private double pathCost;
+
+	public ContractionHierarchySearch(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+		map = hierarchy.getMap();
+		forward = new Direction(true);
+		backward = new Direction(false);
+	}
+
+	public ContractionHierarchy getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * Computes a shortest path between two locations.
+	 *
+	 * @return the locations of the path including start and goal, or null if
+	 *         the goal cannot be reached.
+	 */
+	public int[] findPath(int from, int to) {
+		int meet = search(from, to);
+		if (meet == -1)
+			return null;
+		List<Integer> path = new ArrayList<Integer>();
+		path.add(from);
+		int[] edges = new int[16];
+		int count = 0;
+		for (int v = meet; v != from; v = hierarchy.getTail(forward.parentEdges[v])) {
+			if (count == edges.length)
+				edges = Arrays.copyOf(edges, count * 2);
+			edges[count++] = forward.parentEdges[v];
+		}
+		while (count > 0)
+			hierarchy.unpack(edges[--count], path);
+		for (int v = meet; v != to; v = hierarchy.getHead(backward.parentEdges[v]))
+			hierarchy.unpack(backward.parentEdges[v], path);
+		int[] result = new int[path.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = path.get(i);
+		return result;
+	}
+
+	/**
+	 * Returns the shortest distance between two locations, or infinity. The
+	 * path is not unpacked.
+	 */
+	public double getDistance(int from, int to) {
+		search(from, to);
+		return pathCost;
+	}
+
+	/**
+	 * Returns the costs of the path found by the last search, or infinity if
+	 * no path was found.
+	 */
+	public double getPathCost() {
+		return pathCost;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		if (!(p.getGoalTest() instanceof DefaultGoalTest)) {
+			if (fallback == null)
+				fallback = new CsrMapSearch(map, CsrMapSearch.ZERO_HEURISTIC);
+			List<Action> result = fallback.findActions(p);
+			metrics = fallback.getMetrics();
+			return result;
+		}
+		int from = map.getIndex((String) p.getInitialState());
+		if (from == -1)
+			throw new IllegalArgumentException("Initial state " + p.getInitialState() + " is not a map location.");
+		int to = map.getIndex((String) ((DefaultGoalTest) p.getGoalTest()).getGoalState());
+		int[] path = to != -1 ? findPath(from, to) : null;
+		if (path == null)
+			return SearchUtils.failure();
+		List<Action> result = new ArrayList<Action>(Math.max(path.length - 1, 1));
+		if (path.length == 1)
+			result.add(NoOpAction.NO_OP);
+		for (int i = 1; i < path.length; i++)
+			result.add(new MoveToAction(map.getName(path[i])));
+		return result;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/**
+	 * Returns all the search metrics.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Runs the bidirectional upward search and returns the meeting point or -1. */
+	private int search(int from, int to) {
+		metrics = new Metrics();
+		if (++stamp == Integer.MAX_VALUE) {
+			forward.resetStamps();
+			backward.resetStamps();
+			stamp = 1;
+		}
+		forward.start(from);
+		backward.start(to);
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		long nodesExpanded = 0;
+		while (true) {
+			boolean forwardActive = !forward.queue.isEmpty() && forward.queue.peekPriority() < best;
+			boolean backwardActive = !backward.queue.isEmpty() && backward.queue.peekPriority() < best;
+			if (!forwardActive && !backwardActive)
+				break;
+			Direction dir = !backwardActive
+					|| forwardActive && forward.queue.peekPriority() <= backward.queue.peekPriority() ? forward
+							: backward;
+			Direction other = dir == forward ? backward : forward;
+			int v = dir.queue.poll();
+			nodesExpanded++;
+			if (other.stamps[v] == stamp) {
+				double d = dir.distances[v] + other.distances[v];
+				if (d < best) {
+					best = d;
+					meet = v;
+				}
+			}
+			dir.relax(v);
+		}
+		pathCost = best;
+		metrics.set(METRIC_NODES_EXPANDED, nodesExpanded);
+		metrics.set(METRIC_PATH_COST, pathCost);
+		return meet;
+	}
+
+	/** State of one search direction. */
+	private class Direction {
+		private final boolean isForward;
+		final double[] distances;
+		final int[] parentEdges;
+		final int[] stamps;
+		final IndexedIntPriorityQueue queue;
+
+		Direction(boolean isForward) {
+			this.isForward = isForward;
+			int n = map.getLocationCount();
+			distances = new double[n];
+			parentEdges = new int[n];
+			stamps = new int[n];
+			queue = new IndexedIntPriorityQueue(n);
+		}
+
+		void start(int source) {
+			queue.clear();
+			stamps[source] = stamp;
+			distances[source] = 0;
+			parentEdges[source] = -1;
+			queue.offer(source, 0);
+		}
+
+		void relax(int v) {
+			double dist = distances[v];
+			int end = isForward ? hierarchy.getFirstUpEdge(v + 1) : hierarchy.getFirstDownEdge(v + 1);
+			for (int i = isForward ? hierarchy.getFirstUpEdge(v) : hierarchy.getFirstDownEdge(v); i < end; i++) {
+				int e = isForward ? hierarchy.getUpEdge(i) : hierarchy.getDownEdge(i);
+				int w = isForward ? hierarchy.getHead(e) : hierarchy.getTail(e);
+				double newDist = dist + hierarchy.getWeight(e);
+				if (stamps[w] != stamp || newDist < distances[w]) {
+					stamps[w] = stamp;
+					distances[w] = newDist;
+					parentEdges[w] = e;
+					queue.offer(w, newDist);
+				}
+			}
+		}
+
+		void resetStamps() {
+			Arrays.fill(stamps, 0);
+		}
+	}
+}
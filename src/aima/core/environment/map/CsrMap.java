@@ -0,0 +1,547 @@
+package aima.core.environment.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import aima.core.util.math.geom.shapes.Point2D;
+
+/**
+ * Immutable map which stores its links in compressed sparse row (CSR) format.
+ * Locations are identified by indices from <code>0</code> to
+ * <code>n-1</code>. The links leaving location <code>v</code> are the edges
+ * <code>getFirstEdge(v)</code> to <code>getFirstEdge(v+1)-1</code>, with
+ * target locations and distances stored in primitive arrays. An incoming-link
+ * index is kept as well, so {@link #getPossiblePrevLocations(String)} follows
+ * the links in reverse direction. Coordinates are stored in two
+ * <code>double</code> arrays.<br>
+ * <br>
+ * The class implements the {@link Map} interface, so it can replace an
+ * {@link ExtendableMap} once a map has been built, e.g. in map environments
+ * and agents. Graph algorithms should use the index-based methods, which do
+ * not create any objects. Outgoing links of each location are sorted by the
+ * names of their target locations, like in {@link ExtendableMap}.<br>
+ * <br>
+ * Large road networks can be read with {@link DimacsMapReader}. Such maps
+ * use numeric location names (the location with index <code>i</code> is
+ * named <code>i+1</code>) and do not store any strings. A map can be saved
+ * as binary snapshot and loaded again in a fraction of the parsing time.
+ */
+public class CsrMap implements Map {
+
+	private static final int MAGIC = 0x43535231; // "CSR1"
+	private static final int FLAG_POSITIONS = 1;
+	private static final int FLAG_NAMES = 2;
+
+	private final String[] names;
+	private final HashMap<String, Integer> indexByName;
+	private final double[] xs;
+	private final double[] ys;
+	// outgoing links
+	private final int[] firstOut;
+	private final int[] heads;
+	private final double[] weights;
+	// incoming links
+	private final int[] firstIn;
+	private final int[] tails;
+	private final double[] inWeights;
+	private final List<String> locations;
+	private final Random random = new Random();
+
+	/**
+	 * Creates a map from an edge list.
+	 *
+	 * @param names
+	 *            location names, indexed by location, or null for numeric
+	 *            names (location <code>i</code> is named <code>i+1</code>,
+	 *            as in DIMACS graph files)
+	 * @param locationCount
+	 *            number of locations
+	 * @param xs
+	 *            x coordinates, NaN if unknown (null if no location has a
+	 *            position)
+	 * @param ys
+	 *            y coordinates, analogous to <code>xs</code>
+	 * @param edgeTails
+	 *            start location of each link
+	 * @param edgeHeads
+	 *            end location of each link
+	 * @param edgeWeights
+	 *            distance of each link
+	 * @param edgeCount
+	 *            number of valid entries in the edge arrays
+	 */
+	public CsrMap(String[] names, int locationCount, double[] xs, double[] ys, int[] edgeTails, int[] edgeHeads,
+			double[] edgeWeights, int edgeCount) {
+		int n = locationCount;
+		if (names != null && names.length != n)
+			throw new IllegalArgumentException("Expected " + n + " location names.");
+		this.names = names != null ? names.clone() : null;
+		indexByName = createIndex(this.names);
+		this.xs = xs != null ? Arrays.copyOf(xs, n) : null;
+		this.ys = ys != null ? Arrays.copyOf(ys, n) : null;
+		for (int e = 0; e < edgeCount; e++) {
+			if (edgeTails[e] < 0 || edgeTails[e] >= n || edgeHeads[e] < 0 || edgeHeads[e] >= n)
+				throw new IllegalArgumentException("Link " + e + " refers to an unknown location.");
+		}
+
+		firstOut = new int[n + 1];
+		heads = new int[edgeCount];
+		weights = new double[edgeCount];
+		fill(n, edgeTails, edgeHeads, edgeWeights, edgeCount, firstOut, heads, weights);
+		sortLinks();
+		firstIn = new int[n + 1];
+		tails = new int[edgeCount];
+		inWeights = new double[edgeCount];
+		fill(n, edgeHeads, edgeTails, edgeWeights, edgeCount, firstIn, tails, inWeights);
+		locations = new LocationNames();
+	}
+
+	private CsrMap(String[] names, double[] xs, double[] ys, int[] firstOut, int[] heads, double[] weights,
+			int[] firstIn, int[] tails, double[] inWeights) {
+		this.names = names;
+		indexByName = createIndex(names);
+		this.xs = xs;
+		this.ys = ys;
+		this.firstOut = firstOut;
+		this.heads = heads;
+		this.weights = weights;
+		this.firstIn = firstIn;
+		this.tails = tails;
+		this.inWeights = inWeights;
+		locations = new LocationNames();
+	}
+
+	/**
+	 * Creates a compact copy of the specified map. Locations are indexed in
+	 * the order of {@link Map#getLocations()}.
+	 */
+	public static CsrMap fromMap(Map map) {
+		List<String> locs = map.getLocations();
+		int n = locs.size();
+		String[] names = locs.toArray(new String[n]);
+		HashMap<String, Integer> index = new HashMap<String, Integer>(n * 2);
+		for (int v = 0; v < n; v++)
+			index.put(names[v], v);
+		double[] xs = null;
+		double[] ys = null;
+		int edgeCount = 0;
+		int[] edgeTails = new int[Math.max(n, 16)];
+		int[] edgeHeads = new int[edgeTails.length];
+		double[] edgeWeights = new double[edgeTails.length];
+		for (int v = 0; v < n; v++) {
+			Point2D pos = map.getPosition(names[v]);
+			if (pos != null) {
+				if (xs == null) {
+					xs = new double[n];
+					ys = new double[n];
+					Arrays.fill(xs, Double.NaN);
+					Arrays.fill(ys, Double.NaN);
+				}
+				xs[v] = pos.getX();
+				ys[v] = pos.getY();
+			}
+			for (String to : map.getPossibleNextLocations(names[v])) {
+				Integer w = index.get(to);
+				if (w == null)
+					continue;
+				if (edgeCount == edgeTails.length) {
+					edgeTails = Arrays.copyOf(edgeTails, edgeCount * 2);
+					edgeHeads = Arrays.copyOf(edgeHeads, edgeCount * 2);
+					edgeWeights = Arrays.copyOf(edgeWeights, edgeCount * 2);
+				}
+				edgeTails[edgeCount] = v;
+				edgeHeads[edgeCount] = w;
+				edgeWeights[edgeCount] = map.getDistance(names[v], to);
+				edgeCount++;
+			}
+		}
+		return new CsrMap(names, n, xs, ys, edgeTails, edgeHeads, edgeWeights, edgeCount);
+	}
+
+	/**
+	 * Loads a snapshot written by {@link #save(File)}. The arrays are read
+	 * from a memory mapping of the file by bulk transfers, so loading is
+	 * limited by memory bandwidth rather than by parsing. The link structure
+	 * is validated, so a corrupt file causes an exception rather than a map
+	 * with links to unknown locations.
+	 */
+	public static CsrMap load(File file) throws IOException {
+		MappedInput in = new MappedInput(file);
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a map snapshot file: " + file);
+			int n = in.readInt();
+			int m = in.readInt();
+			int flags = in.readInt();
+			if (n < 0)
+				throw corrupt(file, "negative location count " + n);
+			if (m < 0)
+				throw corrupt(file, "negative link count " + m);
+			if (in.getRemaining() < 8L * (n + 1) + 24L * m)
+				throw corrupt(file, "file too short for " + n + " locations and " + m + " links");
+			int[] firstOut = new int[n + 1];
+			int[] heads = new int[m];
+			double[] weights = new double[m];
+			int[] firstIn = new int[n + 1];
+			int[] tails = new int[m];
+			double[] inWeights = new double[m];
+			in.readInts(firstOut);
+			in.readInts(heads);
+			in.readDoubles(weights);
+			in.readInts(firstIn);
+			in.readInts(tails);
+			in.readDoubles(inWeights);
+			checkLinks(file, "outgoing", firstOut, heads, m);
+			checkLinks(file, "incoming", firstIn, tails, m);
+			double[] xs = null;
+			double[] ys = null;
+			if ((flags & FLAG_POSITIONS) != 0) {
+				xs = new double[n];
+				ys = new double[n];
+				in.readDoubles(xs);
+				in.readDoubles(ys);
+			}
+			String[] names = null;
+			if ((flags & FLAG_NAMES) != 0) {
+				int[] lengths = new int[n];
+				in.readInts(lengths);
+				int total = in.readInt();
+				if (total < 0 || in.getRemaining() < total)
+					throw corrupt(file, "invalid name data length " + total);
+				byte[] bytes = new byte[total];
+				in.readBytes(bytes);
+				names = new String[n];
+				int offset = 0;
+				for (int v = 0; v < n; v++) {
+					if (lengths[v] < 0 || lengths[v] > total - offset)
+						throw corrupt(file, "invalid name length of location " + v);
+					names[v] = new String(bytes, offset, lengths[v], StandardCharsets.UTF_8);
+					offset += lengths[v];
+				}
+			}
+			try {
+				return new CsrMap(names, xs, ys, firstOut, heads, weights, firstIn, tails, inWeights);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Map snapshot file is corrupt: " + file, e);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a binary snapshot of the map, which can be loaded again with
+	 * {@link #load(File)}.
+	 */
+	public void save(File file) throws IOException {
+		BinaryOutput out = new BinaryOutput(file);
+		try {
+			int flags = (xs != null ? FLAG_POSITIONS : 0) | (names != null ? FLAG_NAMES : 0);
+			out.writeInt(MAGIC);
+			out.writeInt(getLocationCount());
+			out.writeInt(getLinkCount());
+			out.writeInt(flags);
+			out.writeInts(firstOut);
+			out.writeInts(heads);
+			out.writeDoubles(weights);
+			out.writeInts(firstIn);
+			out.writeInts(tails);
+			out.writeDoubles(inWeights);
+			if (xs != null) {
+				out.writeDoubles(xs);
+				out.writeDoubles(ys);
+			}
+			if (names != null) {
+				byte[][] encoded = new byte[names.length][];
+				int[] lengths = new int[names.length];
+				int total = 0;
+				for (int v = 0; v < names.length; v++) {
+					encoded[v] = names[v].getBytes(StandardCharsets.UTF_8);
+					lengths[v] = encoded[v].length;
+					total += lengths[v];
+				}
+				out.writeInts(lengths);
+				out.writeInt(total);
+				for (byte[] bytes : encoded)
+					out.writeBytes(bytes);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	//
+	// index-based access
+	//
+
+	/** Returns the number of locations. */
+	public int getLocationCount() {
+		return firstOut.length - 1;
+	}
+
+	/** Returns the number of one-way links. */
+	public int getLinkCount() {
+		return heads.length;
+	}
+
+	/** Returns the index of a location or -1 if the name is unknown. */
+	public int getIndex(String location) {
+		if (indexByName != null) {
+			Integer result = indexByName.get(location);
+			return result != null ? result : -1;
+		}
+		try {
+			int result = Integer.parseInt(location) - 1;
+			return result >= 0 && result < getLocationCount() ? result : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	public String getName(int location) {
+		if (names != null)
+			return names[location];
+		if (location < 0 || location >= getLocationCount())
+			throw new IndexOutOfBoundsException("Location: " + location);
+		return Integer.toString(location + 1);
+	}
+
+	/**
+	 * Returns the index of the first link leaving the location. The links of
+	 * location <code>v</code> end before <code>getFirstEdge(v+1)</code>.
+	 */
+	public int getFirstEdge(int location) {
+		return firstOut[location];
+	}
+
+	/** Returns the location a link leads to. */
+	public int getHead(int edge) {
+		return heads[edge];
+	}
+
+	public double getWeight(int edge) {
+		return weights[edge];
+	}
+
+	/**
+	 * Returns the index of the first link reaching the location. The
+	 * incoming links of location <code>v</code> end before
+	 * <code>getFirstInEdge(v+1)</code>.
+	 */
+	public int getFirstInEdge(int location) {
+		return firstIn[location];
+	}
+
+	/** Returns the location an incoming link starts from. */
+	public int getTail(int inEdge) {
+		return tails[inEdge];
+	}
+
+	public double getInWeight(int inEdge) {
+		return inWeights[inEdge];
+	}
+
+	/** Checks whether the position of the location is known. */
+	public boolean hasPosition(int location) {
+		return xs != null && !Double.isNaN(xs[location]);
+	}
+
+	public double getX(int location) {
+		return xs[location];
+	}
+
+	public double getY(int location) {
+		return ys[location];
+	}
+
+	/**
+	 * Returns the straight line distance between two locations, or 0 if one
+	 * of the positions is unknown.
+	 */
+	public double getStraightLineDistance(int from, int to) {
+		if (!hasPosition(from) || !hasPosition(to))
+			return 0;
+		double dx = xs[from] - xs[to];
+		double dy = ys[from] - ys[to];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns the index of the link from one location to another, or -1. If
+	 * there are parallel links, the shortest one is returned.
+	 */
+	public int getEdge(int from, int to) {
+		int result = -1;
+		for (int e = firstOut[from]; e < firstOut[from + 1]; e++)
+			if (heads[e] == to && (result == -1 || weights[e] < weights[result]))
+				result = e;
+		return result;
+	}
+
+	//
+	// Map interface
+	//
+
+	@Override
+	public List<String> getLocations() {
+		return locations;
+	}
+
+	@Override
+	public List<String> getPossibleNextLocations(String location) {
+		int v = getIndex(location);
+		if (v == -1)
+			return Collections.emptyList();
+		return new LocationList(heads, firstOut[v], firstOut[v + 1]);
+	}
+
+	@Override
+	public List<String> getPossiblePrevLocations(String location) {
+		int v = getIndex(location);
+		if (v == -1)
+			return Collections.emptyList();
+		return new LocationList(tails, firstIn[v], firstIn[v + 1]);
+	}
+
+	@Override
+	public Double getDistance(String fromLocation, String toLocation) {
+		int from = getIndex(fromLocation);
+		int to = getIndex(toLocation);
+		if (from == -1 || to == -1)
+			return null;
+		int e = getEdge(from, to);
+		return e != -1 ? weights[e] : null;
+	}
+
+	@Override
+	public Point2D getPosition(String loc) {
+		int v = getIndex(loc);
+		return v != -1 && hasPosition(v) ? new Point2D(xs[v], ys[v]) : null;
+	}
+
+	@Override
+	public String randomlyGenerateDestination() {
+		return getName(random.nextInt(getLocationCount()));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Checks that the link offsets start at 0, do not decrease and end at the
+	 * link count, and that all links refer to existing locations.
+	 */
+	private static void checkLinks(File file, String direction, int[] first, int[] targets, int m)
+			throws IOException {
+		int n = first.length - 1;
+		if (first[0] != 0 || first[n] != m)
+			throw corrupt(file, direction + " link offsets do not cover the " + m + " links");
+		for (int v = 0; v < n; v++)
+			if (first[v + 1] < first[v])
+				throw corrupt(file, direction + " link offsets decrease at location " + v);
+		for (int e = 0; e < m; e++)
+			if (targets[e] < 0 || targets[e] >= n)
+				throw corrupt(file, direction + " link " + e + " refers to location " + targets[e] + ", but there are only "
+						+ n + " locations");
+	}
+
+	private static IOException corrupt(File file, String reason) {
+		return new IOException("Map snapshot file is corrupt: " + file + " (" + reason + ").");
+	}
+
+	/** Counting sort of an edge list into CSR arrays. */
+	private static void fill(int n, int[] from, int[] to, double[] w, int m, int[] first, int[] targets,
+			double[] targetWeights) {
+		for (int e = 0; e < m; e++)
+			first[from[e] + 1]++;
+		for (int v = 0; v < n; v++)
+			first[v + 1] += first[v];
+		int[] next = Arrays.copyOf(first, n);
+		for (int e = 0; e < m; e++) {
+			int pos = next[from[e]]++;
+			targets[pos] = to[e];
+			targetWeights[pos] = w[e];
+		}
+	}
+
+	private static HashMap<String, Integer> createIndex(String[] names) {
+		if (names == null)
+			return null;
+		HashMap<String, Integer> result = new HashMap<String, Integer>(names.length * 2);
+		for (int v = 0; v < names.length; v++)
+			if (result.put(names[v], v) != null)
+				throw new IllegalArgumentException("Duplicate location name " + names[v] + ".");
+		return result;
+	}
+
+	/**
+	 * Sorts the outgoing links of each location by target name, or by target
+	 * index for numeric names (insertion sort, as degrees are small).
+	 */
+	private void sortLinks() {
+		for (int v = 0; v < getLocationCount(); v++) {
+			for (int i = firstOut[v] + 1; i < firstOut[v + 1]; i++) {
+				int h = heads[i];
+				double w = weights[i];
+				int j = i - 1;
+				while (j >= firstOut[v] && compareLocations(heads[j], h) > 0) {
+					heads[j + 1] = heads[j];
+					weights[j + 1] = weights[j];
+					j--;
+				}
+				heads[j + 1] = h;
+				weights[j + 1] = w;
+			}
+		}
+	}
+
+	private int compareLocations(int v, int w) {
+		return names != null ? names[v].compareTo(names[w]) : Integer.compare(v, w);
+	}
+
+	/** Read-only view on all location names. */
+	private class LocationNames extends AbstractList<String> {
+		@Override
+		public String get(int index) {
+			return getName(index);
+		}
+
+		@Override
+		public int size() {
+			return getLocationCount();
+		}
+	}
+
+	/** Read-only view on a range of location indices. */
+	private class LocationList extends AbstractList<String> {
+		private final int[] targets;
+		private final int from;
+		private final int to;
+
+		LocationList(int[] targets, int from, int to) {
+			this.targets = targets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public String get(int index) {
+			if (index < 0 || from + index >= to)
+				throw new IndexOutOfBoundsException("Index: " + index);
+			return getName(targets[from + index]);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
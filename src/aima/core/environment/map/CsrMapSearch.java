@@ -0,0 +1,240 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.problem.DefaultGoalTest;
+import aima.core.search.framework.problem.GoalTest;
+import aima.core.search.framework.problem.Problem;
+import aima.core.util.CancelableThread;
+import aima.core.util.datastructure.IndexedIntPriorityQueue;
+
+/**
+ * A* search (or uniform cost search with the zero heuristic) which works
+ * directly on the location indices of a {@link CsrMap}. States are
+ * <code>int</code> values; distances, predecessors, and heuristic values are
+ * kept in arrays which are allocated once and reused by all searches. A
+ * search stamp marks which entries belong to the current search, so the
+ * arrays never need to be cleared. The priority queue supports decrease-key,
+ * so each location is contained at most once.<br>
+ * <br>
+ * Map problems can be passed to {@link #findActions(Problem)}. The initial
+ * state must be a location of the map. If the goal test is a
+ * {@link DefaultGoalTest}, the search is directed to its goal location,
+ * otherwise the goal test is evaluated on location names. In both cases the
+ * link lengths of the map are used as step costs. The result consists of
+ * {@link MoveToAction}s as in the other map searches.
+ */
+public class CsrMapSearch implements SearchForActions {
+
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_QUEUE_SIZE = "queueSize";
+	public static final String METRIC_MAX_QUEUE_SIZE = "maxQueueSize";
+	public static final String METRIC_PATH_COST = "pathCost";
+
+	/**
+	 * Estimates the distance from a location to a goal location, both given
+	 * by index.
+	 */
+	public interface Heuristic {
+		double h(int location, int goal);
+	}
+
+	/** Heuristic which turns A* into uniform cost search. */
+	public static final Heuristic ZERO_HEURISTIC = (location, goal) -> 0;
+
+	/**
+	 * Returns a heuristic based on the straight line distance between the
+	 * positions of the locations.
+	 */
+	public static Heuristic getSLDHeuristic(final CsrMap map) {
+		return (location, goal) -> map.getStraightLineDistance(location, goal);
+	}
+
+	private final CsrMap map;
+	private Heuristic heuristic;
+	private final NodeExpander nodeExpander = new NodeExpander();
+	private Metrics metrics = new Metrics();
+
+	private final double[] distances;
+	private final double[] hValues;
+	private final int[] predecessors;
+	private final int[] stamps;
+	private int stamp;
+	private final IndexedIntPriorityQueue queue;
+	private int goal;
+	private double pathCost;
+
+	/** Creates an A* search which uses the straight line distance heuristic. */
+	public CsrMapSearch(CsrMap map) {
+		this(map, getSLDHeuristic(map));
+	}
+
+	public CsrMapSearch(CsrMap map, Heuristic heuristic) {
+		this.map = map;
+		this.heuristic = heuristic;
+		int n = map.getLocationCount();
+		distances = new double[n];
+		hValues = new double[n];
+		predecessors = new int[n];
+		stamps = new int[n];
+		queue = new IndexedIntPriorityQueue(n);
+	}
+
+	public CsrMap getMap() {
+		return map;
+	}
+
+	public Heuristic getHeuristic() {
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	/**
+	 * Computes a shortest path between two locations.
+	 *
+	 * @return the locations of the path including start and goal, or null if
+	 *         the goal cannot be reached.
+	 */
+	public int[] findPath(int from, int to) {
+		int found = search(from, to, null);
+		return found != -1 ? getPath(found) : null;
+	}
+
+	/**
+	 * Returns the costs of the path found by the last search, or infinity if
+	 * no path was found.
+	 */
+	public double getPathCost() {
+		return pathCost;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		int from = map.getIndex((String) p.getInitialState());
+		if (from == -1)
+			throw new IllegalArgumentException("Initial state " + p.getInitialState() + " is not a map location.");
+		GoalTest goalTest = p.getGoalTest();
+		int found;
+		if (goalTest instanceof DefaultGoalTest) {
+			int to = map.getIndex((String) ((DefaultGoalTest) goalTest).getGoalState());
+			found = to != -1 ? search(from, to, null) : -1;
+		} else {
+			found = search(from, -1, goalTest);
+		}
+		if (found == -1)
+			return SearchUtils.failure();
+		int[] path = getPath(found);
+		List<Action> result = new ArrayList<Action>(Math.max(path.length - 1, 1));
+		if (path.length == 1)
+			result.add(NoOpAction.NO_OP);
+		for (int i = 1; i < path.length; i++)
+			result.add(new MoveToAction(map.getName(path[i])));
+		return result;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/**
+	 * Returns all the search metrics.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Runs A* from the start location until the goal location (if not -1) or
+	 * a location satisfying the goal test is expanded.
+	 *
+	 * @return the goal location reached, or -1.
+	 */
+	private int search(int from, int to, GoalTest goalTest) {
+		metrics = new Metrics();
+		goal = to;
+		pathCost = Double.POSITIVE_INFINITY;
+		newStamp();
+		queue.clear();
+		long nodesExpanded = 0;
+		int maxQueueSize = 0;
+		int result = -1;
+
+		reach(from, 0, -1);
+		queue.offer(from, hValues[from]);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			if (v == to || goalTest != null && goalTest.isGoalState(map.getName(v))) {
+				result = v;
+				pathCost = distances[v];
+				break;
+			}
+			nodesExpanded++;
+			if ((nodesExpanded & 0x3FF) == 0 && CancelableThread.currIsCanceled())
+				break;
+			double dist = distances[v];
+			int end = map.getFirstEdge(v + 1);
+			for (int e = map.getFirstEdge(v); e < end; e++) {
+				int w = map.getHead(e);
+				double newDist = dist + map.getWeight(e);
+				if (stamps[w] != stamp) {
+					reach(w, newDist, v);
+					queue.offer(w, newDist + hValues[w]);
+				} else if (newDist < distances[w]) {
+					// also reopens locations if the heuristic is inconsistent
+					distances[w] = newDist;
+					predecessors[w] = v;
+					queue.offer(w, newDist + hValues[w]);
+				}
+			}
+			if (queue.size() > maxQueueSize)
+				maxQueueSize = queue.size();
+		}
+		metrics.set(METRIC_NODES_EXPANDED, nodesExpanded);
+		metrics.set(METRIC_QUEUE_SIZE, queue.size());
+		metrics.set(METRIC_MAX_QUEUE_SIZE, maxQueueSize);
+		metrics.set(METRIC_PATH_COST, pathCost);
+		return result;
+	}
+
+	/** Initializes the entries of a location reached for the first time. */
+	private void reach(int v, double dist, int predecessor) {
+		stamps[v] = stamp;
+		distances[v] = dist;
+		predecessors[v] = predecessor;
+		hValues[v] = goal != -1 ? heuristic.h(v, goal) : 0;
+	}
+
+	private void newStamp() {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+	private int[] getPath(int to) {
+		int length = 0;
+		for (int v = to; v != -1; v = predecessors[v])
+			length++;
+		int[] path = new int[length];
+		for (int v = to; v != -1; v = predecessors[v])
+			path[--length] = v;
+		return path;
+	}
+}
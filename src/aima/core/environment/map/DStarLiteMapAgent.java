@@ -0,0 +1,141 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.Percept;
+import aima.core.agent.impl.DynamicPercept;
+import aima.core.search.online.DStarLite;
+import aima.core.search.online.DStarLiteAgent;
+import aima.core.util.math.geom.shapes.Point2D;
+
+/**
+ * Map agent which plans incrementally with D* Lite. It knows the map, but the
+ * map may change while the agent travels, e.g. roads may be closed. The links
+ * of a location are copied from the map when the planner needs them first.
+ * Later, the agent only notices changes of the links which start at its
+ * current location, and replans as far as necessary. Straight line distances
+ * between location positions (if available) serve as heuristic.<br>
+ * <br>
+ * The agent can be added to a {@link MapEnvironment}.
+ */
+public class DStarLiteMapAgent extends DStarLiteAgent<String> {
+
+	private final Map map;
+	// the links known by the agent, indexed by start and end location
+	private final HashMap<String, HashMap<String, Double>> knownLinks = new HashMap<String, HashMap<String, Double>>();
+	// start locations of known links, indexed by end location (may be outdated)
+	private final HashMap<String, HashSet<String>> knownPrevLocations = new HashMap<String, HashSet<String>>();
+
+	public DStarLiteMapAgent(Map map, String goal) {
+		super(goal);
+		this.map = map;
+	}
+
+	public Map getMap() {
+		return map;
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	@Override
+	protected String getState(Percept p) {
+		return (String) ((DynamicPercept) p).getAttribute(DynAttributeNames.PERCEPT_IN);
+	}
+
+	@Override
+	protected DStarLite.Graph<String> createGraph() {
+		return new DStarLite.Graph<String>() {
+			@Override
+			public List<String> getSuccessors(String state) {
+				return new ArrayList<String>(getKnownLinks(state).keySet());
+			}
+
+			@Override
+			public List<String> getPredecessors(String state) {
+				for (String prev : map.getPossiblePrevLocations(state))
+					getKnownLinks(prev);
+				List<String> result = new ArrayList<String>();
+				HashSet<String> prevLocations = knownPrevLocations.get(state);
+				if (prevLocations != null)
+					for (String prev : prevLocations)
+						if (knownLinks.get(prev).containsKey(state))
+							result.add(prev);
+				return result;
+			}
+
+			@Override
+			public double getCost(String from, String to) {
+				Double result = getKnownLinks(from).get(to);
+				return result != null ? result : Double.POSITIVE_INFINITY;
+			}
+
+			@Override
+			public double h(String from, String to) {
+				Point2D pt1 = map.getPosition(from);
+				Point2D pt2 = map.getPosition(to);
+				return pt1 != null && pt2 != null ? pt1.distance(pt2) : 0;
+			}
+		};
+	}
+
+	@Override
+	protected void observeChanges(String state, DStarLite<String> planner) {
+		HashMap<String, Double> links = getKnownLinks(state);
+		List<String> changed = new ArrayList<String>();
+		List<String> nextLocations = map.getPossibleNextLocations(state);
+		for (String next : nextLocations) {
+			Double distance = map.getDistance(state, next);
+			if (!distance.equals(links.get(next))) {
+				links.put(next, distance);
+				addKnownPrevLocation(next, state);
+				changed.add(next);
+			}
+		}
+		for (String next : new ArrayList<String>(links.keySet())) {
+			if (!nextLocations.contains(next)) {
+				links.remove(next);
+				changed.add(next);
+			}
+		}
+		for (String next : changed)
+			planner.edgeCostChanged(state, next);
+	}
+
+	@Override
+	protected Action createAction(String from, String to) {
+		return new MoveToAction(to);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the known links of a location, copied from the map if unknown. */
+	private HashMap<String, Double> getKnownLinks(String location) {
+		HashMap<String, Double> result = knownLinks.get(location);
+		if (result == null) {
+			result = new HashMap<String, Double>();
+			for (String next : map.getPossibleNextLocations(location)) {
+				result.put(next, map.getDistance(location, next));
+				addKnownPrevLocation(next, location);
+			}
+			knownLinks.put(location, result);
+		}
+		return result;
+	}
+
+	private void addKnownPrevLocation(String location, String prev) {
+		HashSet<String> prevLocations = knownPrevLocations.get(location);
+		if (prevLocations == null) {
+			prevLocations = new HashSet<String>();
+			knownPrevLocations.put(location, prevLocations);
+		}
+		prevLocations.add(prev);
+	}
+}
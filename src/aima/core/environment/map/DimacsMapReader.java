@@ -0,0 +1,204 @@
+package aima.core.environment.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads road networks in the format of the 9th DIMACS implementation
+ * challenge on shortest paths. A graph file (<code>.gr</code>) contains a
+ * problem line <code>p sp &lt;n&gt; &lt;m&gt;</code> followed by arc lines
+ * <code>a &lt;from&gt; &lt;to&gt; &lt;length&gt;</code>. An optional
+ * coordinate file (<code>.co</code>) contains lines
+ * <code>v &lt;id&gt; &lt;x&gt; &lt;y&gt;</code>. Comment lines start with
+ * <code>c</code>. Node ids range from 1 to n.<br>
+ * <br>
+ * Files are mapped into memory and parsed byte by byte, so no strings are
+ * created per line. The result is a {@link CsrMap} with numeric location
+ * names: the location with index <code>i</code> is named by its DIMACS id
+ * <code>i+1</code>. Coordinates are stored as given in the file (usually
+ * longitude and latitude times 10<sup>6</sup>), so straight line distances
+ * between them are not comparable with the arc lengths. Use
+ * {@link CsrMap#save(File)} to create a binary snapshot, which can be loaded
+ * much faster than the text files.
+ */
+public class DimacsMapReader {
+
+	/** Reads a graph file without coordinates. */
+	public static CsrMap read(File graphFile) throws IOException {
+		return read(graphFile, null);
+	}
+
+	/**
+	 * Reads a graph file and, if not null, the corresponding coordinate
+	 * file.
+	 */
+	public static CsrMap read(File graphFile, File coordinateFile) throws IOException {
+		Parser parser = new Parser(graphFile);
+		int n = -1;
+		int m = 0;
+		int[] tails = null;
+		int[] heads = null;
+		double[] weights = null;
+		try {
+			int type;
+			while ((type = parser.nextLine()) != -1) {
+				if (type == 'p') {
+					n = parser.nextInt();
+					int declared = parser.nextInt();
+					tails = new int[declared];
+					heads = new int[declared];
+					weights = new double[declared];
+				} else if (type == 'a') {
+					if (n == -1)
+						throw parser.error("Arc before problem line");
+					if (m == tails.length) {
+						// more arcs than declared
+						tails = Arrays.copyOf(tails, m * 2 + 1);
+						heads = Arrays.copyOf(heads, m * 2 + 1);
+						weights = Arrays.copyOf(weights, m * 2 + 1);
+					}
+					tails[m] = parser.nextId(n);
+					heads[m] = parser.nextId(n);
+					weights[m] = parser.nextLong();
+					m++;
+				} else {
+					throw parser.error("Unexpected line type '" + (char) type + "'");
+				}
+			}
+		} finally {
+			parser.close();
+		}
+		if (n == -1)
+			throw new IOException("Missing problem line in " + graphFile + ".");
+
+		double[] xs = null;
+		double[] ys = null;
+		if (coordinateFile != null) {
+			xs = new double[n];
+			ys = new double[n];
+			Arrays.fill(xs, Double.NaN);
+			Arrays.fill(ys, Double.NaN);
+			readCoordinates(coordinateFile, xs, ys);
+		}
+		return new CsrMap(null, n, xs, ys, tails, heads, weights, m);
+	}
+
+	private static void readCoordinates(File file, double[] xs, double[] ys) throws IOException {
+		Parser parser = new Parser(file);
+		try {
+			int type;
+			while ((type = parser.nextLine()) != -1) {
+				if (type == 'p') {
+					// p aux sp co <n>
+					if (parser.nextInt() != xs.length)
+						throw parser.error("Node count differs from graph file");
+				} else if (type == 'v') {
+					int v = parser.nextId(xs.length);
+					xs[v] = parser.nextLong();
+					ys[v] = parser.nextLong();
+				} else {
+					throw parser.error("Unexpected line type '" + (char) type + "'");
+				}
+			}
+		} finally {
+			parser.close();
+		}
+	}
+
+	/** Tokenizer for DIMACS lines, working on bytes. */
+	private static class Parser {
+		private final File file;
+		private final MappedInput input;
+		private int lineNumber;
+		// last byte read, not yet consumed
+		private int current;
+		private boolean lineStarted;
+
+		Parser(File file) throws IOException {
+			this.file = file;
+			input = new MappedInput(file);
+			current = input.read();
+		}
+
+		/**
+		 * Skips the rest of the current line, empty lines, and comments.
+		 *
+		 * @return the type character of the next line, or -1 at the end of the
+		 *         file.
+		 */
+		int nextLine() throws IOException {
+			if (lineStarted)
+				skipLine();
+			while (true) {
+				skipBlanks();
+				if (current == -1)
+					return -1;
+				lineNumber++;
+				if (current == '\n') {
+					current = input.read();
+				} else if (current == 'c') {
+					skipLine();
+				} else {
+					int type = current;
+					current = input.read();
+					lineStarted = true;
+					return type;
+				}
+			}
+		}
+
+		/** Reads the next number of the line, skipping words in between. */
+		long nextLong() throws IOException {
+			while (current != -1 && current != '\n' && current != '-' && (current < '0' || current > '9'))
+				current = input.read();
+			boolean negative = current == '-';
+			if (negative)
+				current = input.read();
+			if (current < '0' || current > '9')
+				throw error("Number expected");
+			long result = 0;
+			while (current >= '0' && current <= '9') {
+				result = result * 10 + (current - '0');
+				current = input.read();
+			}
+			return negative ? -result : result;
+		}
+
+		int nextInt() throws IOException {
+			long result = nextLong();
+			if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+				throw error("Number out of range");
+			return (int) result;
+		}
+
+		/** Reads a node id and converts it into a location index. */
+		int nextId(int n) throws IOException {
+			long id = nextLong();
+			if (id < 1 || id > n)
+				throw error("Node id " + id + " out of range");
+			return (int) id - 1;
+		}
+
+		IOException error(String message) {
+			return new IOException(message + " in line " + lineNumber + " of " + file + ".");
+		}
+
+		void close() throws IOException {
+			input.close();
+		}
+
+		private void skipBlanks() throws IOException {
+			while (current == ' ' || current == '\t' || current == '\r')
+				current = input.read();
+		}
+
+		private void skipLine() throws IOException {
+			while (current != -1 && current != '\n')
+				current = input.read();
+			if (current == '\n')
+				current = input.read();
+			lineStarted = false;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+
+/**
+ * Shortest distances (and optionally paths) between a list of sources and a
+ * list of targets, as computed by {@link ManyToManySearch}. Entries are
+ * addressed by the positions of source and target in these lists.
+ */
+public class DistanceMatrix {
+
+	private final CsrMap map;
+	private final List<String> sources;
+	private final List<String> targets;
+	private final double[] distances;
+	private final int[][] paths;
+
+	DistanceMatrix(CsrMap map, List<String> sources, List<String> targets, double[] distances, int[][] paths) {
+		this.map = map;
+		this.sources = Collections.unmodifiableList(new ArrayList<String>(sources));
+		this.targets = Collections.unmodifiableList(new ArrayList<String>(targets));
+		this.distances = distances;
+		this.paths = paths;
+	}
+
+	public List<String> getSources() {
+		return sources;
+	}
+
+	public List<String> getTargets() {
+		return targets;
+	}
+
+	/** Returns the distance from source i to target j, or infinity if unreachable. */
+	public double getDistance(int i, int j) {
+		return distances[i * targets.size() + j];
+	}
+
+	/** Checks whether paths have been computed. */
+	public boolean hasPaths() {
+		return paths != null;
+	}
+
+	/**
+	 * Returns the locations of a shortest path from source i to target j
+	 * (including both), or null if the target cannot be reached.
+	 */
+	public List<String> getPath(int i, int j) {
+		int[] path = getIndexPath(i, j);
+		if (path == null)
+			return null;
+		List<String> result = new ArrayList<String>(path.length);
+		for (int v : path)
+			result.add(map.getName(v));
+		return result;
+	}
+
+	/**
+	 * Returns the actions which move an agent from source i to target j, or
+	 * an empty list if the target cannot be reached (as returned by searches).
+	 */
+	public List<Action> getActions(int i, int j) {
+		int[] path = getIndexPath(i, j);
+		List<Action> result = new ArrayList<Action>();
+		if (path == null)
+			return result;
+		if (path.length == 1)
+			result.add(NoOpAction.NO_OP);
+		for (int k = 1; k < path.length; k++)
+			result.add(new MoveToAction(map.getName(path[k])));
+		return result;
+	}
+
+	private int[] getIndexPath(int i, int j) {
+		if (paths == null)
+			throw new IllegalStateException("Paths have not been computed.");
+		return paths[i * targets.size() + j];
+	}
+}
@@ -0,0 +1,349 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import aima.core.search.framework.evalfunc.HeuristicFunction;
+import aima.core.util.datastructure.IndexedIntPriorityQueue;
+
+/**
+ * ALT heuristic (A*, landmarks, and triangle inequality) for maps. For a
+ * small set of landmark locations L, the shortest distances from and to every
+ * location are precomputed. By the triangle inequality, the distance from v
+ * to a goal t is at least <code>d(L,t) - d(L,v)</code> and at least
+ * <code>d(v,L) - d(t,L)</code>. The heuristic returns the maximum of these
+ * bounds over all landmarks. Unlike the straight line distance, it follows
+ * detours of the road network and needs no positions.<br>
+ * <br>
+ * Landmarks are selected by one of the strategies in {@link Selection}. The
+ * distance tables are then computed by Dijkstra's algorithm, running the
+ * searches of different landmarks in parallel. They are stored as
+ * <code>float</code> arrays with the entries of all landmarks for a location
+ * next to each other. To keep the heuristic admissible despite rounding, it
+ * is reduced by the rounding error bound of the largest distance.<br>
+ * <br>
+ * The heuristic works on {@link CsrMap}s (use {@link CsrMap#fromMap(Map)} for
+ * other maps). It can be used directly by {@link CsrMapSearch} or, via
+ * {@link #getHeuristicFunction(Object)}, by {@link aima.core.search.informed.AStarSearch}.
+ */
+public class LandmarkHeuristic implements CsrMapSearch.Heuristic {
+
+	/** Strategies for selecting landmarks. */
+	public enum Selection {
+		/** Landmarks chosen at random. */
+		RANDOM,
+		/**
+		 * Each landmark is the location which is farthest away from the
+		 * landmarks selected so far.
+		 */
+		FARTHEST,
+		/**
+		 * Landmarks are placed at the ends of the shortest path tree branches
+		 * which are covered worst by the landmarks selected so far (the avoid
+		 * strategy of Goldberg and Harrelson).
+		 */
+		AVOID
+	}
+
+	private final CsrMap map;
+	private final int[] landmarks;
+	// d(L,v) at v * landmarks.length + index of L
+	private final float[] fromLandmark;
+	// d(v,L), analogous
+	private final float[] toLandmark;
+	private final double slack;
+
+	/**
+	 * Selects the specified number of landmarks and computes the distance
+	 * tables using all available processors.
+	 */
+	public static LandmarkHeuristic create(CsrMap map, int landmarkCount, Selection selection) {
+		return new LandmarkHeuristic(map, selectLandmarks(map, landmarkCount, selection, new Random(0)),
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Computes the distance tables for the given landmarks.
+	 *
+	 * @param numThreads
+	 *            number of threads used to run the Dijkstra searches
+	 */
+	public LandmarkHeuristic(CsrMap map, int[] landmarks, int numThreads) {
+		if (landmarks.length == 0)
+			throw new IllegalArgumentException("At least one landmark is needed.");
+		this.map = map;
+		this.landmarks = landmarks.clone();
+		int n = map.getLocationCount();
+		fromLandmark = new float[n * landmarks.length];
+		toLandmark = new float[n * landmarks.length];
+		float max = computeTables(Math.max(numThreads, 1));
+		slack = Math.ulp(max);
+	}
+
+	/**
+	 * Selects landmarks of the map with the specified strategy. For fewer
+	 * locations than requested landmarks, all locations are returned.
+	 */
+	public static int[] selectLandmarks(CsrMap map, int landmarkCount, Selection selection, Random random) {
+		int n = map.getLocationCount();
+		if (landmarkCount >= n) {
+			int[] result = new int[n];
+			for (int v = 0; v < n; v++)
+				result[v] = v;
+			return result;
+		}
+		switch (selection) {
+		case RANDOM:
+			return selectRandom(n, landmarkCount, random);
+		case FARTHEST:
+			return selectFarthest(map, landmarkCount, random);
+		default:
+			return selectAvoid(map, landmarkCount, random);
+		}
+	}
+
+	public CsrMap getMap() {
+		return map;
+	}
+
+	/** Returns the landmark locations. */
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	@Override
+	public double h(int location, int goal) {
+		int k = landmarks.length;
+		int v = location * k;
+		int t = goal * k;
+		double result = 0;
+		// NaN differences of unreachable entries fail the comparisons
+		for (int i = 0; i < k; i++) {
+			double d = (double) fromLandmark[t + i] - fromLandmark[v + i];
+			if (d > result)
+				result = d;
+			d = (double) toLandmark[v + i] - toLandmark[t + i];
+			if (d > result)
+				result = d;
+		}
+		return result > slack ? result - slack : 0;
+	}
+
+	/**
+	 * Returns a heuristic function for the specified goal, which can be used
+	 * with searches on location names (e.g. A* on the map itself).
+	 */
+	public HeuristicFunction getHeuristicFunction(Object goal) {
+		final int t = map.getIndex((String) goal);
+		return state -> {
+			int v = map.getIndex((String) state);
+			return v != -1 && t != -1 ? h(v, t) : 0;
+		};
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Runs forward and backward Dijkstra for all landmarks in parallel. */
+	private float computeTables(int numThreads) {
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Float>> futures = new ArrayList<Future<Float>>();
+			for (int i = 0; i < landmarks.length; i++) {
+				futures.add(executor.submit(new TableTask(i, false)));
+				futures.add(executor.submit(new TableTask(i, true)));
+			}
+			float max = 0;
+			for (Future<Float> future : futures)
+				max = Math.max(max, future.get());
+			return max;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Landmark computation was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Landmark computation failed.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Computes one column of a distance table. */
+	private class TableTask implements Callable<Float> {
+		private final int index;
+		private final boolean backward;
+
+		TableTask(int index, boolean backward) {
+			this.index = index;
+			this.backward = backward;
+		}
+
+		@Override
+		public Float call() {
+			ShortestPathTree tree = new ShortestPathTree(map, landmarks[index], backward);
+			float[] table = backward ? toLandmark : fromLandmark;
+			int k = landmarks.length;
+			float max = 0;
+			for (int v = 0; v < tree.distances.length; v++) {
+				float d = (float) tree.distances[v];
+				table[v * k + index] = d;
+				if (d > max && d != Float.POSITIVE_INFINITY)
+					max = d;
+			}
+			return max;
+		}
+	}
+
+	private static int[] selectRandom(int n, int count, Random random) {
+		int[] locations = new int[n];
+		for (int v = 0; v < n; v++)
+			locations[v] = v;
+		for (int i = 0; i < count; i++) {
+			int j = i + random.nextInt(n - i);
+			int tmp = locations[i];
+			locations[i] = locations[j];
+			locations[j] = tmp;
+		}
+		return Arrays.copyOf(locations, count);
+	}
+
+	private static int[] selectFarthest(CsrMap map, int count, Random random) {
+		int n = map.getLocationCount();
+		int[] result = new int[count];
+		// the first landmark is the location farthest from a random start
+		result[0] = farthest(new ShortestPathTree(map, random.nextInt(n), false).distances, null);
+		double[] minDistances = new double[n];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		boolean[] selected = new boolean[n];
+		selected[result[0]] = true;
+		for (int i = 1; i < count; i++) {
+			double[] distances = new ShortestPathTree(map, result[i - 1], false).distances;
+			for (int v = 0; v < n; v++)
+				minDistances[v] = Math.min(minDistances[v], distances[v]);
+			int next = farthest(minDistances, selected);
+			if (next == -1)
+				next = anyUnselected(selected, random);
+			result[i] = next;
+			selected[next] = true;
+		}
+		return result;
+	}
+
+	/** Returns the location with maximal finite distance, or -1. */
+	private static int farthest(double[] distances, boolean[] excluded) {
+		int result = -1;
+		for (int v = 0; v < distances.length; v++) {
+			if (distances[v] != Double.POSITIVE_INFINITY && (excluded == null || !excluded[v])
+					&& (result == -1 || distances[v] > distances[result]))
+				result = v;
+		}
+		return result;
+	}
+
+	private static int anyUnselected(boolean[] selected, Random random) {
+		int v = random.nextInt(selected.length);
+		while (selected[v])
+			v = (v + 1) % selected.length;
+		return v;
+	}
+
+	private static int[] selectAvoid(CsrMap map, int count, Random random) {
+		int n = map.getLocationCount();
+		int[] result = new int[count];
+		boolean[] selected = new boolean[n];
+		List<double[]> tables = new ArrayList<double[]>();
+		double[] sizes = new double[n];
+		boolean[] blocked = new boolean[n];
+		int[] bestChild = new int[n];
+		Arrays.fill(bestChild, -1);
+		for (int i = 0; i < count; i++) {
+			int root = anyUnselected(selected, random);
+			ShortestPathTree tree = new ShortestPathTree(map, root, false);
+			// children are settled after their parents
+			for (int j = tree.size - 1; j >= 0; j--) {
+				int v = tree.order[j];
+				if (selected[v])
+					blocked[v] = true;
+				if (!blocked[v]) {
+					// weight: gap between distance and current lower bound
+					double bound = 0;
+					for (double[] table : tables) {
+						double d = table[v] - table[root];
+						if (d > bound)
+							bound = d;
+					}
+					sizes[v] += tree.distances[v] - bound;
+				}
+				int p = tree.parents[v];
+				if (p != -1) {
+					// subtrees which contain a landmark are ignored
+					if (blocked[v]) {
+						blocked[p] = true;
+					} else {
+						sizes[p] += sizes[v];
+						if (bestChild[p] == -1 || sizes[v] > sizes[bestChild[p]])
+							bestChild[p] = v;
+					}
+				}
+			}
+			// descend along the largest subtrees to a leaf
+			int leaf = root;
+			while (bestChild[leaf] != -1)
+				leaf = bestChild[leaf];
+			for (int j = 0; j < tree.size; j++) {
+				int v = tree.order[j];
+				sizes[v] = 0;
+				blocked[v] = false;
+				bestChild[v] = -1;
+			}
+			result[i] = leaf;
+			selected[leaf] = true;
+			if (i < count - 1)
+				tables.add(new ShortestPathTree(map, leaf, false).distances);
+		}
+		return result;
+	}
+
+	/** Result of Dijkstra's algorithm from a source location. */
+	private static class ShortestPathTree {
+		final double[] distances;
+		final int[] parents;
+		// locations in the order they were settled
+		final int[] order;
+		int size;
+
+		ShortestPathTree(CsrMap map, int source, boolean backward) {
+			int n = map.getLocationCount();
+			distances = new double[n];
+			parents = new int[n];
+			order = new int[n];
+			Arrays.fill(distances, Double.POSITIVE_INFINITY);
+			Arrays.fill(parents, -1);
+			IndexedIntPriorityQueue queue = new IndexedIntPriorityQueue(n);
+			distances[source] = 0;
+			queue.offer(source, 0);
+			while (!queue.isEmpty()) {
+				int v = queue.poll();
+				order[size++] = v;
+				double dist = distances[v];
+				int end = backward ? map.getFirstInEdge(v + 1) : map.getFirstEdge(v + 1);
+				for (int e = backward ? map.getFirstInEdge(v) : map.getFirstEdge(v); e < end; e++) {
+					int w = backward ? map.getTail(e) : map.getHead(e);
+					double newDist = dist + (backward ? map.getInWeight(e) : map.getWeight(e));
+					if (newDist < distances[w]) {
+						distances[w] = newDist;
+						parents[w] = v;
+						queue.offer(w, newDist);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,367 @@
+package aima.core.environment.map;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import aima.core.util.datastructure.IndexedIntPriorityQueue;
+
+/**
+ * Computes shortest distances between many sources and many targets at once,
+ * e.g. for planning the routes of a whole fleet of map agents. Two methods
+ * are supported:
+ * <ul>
+ * <li>On a map, one Dijkstra search per source computes the distances to all
+ * targets. Each search stops as soon as all targets are settled.</li>
+ * <li>On a {@link ContractionHierarchy}, the bucket-based many-to-many
+ * algorithm is used. An upward backward search from each target stores its
+ * distances in buckets at the settled locations. An upward forward search
+ * from each source then scans the buckets of the locations it settles. The
+ * searches are tiny, so the work is dominated by bucket scans. Paths are
+ * unpacked by point-to-point queries if requested.</li>
+ * </ul>
+ * The searches of different sources (and targets) run in parallel on a
+ * fork-join pool. Each task works on its own search arrays, so the results
+ * are the same for any number of threads.
+ */
+public class ManyToManySearch {
+
+	/** Maximal number of searches which share the arrays of a task. */
+	private static final int MAX_TASK_SIZE = 64;
+
+	private final CsrMap map;
+	private final ContractionHierarchy hierarchy;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Creates a search based on Dijkstra's algorithm. Maps other than
+	 * {@link CsrMap} are copied once.
+	 */
+	public ManyToManySearch(Map map) {
+		this.map = map instanceof CsrMap ? (CsrMap) map : CsrMap.fromMap(map);
+		hierarchy = null;
+	}
+
+	/** Creates a search based on the buckets algorithm for the hierarchy. */
+	public ManyToManySearch(ContractionHierarchy hierarchy) {
+		map = hierarchy.getMap();
+		this.hierarchy = hierarchy;
+	}
+
+	public CsrMap getMap() {
+		return map;
+	}
+
+	/** Sets the pool which runs the searches (default: the common pool). */
+	public ManyToManySearch setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Computes the distances from all sources to all targets.
+	 *
+	 * @param withPaths
+	 *            whether shortest paths are computed as well
+	 */
+	public DistanceMatrix compute(List<String> sources, List<String> targets, boolean withPaths) {
+		int[] from = toIndices(sources);
+		int[] to = toIndices(targets);
+		double[] distances = new double[from.length * to.length];
+		int[][] paths = withPaths ? new int[distances.length][] : null;
+		if (hierarchy == null)
+			pool.invoke(new DijkstraTask(from, to, distances, paths, 0, from.length));
+		else
+			computeWithBuckets(from, to, distances, paths);
+		return new DistanceMatrix(map, sources, targets, distances, paths);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int[] toIndices(List<String> locations) {
+		int[] result = new int[locations.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = map.getIndex(locations.get(i));
+			if (result[i] == -1)
+				throw new IllegalArgumentException(locations.get(i) + " is not a map location.");
+		}
+		return result;
+	}
+
+	/** Splits a range of indices until it is small enough for one task. */
+	private abstract class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int start;
+		final int end;
+		final int count;
+
+		RangeTask(int start, int end, int count) {
+			this.start = start;
+			this.end = end;
+			this.count = count;
+		}
+
+		@Override
+		protected void compute() {
+			int size = Math.min(MAX_TASK_SIZE, Math.max(1, count / (4 * pool.getParallelism())));
+			if (end - start <= size) {
+				run();
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(createSubtask(start, middle), createSubtask(middle, end));
+			}
+		}
+
+		abstract RangeTask createSubtask(int start, int end);
+
+		abstract void run();
+	}
+
+	/** One-to-many Dijkstra searches for a range of sources. */
+	private class DijkstraTask extends RangeTask {
+		private static final long serialVersionUID = 1L;
+		private final int[] from;
+		private final int[] to;
+		private final double[] distances;
+		private final int[][] paths;
+
+		DijkstraTask(int[] from, int[] to, double[] distances, int[][] paths, int start, int end) {
+			super(start, end, from.length);
+			this.from = from;
+			this.to = to;
+			this.distances = distances;
+			this.paths = paths;
+		}
+
+		@Override
+		RangeTask createSubtask(int start, int end) {
+			return new DijkstraTask(from, to, distances, paths, start, end);
+		}
+
+		@Override
+		void run() {
+			int n = map.getLocationCount();
+			double[] dist = new double[n];
+			int[] predecessors = new int[n];
+			int[] stamps = new int[n];
+			boolean[] isTarget = new boolean[n];
+			int targetCount = 0;
+			for (int t : to) {
+				if (!isTarget[t]) {
+					isTarget[t] = true;
+					targetCount++;
+				}
+			}
+			IndexedIntPriorityQueue queue = new IndexedIntPriorityQueue(n);
+			for (int i = start; i < end; i++) {
+				int stamp = i - start + 1;
+				queue.clear();
+				stamps[from[i]] = stamp;
+				dist[from[i]] = 0;
+				predecessors[from[i]] = -1;
+				queue.offer(from[i], 0);
+				int remaining = targetCount;
+				while (!queue.isEmpty() && remaining > 0) {
+					int v = queue.poll();
+					if (isTarget[v])
+						remaining--;
+					double d = dist[v];
+					int last = map.getFirstEdge(v + 1);
+					for (int e = map.getFirstEdge(v); e < last; e++) {
+						int w = map.getHead(e);
+						double newDist = d + map.getWeight(e);
+						if (stamps[w] != stamp || newDist < dist[w]) {
+							stamps[w] = stamp;
+							dist[w] = newDist;
+							predecessors[w] = v;
+							queue.offer(w, newDist);
+						}
+					}
+				}
+				// unreached or unsettled targets are only possible if unreachable
+				for (int j = 0; j < to.length; j++) {
+					int t = to[j];
+					boolean reached = stamps[t] == stamp;
+					distances[i * to.length + j] = reached ? dist[t] : Double.POSITIVE_INFINITY;
+					if (paths != null && reached)
+						paths[i * to.length + j] = getPath(predecessors, t);
+				}
+			}
+		}
+	}
+
+	private static int[] getPath(int[] predecessors, int to) {
+		int length = 0;
+		for (int v = to; v != -1; v = predecessors[v])
+			length++;
+		int[] path = new int[length];
+		for (int v = to; v != -1; v = predecessors[v])
+			path[--length] = v;
+		return path;
+	}
+
+	private void computeWithBuckets(int[] from, int[] to, double[] distances, int[][] paths) {
+		int n = map.getLocationCount();
+		// backward searches from the targets
+		SearchSpace[] spaces = new SearchSpace[to.length];
+		pool.invoke(new UpwardTask(to, false, spaces, null, null, 0, 0, to.length));
+		// buckets: target indices and distances grouped by location
+		int[] firstEntry = new int[n + 1];
+		for (SearchSpace space : spaces)
+			for (int k = 0; k < space.size; k++)
+				firstEntry[space.locations[k] + 1]++;
+		for (int v = 0; v < n; v++)
+			firstEntry[v + 1] += firstEntry[v];
+		int[] bucketTargets = new int[firstEntry[n]];
+		double[] bucketDistances = new double[firstEntry[n]];
+		int[] next = Arrays.copyOf(firstEntry, n);
+		for (int j = 0; j < spaces.length; j++) {
+			SearchSpace space = spaces[j];
+			for (int k = 0; k < space.size; k++) {
+				int pos = next[space.locations[k]]++;
+				bucketTargets[pos] = j;
+				bucketDistances[pos] = space.distances[k];
+			}
+		}
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		pool.invoke(new UpwardTask(from, true, null, new Buckets(firstEntry, bucketTargets, bucketDistances),
+				distances, to.length, 0, from.length));
+		if (paths != null)
+			pool.invoke(new PathTask(from, to, distances, paths, 0, from.length));
+	}
+
+	/** Locations settled by an upward search with their distances. */
+	private static class SearchSpace {
+		int[] locations;
+		double[] distances;
+		int size;
+	}
+
+	private static class Buckets {
+		final int[] firstEntry;
+		final int[] targets;
+		final double[] distances;
+
+		Buckets(int[] firstEntry, int[] targets, double[] distances) {
+			this.firstEntry = firstEntry;
+			this.targets = targets;
+			this.distances = distances;
+		}
+	}
+
+	/**
+	 * Upward searches in the hierarchy. Backward searches record their search
+	 * spaces, forward searches scan the buckets.
+	 */
+	private class UpwardTask extends RangeTask {
+		private static final long serialVersionUID = 1L;
+		private final int[] sources;
+		private final boolean forward;
+		private final SearchSpace[] spaces;
+		private final Buckets buckets;
+		private final double[] matrix;
+		private final int columns;
+
+		UpwardTask(int[] sources, boolean forward, SearchSpace[] spaces, Buckets buckets, double[] matrix,
+				int columns, int start, int end) {
+			super(start, end, sources.length);
+			this.columns = columns;
+			this.sources = sources;
+			this.forward = forward;
+			this.spaces = spaces;
+			this.buckets = buckets;
+			this.matrix = matrix;
+		}
+
+		@Override
+		RangeTask createSubtask(int start, int end) {
+			return new UpwardTask(sources, forward, spaces, buckets, matrix, columns, start, end);
+		}
+
+		@Override
+		void run() {
+			int n = map.getLocationCount();
+			double[] dist = new double[n];
+			int[] stamps = new int[n];
+			IndexedIntPriorityQueue queue = new IndexedIntPriorityQueue(n);
+			int[] settled = new int[16];
+			for (int i = start; i < end; i++) {
+				int stamp = i - start + 1;
+				int size = 0;
+				queue.clear();
+				stamps[sources[i]] = stamp;
+				dist[sources[i]] = 0;
+				queue.offer(sources[i], 0);
+				while (!queue.isEmpty()) {
+					int v = queue.poll();
+					double d = dist[v];
+					if (size == settled.length)
+						settled = Arrays.copyOf(settled, size * 2);
+					settled[size++] = v;
+					if (forward) {
+						int row = i * columns;
+						for (int k = buckets.firstEntry[v]; k < buckets.firstEntry[v + 1]; k++) {
+							double total = d + buckets.distances[k];
+							if (total < matrix[row + buckets.targets[k]])
+								matrix[row + buckets.targets[k]] = total;
+						}
+					}
+					int last = forward ? hierarchy.getFirstUpEdge(v + 1) : hierarchy.getFirstDownEdge(v + 1);
+					for (int k = forward ? hierarchy.getFirstUpEdge(v) : hierarchy.getFirstDownEdge(v); k < last; k++) {
+						int e = forward ? hierarchy.getUpEdge(k) : hierarchy.getDownEdge(k);
+						int w = forward ? hierarchy.getHead(e) : hierarchy.getTail(e);
+						double newDist = d + hierarchy.getWeight(e);
+						if (stamps[w] != stamp || newDist < dist[w]) {
+							stamps[w] = stamp;
+							dist[w] = newDist;
+							queue.offer(w, newDist);
+						}
+					}
+				}
+				if (!forward) {
+					SearchSpace space = new SearchSpace();
+					space.locations = Arrays.copyOf(settled, size);
+					space.distances = new double[size];
+					for (int k = 0; k < size; k++)
+						space.distances[k] = dist[settled[k]];
+					space.size = size;
+					spaces[i] = space;
+				}
+			}
+		}
+	}
+
+	/** Unpacks the paths of a range of sources by point-to-point queries. */
+	private class PathTask extends RangeTask {
+		private static final long serialVersionUID = 1L;
+		private final int[] from;
+		private final int[] to;
+		private final double[] distances;
+		private final int[][] paths;
+
+		PathTask(int[] from, int[] to, double[] distances, int[][] paths, int start, int end) {
+			super(start, end, from.length);
+			this.from = from;
+			this.to = to;
+			this.distances = distances;
+			this.paths = paths;
+		}
+
+		@Override
+		RangeTask createSubtask(int start, int end) {
+			return new PathTask(from, to, distances, paths, start, end);
+		}
+
+		@Override
+		void run() {
+			ContractionHierarchySearch search = new ContractionHierarchySearch(hierarchy);
+			for (int i = start; i < end; i++)
+				for (int j = 0; j < to.length; j++)
+					if (distances[i * to.length + j] != Double.POSITIVE_INFINITY)
+						paths[i * to.length + j] = search.findPath(from[i], to[j]);
+		}
+	}
+}
@@ -122,6 +122,9 @@ public class MapAgent extends ProblemSolvingAgent {
 	private void modifyHeuristicFunction(Object goal) {
 		if (hfFactory != null) {
 			EvaluationFunction ef = null;
+			SearchForActions search = this.search;
+			if (search instanceof CachingMapSearch)
+				search = ((CachingMapSearch) search).getSearch();
 			if (search instanceof BestFirstSearch)
 				ef = ((BestFirstSearch) search).getEvaluationFunction();
 			else if (search instanceof RecursiveBestFirstSearch)
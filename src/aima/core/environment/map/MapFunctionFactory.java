@@ -43,6 +43,15 @@ public class MapFunctionFactory {
 		return new StraightLineDistanceHeuristicFunction(goal, map);
 	}
 
+	/**
+	 * Returns a heuristic based on precomputed landmark distances, which
+	 * estimates road distances much more tightly than the straight line
+	 * distance.
+	 */
+	public static HeuristicFunction getALTHeuristicFunction(Object goal, LandmarkHeuristic landmarks) {
+		return landmarks.getHeuristicFunction(goal);
+	}
+
 	/** Returns a heuristic which always returns zero. More optimism is not possible. */
 	public static HeuristicFunction getZeroHeuristicFunction() {
 		return new ZeroHeuristicFunction();
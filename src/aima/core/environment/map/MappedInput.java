@@ -0,0 +1,119 @@
+package aima.core.environment.map;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sequential reader for files which are mapped into memory. Large files are
+ * mapped in windows, so files of more than 2 GB can be read as well. Bytes are
+ * read directly from the mapping without intermediate copies, and primitive
+ * arrays are filled by bulk transfers.
+ */
+class MappedInput implements Closeable {
+
+	private static final long WINDOW_SIZE = 1L << 30;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long size;
+	private long windowStart;
+	private MappedByteBuffer buffer;
+
+	MappedInput(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		channel = this.file.getChannel();
+		size = channel.size();
+		map(0);
+	}
+
+	/** Returns the position in the file. */
+	long getPosition() {
+		return windowStart + buffer.position();
+	}
+
+	/** Returns the number of bytes from the current position to the end. */
+	long getRemaining() {
+		return size - getPosition();
+	}
+
+	/** Returns the next byte as value from 0 to 255, or -1 at the end of the file. */
+	int read() throws IOException {
+		if (!buffer.hasRemaining() && !ensure(1))
+			return -1;
+		return buffer.get() & 0xFF;
+	}
+
+	int readInt() throws IOException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	double readDouble() throws IOException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	void readInts(int[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			require(4);
+			int count = Math.min(values.length - off, buffer.remaining() / 4);
+			buffer.asIntBuffer().get(values, off, count);
+			buffer.position(buffer.position() + count * 4);
+			off += count;
+		}
+	}
+
+	void readDoubles(double[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			require(8);
+			int count = Math.min(values.length - off, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().get(values, off, count);
+			buffer.position(buffer.position() + count * 8);
+			off += count;
+		}
+	}
+
+	void readBytes(byte[] values) throws IOException {
+		for (int off = 0; off < values.length;) {
+			require(1);
+			int count = Math.min(values.length - off, buffer.remaining());
+			buffer.get(values, off, count);
+			off += count;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		// the mapping is released by the garbage collector
+		file.close();
+	}
+
+	private void require(int bytes) throws IOException {
+		if (buffer.remaining() < bytes && !ensure(bytes))
+			throw new EOFException("Unexpected end of file.");
+	}
+
+	/**
+	 * Moves the window to the current position if fewer than the specified
+	 * number of bytes remain in it.
+	 *
+	 * @return false if the file does not contain that many bytes any more.
+	 */
+	private boolean ensure(int bytes) throws IOException {
+		long position = getPosition();
+		if (size - position < bytes)
+			return false;
+		map(position);
+		return true;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+	}
+}
@@ -0,0 +1,229 @@
+package aima.core.environment.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.util.datastructure.Triplet;
+
+/**
+ * Bounded cache for the results of route searches on a {@link VersionedMap}.
+ * Entries are addressed by start location, goal location, and the name of the
+ * search algorithm. Each entry remembers the map version it was computed for.
+ * Before an entry is returned, the change log of the map is checked: the
+ * entry is dropped if a global change happened since then or if one of the
+ * links of its route was removed or made longer. Routes which are not
+ * affected by the modifications stay in the cache.<br>
+ * <br>
+ * When the cache is full, the least recently used (LRU) or the least
+ * frequently used (LFU) entry is evicted. The cache is thread-safe, so agents
+ * in different threads can share it. Use {@link CachingMapSearch} to add a
+ * cache to a search used by map agents.
+ */
+public class RouteCache {
+
+	public enum Policy {
+		/** Evicts the entry which has not been accessed for the longest time. */
+		LRU,
+		/** Evicts the entry with the fewest accesses (the oldest among ties). */
+		LFU
+	}
+
+	public static final String METRIC_HITS = "cacheHits";
+	public static final String METRIC_MISSES = "cacheMisses";
+	public static final String METRIC_INVALIDATIONS = "cacheInvalidations";
+	public static final String METRIC_EVICTIONS = "cacheEvictions";
+	public static final String METRIC_SIZE = "cacheSize";
+
+	private final VersionedMap map;
+	private final int capacity;
+	private final Policy policy;
+	// access-ordered for LRU
+	private final LinkedHashMap<Triplet<String, String, String>, Entry> entries;
+	// LFU only: keys grouped by access frequency, each group in insertion order
+	private final HashMap<Integer, LinkedHashSet<Triplet<String, String, String>>> frequencies = new HashMap<Integer, LinkedHashSet<Triplet<String, String, String>>>();
+	private int minFrequency;
+
+	private int hits;
+	private int misses;
+	private int invalidations;
+	private int evictions;
+
+	public RouteCache(VersionedMap map, int capacity, Policy policy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive.");
+		this.map = map;
+		this.capacity = capacity;
+		this.policy = policy;
+		entries = new LinkedHashMap<Triplet<String, String, String>, Entry>(16, 0.75f, policy == Policy.LRU);
+	}
+
+	public VersionedMap getMap() {
+		return map;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Returns the cached actions from one location to another, or null if no
+	 * valid entry exists. The returned list can be modified by the caller.
+	 */
+	public synchronized List<Action> get(String from, String to, String algorithm) {
+		Triplet<String, String, String> key = new Triplet<String, String, String>(from, to, algorithm);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		long version = map.getVersion();
+		if (map.isAffected(entry.version, entry.route)) {
+			remove(key, entry);
+			invalidations++;
+			misses++;
+			return null;
+		}
+		// the entry survived all modifications up to this version
+		entry.version = version;
+		if (policy == Policy.LFU)
+			incrementFrequency(key, entry);
+		hits++;
+		return new ArrayList<Action>(entry.actions);
+	}
+
+	/**
+	 * Stores the result of a search.
+	 *
+	 * @param version
+	 *            the map version which was current when the search started
+	 * @param actions
+	 *            the search result, consisting of {@link MoveToAction}s, a
+	 *            single NoOp action or no action at all (failure). Other
+	 *            results are not cached.
+	 */
+	public synchronized void put(String from, String to, String algorithm, long version, List<Action> actions) {
+		List<String> route = null;
+		if (!actions.isEmpty()) {
+			route = new ArrayList<String>(actions.size() + 1);
+			route.add(from);
+			if (actions.size() != 1 || actions.get(0) != NoOpAction.NO_OP) {
+				for (Action action : actions) {
+					if (!(action instanceof MoveToAction))
+						return;
+					route.add(((MoveToAction) action).getToLocation());
+				}
+			}
+		}
+		Triplet<String, String, String> key = new Triplet<String, String, String>(from, to, algorithm);
+		Entry old = entries.get(key);
+		if (old != null)
+			remove(key, old);
+		else if (entries.size() == capacity)
+			evict();
+		Entry entry = new Entry(new ArrayList<Action>(actions), route, version);
+		entries.put(key, entry);
+		if (policy == Policy.LFU) {
+			addToFrequency(key, 1);
+			minFrequency = 1;
+		}
+	}
+
+	/** Removes all entries. Metrics are kept. */
+	public synchronized void clear() {
+		entries.clear();
+		frequencies.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** Returns hit, miss, invalidation and eviction counts and the size. */
+	public synchronized Metrics getMetrics() {
+		Metrics metrics = new Metrics();
+		metrics.set(METRIC_HITS, hits);
+		metrics.set(METRIC_MISSES, misses);
+		metrics.set(METRIC_INVALIDATIONS, invalidations);
+		metrics.set(METRIC_EVICTIONS, evictions);
+		metrics.set(METRIC_SIZE, entries.size());
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void evict() {
+		Triplet<String, String, String> key;
+		if (policy == Policy.LRU) {
+			key = entries.keySet().iterator().next();
+		} else {
+			key = frequencies.get(minFrequency).iterator().next();
+		}
+		remove(key, entries.get(key));
+		evictions++;
+	}
+
+	private void remove(Triplet<String, String, String> key, Entry entry) {
+		entries.remove(key);
+		if (policy == Policy.LFU)
+			removeFromFrequency(key, entry.frequency);
+	}
+
+	private void incrementFrequency(Triplet<String, String, String> key, Entry entry) {
+		LinkedHashSet<Triplet<String, String, String>> keys = frequencies.get(entry.frequency);
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			frequencies.remove(entry.frequency);
+			if (entry.frequency == minFrequency)
+				minFrequency++;
+		}
+		entry.frequency++;
+		addToFrequency(key, entry.frequency);
+	}
+
+	private void addToFrequency(Triplet<String, String, String> key, int frequency) {
+		LinkedHashSet<Triplet<String, String, String>> keys = frequencies.get(frequency);
+		if (keys == null) {
+			keys = new LinkedHashSet<Triplet<String, String, String>>();
+			frequencies.put(frequency, keys);
+		}
+		keys.add(key);
+	}
+
+	private void removeFromFrequency(Triplet<String, String, String> key, int frequency) {
+		LinkedHashSet<Triplet<String, String, String>> keys = frequencies.get(frequency);
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			frequencies.remove(frequency);
+			if (frequency == minFrequency && !frequencies.isEmpty()) {
+				minFrequency = Integer.MAX_VALUE;
+				for (int f : frequencies.keySet())
+					minFrequency = Math.min(minFrequency, f);
+			}
+		}
+	}
+
+	private static class Entry {
+		final List<Action> actions;
+		final List<String> route;
+		long version;
+		int frequency = 1;
+
+		Entry(List<Action> actions, List<String> route, long version) {
+			this.actions = actions;
+			this.route = route;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package aima.core.environment.map;
+
+import java.util.List;
+
+import aima.core.util.math.geom.shapes.Point2D;
+
+/**
+ * Wrapper for an {@link ExtendableMap} which counts modifications. Every
+ * modification through the wrapper increments the version of the map and is
+ * recorded in a bounded change log. So clients like {@link RouteCache} can
+ * find out whether data derived from an older version is still valid.
+ * Modifications are classified as follows:
+ * <ul>
+ * <li>Removing a link or making it longer only affects routes which use the
+ * link.</li>
+ * <li>Adding a link, making it shorter, moving locations, and clearing the map
+ * may affect every route.</li>
+ * </ul>
+ * The wrapped map must not be modified directly.
+ */
+public class VersionedMap implements Map {
+
+	/** Number of modifications kept in the change log. */
+	private static final int LOG_SIZE = 1024;
+
+	private final ExtendableMap map;
+	private long version;
+	// ring buffer of modified links, null entries stand for global changes
+	private final String[] logFrom = new String[LOG_SIZE];
+	private final String[] logTo = new String[LOG_SIZE];
+	private long lastGlobalChange;
+
+	public VersionedMap(ExtendableMap map) {
+		this.map = map;
+	}
+
+	/** Returns the number of modifications made so far. */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Checks whether a route which was computed for the specified version may
+	 * be affected by modifications made since then.
+	 *
+	 * @param route
+	 *            the locations of the route including start and goal, or null
+	 *            if no route was found (then only global changes matter)
+	 */
+	public synchronized boolean isAffected(long sinceVersion, List<String> route) {
+		if (sinceVersion >= version)
+			return false;
+		if (lastGlobalChange > sinceVersion || version - sinceVersion > LOG_SIZE)
+			return true;
+		if (route == null)
+			return false;
+		for (long v = sinceVersion + 1; v <= version; v++) {
+			int slot = (int) (v % LOG_SIZE);
+			for (int i = 1; i < route.size(); i++)
+				if (logFrom[slot].equals(route.get(i - 1)) && logTo[slot].equals(route.get(i)))
+					return true;
+		}
+		return false;
+	}
+
+	//
+	// read access
+	//
+
+	@Override
+	public synchronized List<String> getLocations() {
+		return map.getLocations();
+	}
+
+	@Override
+	public synchronized List<String> getPossibleNextLocations(String location) {
+		return map.getPossibleNextLocations(location);
+	}
+
+	@Override
+	public synchronized List<String> getPossiblePrevLocations(String location) {
+		return map.getPossiblePrevLocations(location);
+	}
+
+	@Override
+	public synchronized Double getDistance(String fromLocation, String toLocation) {
+		return map.getDistance(fromLocation, toLocation);
+	}
+
+	@Override
+	public synchronized Point2D getPosition(String loc) {
+		return map.getPosition(loc);
+	}
+
+	@Override
+	public synchronized String randomlyGenerateDestination() {
+		return map.randomlyGenerateDestination();
+	}
+
+	//
+	// modifications
+	//
+
+	/** Removes everything. */
+	public synchronized void clear() {
+		map.clear();
+		logGlobalChange();
+	}
+
+	/** Clears all connections but keeps location position informations. */
+	public synchronized void clearLinks() {
+		map.clearLinks();
+		logGlobalChange();
+	}
+
+	/** Adds or replaces a one-way connection. */
+	public synchronized void addUnidirectionalLink(String fromLocation, String toLocation, Double distance) {
+		Double old = map.getDistance(fromLocation, toLocation);
+		map.addUnidirectionalLink(fromLocation, toLocation, distance);
+		if (old != null && distance >= old)
+			logLinkChange(fromLocation, toLocation);
+		else
+			logGlobalChange();
+	}
+
+	/** Adds or replaces a connection which can be traveled in both direction. */
+	public synchronized void addBidirectionalLink(String fromLocation, String toLocation, Double distance) {
+		addUnidirectionalLink(fromLocation, toLocation, distance);
+		addUnidirectionalLink(toLocation, fromLocation, distance);
+	}
+
+	/** Removes a one-way connection. */
+	public synchronized void removeUnidirectionalLink(String fromLocation, String toLocation) {
+		map.removeUnidirectionalLink(fromLocation, toLocation);
+		logLinkChange(fromLocation, toLocation);
+	}
+
+	/** Removes the two corresponding one-way connections. */
+	public synchronized void removeBidirectionalLink(String fromLocation, String toLocation) {
+		removeUnidirectionalLink(fromLocation, toLocation);
+		removeUnidirectionalLink(toLocation, fromLocation);
+	}
+
+	/**
+	 * Defines the position of a location. Positions influence heuristics and
+	 * thereby the routes found by non-optimal searches.
+	 */
+	public synchronized void setPosition(String loc, double x, double y) {
+		map.setPosition(loc, x, y);
+		logGlobalChange();
+	}
+
+	/**
+	 * Defines the position of a location relative to a reference location (see
+	 * {@link ExtendableMap#setDistAndDirToRefLocation(String, double, int)}).
+	 */
+	public synchronized void setDistAndDirToRefLocation(String loc, double dist, int dir) {
+		map.setDistAndDirToRefLocation(loc, dist, dir);
+		logGlobalChange();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void logLinkChange(String from, String to) {
+		version++;
+		int slot = (int) (version % LOG_SIZE);
+		logFrom[slot] = from;
+		logTo[slot] = to;
+	}
+
+	private void logGlobalChange() {
+		version++;
+		lastGlobalChange = version;
+		int slot = (int) (version % LOG_SIZE);
+		logFrom[slot] = null;
+		logTo[slot] = null;
+	}
+}
@@ -5,7 +5,22 @@
  * environments, agents and viewers. <code>ExtendableMap</code>
  * implements this interface and adds functionality for
  * creation and modification. It maintains named locations with
- * coordinates and links between them.
+ * coordinates and links between them. <code>CsrMap</code> is an
+ * immutable, array-based copy of a map for large road networks,
+ * which can be searched with <code>CsrMapSearch</code>. Road networks
+ * in DIMACS format are loaded by <code>DimacsMapReader</code>.
+ * <code>LandmarkHeuristic</code> provides tight distance estimates
+ * for such maps based on precomputed landmark distances. For many
+ * queries on a static map, a <code>ContractionHierarchy</code> can be
+ * built and queried by <code>ContractionHierarchySearch</code>.
+ * <code>ManyToManySearch</code> computes distance matrices between
+ * many sources and targets in parallel, e.g. for fleets of agents.
+ * A <code>VersionedMap</code> tracks modifications of an extendable
+ * map, so that a <code>RouteCache</code> can reuse search results as
+ * long as they are not affected by the modifications. The cache is
+ * plugged into map agents by <code>CachingMapSearch</code>.
+ * <code>DStarLiteMapAgent</code> replans incrementally when it
+ * notices that links have changed.
  * The <code>MapEnvironment</code> enables a <code>SimpleMapAgent</code>
  * to travel through a world whose topology is described by a map.
  * Adaptable heuristic functions let the agent modify the
@@ -3,7 +3,9 @@ package aima.core.environment.tictactoe;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import aima.core.search.adversarial.ZobristHashable;
 import aima.core.util.datastructure.XYLocation;
 
 /**
@@ -13,16 +15,25 @@ import aima.core.util.datastructure.XYLocation;
  * @author Ruediger Lunde
  * 
  */
-public class TicTacToeState implements Cloneable {
+public class TicTacToeState implements Cloneable, ZobristHashable {
 	public static final String O = "O";
 	public static final String X = "X";
 	public static final String EMPTY = "-";
+	// random keys for X and O on each position
+	private static final long[] ZOBRIST_KEYS = new long[18];
+
+	static {
+		Random random = new Random(9);
+		for (int i = 0; i < ZOBRIST_KEYS.length; i++)
+			ZOBRIST_KEYS[i] = random.nextLong();
+	}
 	//
 	private String[] board = new String[] { EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
 			EMPTY, EMPTY, EMPTY, EMPTY };
 
 	private String playerToMove = X;
 	private double utility = -1; // 1: win for X, 0: win for O, 0.5: draw
+	private long zobristHash;
 
 	public String getPlayerToMove() {
 		return playerToMove;
@@ -40,6 +51,15 @@ public class TicTacToeState implements Cloneable {
 		return utility;
 	}
 
+	/**
+	 * Returns the XOR of the keys of all marks. The player to move is implied
+	 * by the number of marks.
+	 */
+	@Override
+	public long getZobristHash() {
+		return zobristHash;
+	}
+
 	public void mark(XYLocation action) {
 		mark(action.getXCoOrdinate(), action.getYCoOrdinate());
 	}
@@ -47,6 +67,7 @@ public class TicTacToeState implements Cloneable {
 	public void mark(int col, int row) {
 		if (utility == -1 && getValue(col, row) == EMPTY) {
 			board[getAbsPosition(col, row)] = playerToMove;
+			zobristHash ^= ZOBRIST_KEYS[2 * getAbsPosition(col, row) + (playerToMove == X ? 0 : 1)];
 			analyzeUtility();
 			playerToMove = (playerToMove == X ? O : X);
 		}
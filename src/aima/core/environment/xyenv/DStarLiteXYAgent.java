@@ -0,0 +1,127 @@
+package aima.core.environment.xyenv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.Percept;
+import aima.core.agent.impl.DynamicPercept;
+import aima.core.search.online.DStarLite;
+import aima.core.search.online.DStarLiteAgent;
+import aima.core.util.datastructure.XYLocation;
+
+/**
+ * Agent which moves through an {@link XYEnvironment} to a goal location and
+ * replans incrementally with D* Lite. The agent moves to the four orthogonal
+ * neighbors of its location. It knows the size of the environment, and its
+ * knowledge about walls is kept in an {@link OccupancyGrid}. Unknown cells are
+ * assumed to be free. In each step, the agent senses the cells within its
+ * sensor radius; newly detected or vanished walls change the costs of the
+ * moves into and out of the cell, and only the affected part of the plan is
+ * repaired. The Manhattan distance serves as heuristic.
+ */
+public class DStarLiteXYAgent extends DStarLiteAgent<XYLocation> {
+
+	private final XYEnvironment env;
+	private final OccupancyGrid knownGrid;
+	private final int sensorRadius;
+
+	/** Creates an agent which does not know any walls initially. */
+	public DStarLiteXYAgent(XYEnvironment env, XYLocation goal, int sensorRadius) {
+		this(env, goal, sensorRadius, new OccupancyGrid(env.getWidth(), env.getHeight()));
+	}
+
+	/**
+	 * Creates an agent with initial knowledge about walls, e.g.
+	 * {@link OccupancyGrid#fromEnvironment(XYEnvironment)}. The grid is
+	 * updated by the agent.
+	 */
+	public DStarLiteXYAgent(XYEnvironment env, XYLocation goal, int sensorRadius, OccupancyGrid knownGrid) {
+		super(goal);
+		this.env = env;
+		this.sensorRadius = sensorRadius;
+		this.knownGrid = knownGrid;
+	}
+
+	/** Returns the walls known by the agent. */
+	public OccupancyGrid getKnownGrid() {
+		return knownGrid;
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	@Override
+	protected XYLocation getState(Percept p) {
+		return (XYLocation) ((DynamicPercept) p).getAttribute(XYEnvironment.PERCEPT_LOCATION);
+	}
+
+	@Override
+	protected DStarLite.Graph<XYLocation> createGraph() {
+		return new DStarLite.Graph<XYLocation>() {
+			@Override
+			public List<XYLocation> getSuccessors(XYLocation state) {
+				return getNeighbors(state);
+			}
+
+			@Override
+			public List<XYLocation> getPredecessors(XYLocation state) {
+				return getNeighbors(state);
+			}
+
+			@Override
+			public double getCost(XYLocation from, XYLocation to) {
+				return knownGrid.isBlocked(from.getXCoOrdinate(), from.getYCoOrdinate())
+						|| knownGrid.isBlocked(to.getXCoOrdinate(), to.getYCoOrdinate()) ? Double.POSITIVE_INFINITY
+								: 1;
+			}
+
+			@Override
+			public double h(XYLocation from, XYLocation to) {
+				return Math.abs(from.getXCoOrdinate() - to.getXCoOrdinate())
+						+ Math.abs(from.getYCoOrdinate() - to.getYCoOrdinate());
+			}
+		};
+	}
+
+	@Override
+	protected void observeChanges(XYLocation state, DStarLite<XYLocation> planner) {
+		int x0 = state.getXCoOrdinate();
+		int y0 = state.getYCoOrdinate();
+		for (int y = y0 - sensorRadius; y <= y0 + sensorRadius; y++) {
+			for (int x = x0 - sensorRadius; x <= x0 + sensorRadius; x++) {
+				if (!knownGrid.isInside(x, y))
+					continue;
+				XYLocation cell = new XYLocation(x, y);
+				boolean blocked = env.isBlocked(cell);
+				if (blocked != knownGrid.isBlocked(x, y)) {
+					knownGrid.setBlocked(x, y, blocked);
+					for (XYLocation neighbor : getNeighbors(cell)) {
+						planner.edgeCostChanged(neighbor, cell);
+						planner.edgeCostChanged(cell, neighbor);
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Action createAction(XYLocation from, XYLocation to) {
+		return new MoveToLocationAction(to);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private List<XYLocation> getNeighbors(XYLocation loc) {
+		List<XYLocation> result = new ArrayList<XYLocation>(4);
+		for (XYLocation.Direction dir : XYLocation.Direction.values()) {
+			XYLocation neighbor = loc.locationAt(dir);
+			if (knownGrid.isInside(neighbor.getXCoOrdinate(), neighbor.getYCoOrdinate()))
+				result.add(neighbor);
+		}
+		return result;
+	}
+}
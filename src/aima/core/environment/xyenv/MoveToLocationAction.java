@@ -0,0 +1,21 @@
+package aima.core.environment.xyenv;
+
+import aima.core.agent.impl.DynamicAction;
+import aima.core.util.datastructure.XYLocation;
+
+/**
+ * Moves an object to a neighboring cell of an {@link XYEnvironment}, possibly
+ * diagonally.
+ */
+public class MoveToLocationAction extends DynamicAction {
+	public static final String ATTRIBUTE_MOVE_TO_LOCATION = "location";
+
+	public MoveToLocationAction(XYLocation location) {
+		super("moveTo");
+		setAttribute(ATTRIBUTE_MOVE_TO_LOCATION, location);
+	}
+
+	public XYLocation getToLocation() {
+		return (XYLocation) getAttribute(ATTRIBUTE_MOVE_TO_LOCATION);
+	}
+}
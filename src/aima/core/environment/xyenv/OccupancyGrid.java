@@ -0,0 +1,139 @@
+package aima.core.environment.xyenv;
+
+import aima.core.util.datastructure.XYLocation;
+
+/**
+ * Rectangular grid of free and blocked cells, stored as bit sets with one bit
+ * per cell. Cells outside the grid count as blocked, so searches need no
+ * bounds checks of their own. The grid is stored twice, row by row and column
+ * by column, with each row (column) starting at a new 64 bit word. So 64
+ * neighboring cells of a row or column can be read at once, which enables
+ * searches to scan along straight lines quickly. A 4k x 4k grid needs 4 MB.
+ */
+public class OccupancyGrid {
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final int wordsPerColumn;
+	// padding bits at the end of rows and columns are set (blocked)
+	private final long[] rows;
+	private final long[] columns;
+
+	/** Creates a grid of free cells. */
+	public OccupancyGrid(int width, int height) {
+		if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Illegal grid size " + width + " x " + height + ".");
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		wordsPerColumn = (height + 63) >>> 6;
+		rows = createLines(height, wordsPerRow, width);
+		columns = createLines(width, wordsPerColumn, height);
+	}
+
+	/**
+	 * Creates a grid which marks the cells of the environment as blocked for
+	 * which {@link XYEnvironment#isBlocked(XYLocation)} returns true. Cell
+	 * (x, y) corresponds to location (x, y) with x from 0 to width-1 and y from
+	 * 0 to height-1.
+	 */
+	public static OccupancyGrid fromEnvironment(XYEnvironment env) {
+		OccupancyGrid result = new OccupancyGrid(env.getWidth(), env.getHeight());
+		for (int y = 0; y < result.height; y++)
+			for (int x = 0; x < result.width; x++)
+				if (env.isBlocked(new XYLocation(x, y)))
+					result.setBlocked(x, y, true);
+		return result;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Returns the index of a cell (y * width + x). */
+	public int getIndex(int x, int y) {
+		return y * width + x;
+	}
+
+	public boolean isInside(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	/** Checks whether a cell is blocked. Cells outside the grid are blocked. */
+	public boolean isBlocked(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return true;
+		return (rows[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	public boolean isFree(int x, int y) {
+		return !isBlocked(x, y);
+	}
+
+	public void setBlocked(int x, int y, boolean value) {
+		if (!isInside(x, y))
+			throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside the grid.");
+		if (value) {
+			rows[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+			columns[x * wordsPerColumn + (y >>> 6)] |= 1L << y;
+		} else {
+			rows[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+			columns[x * wordsPerColumn + (y >>> 6)] &= ~(1L << y);
+		}
+	}
+
+	/** Returns the number of blocked cells. */
+	public int getBlockedCount() {
+		int result = 0;
+		for (long word : rows)
+			result += Long.bitCount(word);
+		return result - height * (wordsPerRow * 64 - width);
+	}
+
+	/**
+	 * Returns the blocked flags of 64 consecutive cells of a row (or a column
+	 * if <code>vertical</code> is true). Bit i corresponds to the cell at
+	 * position <code>pos + i</code>. Cells outside the grid are blocked.
+	 *
+	 * @param line
+	 *            y coordinate of the row or x coordinate of the column
+	 * @param pos
+	 *            x coordinate in the row or y coordinate in the column; values
+	 *            down to -64 are allowed
+	 */
+	long getBits(boolean vertical, int line, int pos) {
+		int words = vertical ? wordsPerColumn : wordsPerRow;
+		if (line < 0 || line >= (vertical ? width : height))
+			return -1L;
+		long[] bits = vertical ? columns : rows;
+		int base = line * words;
+		if (pos < 0)
+			return pos <= -64 ? -1L : bits[base] << -pos | (1L << -pos) - 1;
+		int word = pos >>> 6;
+		int shift = pos & 63;
+		long low = word < words ? bits[base + word] : -1L;
+		if (shift == 0)
+			return low;
+		long high = word + 1 < words ? bits[base + word + 1] : -1L;
+		return low >>> shift | high << (64 - shift);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static long[] createLines(int lineCount, int wordsPerLine, int lineLength) {
+		long[] result = new long[lineCount * wordsPerLine];
+		if ((lineLength & 63) != 0) {
+			long padding = -1L << lineLength;
+			for (int line = 0; line < lineCount; line++)
+				result[line * wordsPerLine + wordsPerLine - 1] = padding;
+		}
+		return result;
+	}
+}
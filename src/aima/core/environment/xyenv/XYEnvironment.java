@@ -19,6 +19,11 @@ import aima.core.util.datastructure.XYLocation;
  * @author Ciaran O'Reilly
  */
 public class XYEnvironment extends AbstractEnvironment {
+	/**
+	 * Name of the percept attribute which contains the location of the agent.
+	 */
+	public static final String PERCEPT_LOCATION = "location";
+
 	private XYEnvironmentState envState = null;
 
 	//
@@ -31,14 +36,34 @@ public class XYEnvironment extends AbstractEnvironment {
 		envState = new XYEnvironmentState(width, height);
 	}
 
-	/** Does nothing (don't ask me why...). */
+	public int getWidth() {
+		return envState.width;
+	}
+
+	public int getHeight() {
+		return envState.height;
+	}
+
+	/**
+	 * Moves the agent to the location of a {@link MoveToLocationAction} if
+	 * the location is a free neighbor (possibly diagonal) of the current
+	 * location. Other actions are ignored.
+	 */
 	@Override
 	public void executeAction(Agent a, Action action) {
+		if (action instanceof MoveToLocationAction) {
+			XYLocation from = getCurrentLocationFor(a);
+			XYLocation to = ((MoveToLocationAction) action).getToLocation();
+			if (from != null && Math.abs(to.getXCoOrdinate() - from.getXCoOrdinate()) <= 1
+					&& Math.abs(to.getYCoOrdinate() - from.getYCoOrdinate()) <= 1 && !isBlocked(to))
+				moveObjectToAbsoluteLocation(a, to);
+		}
 	}
 
+	/** Tells the agent its current location. */
 	@Override
 	public Percept getPerceptSeenBy(Agent anAgent) {
-		return new DynamicPercept();
+		return new DynamicPercept(PERCEPT_LOCATION, getCurrentLocationFor(anAgent));
 	}
 
 	public void addObjectToLocation(EnvironmentObject eo, XYLocation loc) {
@@ -1,7 +1,10 @@
 package aima.core.search.adversarial;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import aima.core.search.framework.Metrics;
 
@@ -9,7 +12,32 @@ import aima.core.search.framework.Metrics;
  * Implements an iterative deepening Minimax search with alpha-beta pruning and
  * action ordering. Maximal computation time is specified in seconds. The
  * algorithm is implemented as template method and can be configured and tuned
- * by subclassing.
+ * by subclassing.<br>
+ * <br>
+ * Results of depth-limited searches are reused between iterations and
+ * decisions: if the states of the game implement {@link ZobristHashable}, a
+ * {@link TranspositionTable} stores values, bound types and best actions, so
+ * transpositions are searched only once and the best action of the previous
+ * iteration is tried first. Actions are further ordered by the killer
+ * heuristic (actions which caused cutoffs at the same depth before) and the
+ * history heuristic (actions which caused many cutoffs anywhere in the tree).
+ * This ordering is applied to the result of
+ * {@link #orderActions(Object, List, Object, int)} and keeps its order for
+ * actions without merits.<br>
+ * <br>
+ * If the game is a {@link ReversibleGame}, only the states after the root
+ * actions are created by {@link Game#getResult(Object, Object)}. Deeper in the
+ * tree, actions are applied to these states and taken back afterwards.<br>
+ * <br>
+ * With more than one thread (see {@link #setNumThreads(int)}), the search
+ * uses the Lazy SMP scheme: helper threads run the same iterative deepening
+ * search, starting at staggered depths, and communicate only through the
+ * shared transposition table, which is lock-free. The decision is taken by
+ * the calling thread, which finds many of its positions already searched by
+ * the helpers. Helpers are copies of this object, so overridden primitive
+ * operations are used by all threads; they must not modify shared data, and
+ * the game must support concurrent calls. Helpers are only started if the
+ * transposition table is used.
  * 
  * @author Ruediger Lunde
  * 
@@ -20,10 +48,14 @@ import aima.core.search.framework.Metrics;
  * @param <PLAYER>
  *            Type which is used for players in the game.
  */
-public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements AdversarialSearch<STATE, ACTION> {
+public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
+		implements AdversarialSearch<STATE, ACTION>, Cloneable {
 
 	public final static String METRICS_NODES_EXPANDED = "nodesExpanded";
 	public final static String METRICS_MAX_DEPTH = "maxDepth";
+	public final static String METRICS_TT_HITS = "ttHits";
+	public final static String METRICS_TT_CUTOFFS = "ttCutoffs";
+	public final static String METRICS_THREADS = "threads";
 
 	protected Game<STATE, ACTION, PLAYER> game;
 	protected double utilMax;
@@ -34,6 +66,20 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements
 												// have been evaluated.
 	private Timer timer;
 	private boolean logEnabled;
+	private ReversibleGame<STATE, ACTION, PLAYER> reversibleGame; // or null
+
+	private int transpositionTableSize = 1 << 16;
+	private TranspositionTable transpositionTable;
+	private TranspositionTable.Entry tableEntry = new TranspositionTable.Entry();
+	private boolean transpositionTableUsed; // in the current decision
+	private PLAYER transpositionTablePlayer; // values are relative to him
+	private boolean moveOrderingEnabled = true;
+	// two killer actions per depth
+	private Object[] killerActions = new Object[64];
+	private Map<ACTION, Integer> maxHistory = new HashMap<ACTION, Integer>();
+	private Map<ACTION, Integer> minHistory = new HashMap<ACTION, Integer>();
+	private int numThreads = 1;
+	private volatile Throwable helperFailure;
 
 	private Metrics metrics = new Metrics();
 
@@ -86,6 +132,32 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements
 		logEnabled = b;
 	}
 
+	/**
+	 * Sets the number of transposition table entries (default 65536). The
+	 * table is allocated on first use, and only if the states of the game
+	 * implement {@link ZobristHashable}. Size 0 disables the table.
+	 */
+	public void setTranspositionTableSize(int entries) {
+		if (entries != transpositionTableSize)
+			transpositionTable = null;
+		transpositionTableSize = entries;
+	}
+
+	/** Enables or disables the killer and history heuristics (default true). */
+	public void setMoveOrderingEnabled(boolean b) {
+		moveOrderingEnabled = b;
+	}
+
+	/**
+	 * Sets the number of threads which search in parallel (default 1). All
+	 * threads share the time limit.
+	 */
+	public void setNumThreads(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("At least one thread is needed.");
+		numThreads = n;
+	}
+
 	/**
 	 * Template method controlling the search. It is based on iterative
 	 * deepening and tries to make to a good decision in limited time. Credit
@@ -94,27 +166,32 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements
 	 */
 	@Override
 	public ACTION makeDecision(STATE state) {
+		return makeDecision(state, System.currentTimeMillis());
+	}
+
+	/**
+	 * Like {@link #makeDecision(Object)}, but the time limit is counted from
+	 * the specified start time (see {@link System#currentTimeMillis()}).
+	 * Subclasses which spend time before searching use this method to keep
+	 * the overall time limit.
+	 */
+	protected ACTION makeDecision(STATE state, long startTime) {
 		metrics = new Metrics();
 		StringBuffer logText = null;
 		PLAYER player = game.getPlayer(state);
 		List<ACTION> results = orderActions(state, game.getActions(state), player, 0);
-		timer.start();
+		reversibleGame = getReversibleGame();
+		prepareTables(state, player);
+		timer.start(startTime);
+		List<IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>> helpers = new ArrayList<>();
+		List<Thread> helperThreads = startHelpers(state, player, results, helpers);
 		currDepthLimit = 0;
 		do {
 			incrementDepthLimit();
 			if (logEnabled)
 				logText = new StringBuffer("depth " + currDepthLimit + ": ");
 			heuristicEvaluationUsed = false;
-			ActionStore<ACTION> newResults = new ActionStore<ACTION>();
-			for (ACTION action : results) {
-				double value = minValue(game.getResult(state, action), player, Double.NEGATIVE_INFINITY,
-						Double.POSITIVE_INFINITY, 1);
-				if (timer.timeOutOccured())
-					break; // exit from action loop
-				newResults.add(action, value);
-				if (logEnabled)
-					logText.append(action + "->" + value + " ");
-			}
+			ActionStore<ACTION> newResults = searchRootActions(state, player, results, logText);
 			if (logEnabled)
 				System.out.println(logText);
 			if (newResults.size() > 0) {
@@ -128,41 +205,124 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements
 				}
 			}
 		} while (!timer.timeOutOccured() && heuristicEvaluationUsed);
+		stopHelpers(helpers, helperThreads);
 		return results.get(0);
 	}
 
-	// returns an utility value
+	/**
+	 * Searches all root actions with the current depth limit and returns them
+	 * ordered by value.
+	 */
+	private ActionStore<ACTION> searchRootActions(STATE state, PLAYER player, List<ACTION> actions,
+			StringBuffer logText) {
+		ActionStore<ACTION> result = new ActionStore<ACTION>();
+		// values of actions which are not better than the best so far are
+		// upper bounds
+		double alpha = Double.NEGATIVE_INFINITY;
+		for (ACTION action : actions) {
+			double value = minValue(game.getResult(state, action), player, alpha, Double.POSITIVE_INFINITY, 1);
+			if (timer.timeOutOccured())
+				break; // exit from action loop
+			result.add(action, value);
+			alpha = Math.max(alpha, value);
+			if (logText != null)
+				logText.append(action + "->" + value + " ");
+		}
+		return result;
+	}
+
+	// returns an utility value; states of reversible games are modified during
+	// the call and restored at the end
 	public double maxValue(STATE state, PLAYER player, double alpha, double beta, int depth) {
 		updateMetrics(depth);
 		if (game.isTerminal(state) || depth >= currDepthLimit || timer.timeOutOccured()) {
 			return eval(state, player);
 		} else {
+			long key = 0;
+			int tableActionIndex = -1;
+			if (transpositionTableUsed) {
+				key = ((ZobristHashable) state).getZobristHash();
+				if (transpositionTable.load(key, tableEntry)) {
+					double value = lookUp(depth, alpha, beta);
+					if (!Double.isNaN(value))
+						return value;
+					tableActionIndex = tableEntry.actionIndex;
+				}
+			}
+			boolean heuristicUsedBefore = heuristicEvaluationUsed;
+			heuristicEvaluationUsed = false;
+			double alphaOrig = alpha;
 			double value = Double.NEGATIVE_INFINITY;
-			for (ACTION action : orderActions(state, game.getActions(state), player, depth)) {
-				value = Math.max(value, minValue(game.getResult(state, action), //
-						player, alpha, beta, depth + 1));
-				if (value >= beta)
-					return value;
+			ACTION bestAction = null;
+			List<ACTION> gameActions = game.getActions(state);
+			ACTION tableAction = tableActionIndex < gameActions.size() && tableActionIndex >= 0
+					? gameActions.get(tableActionIndex) : null;
+			List<ACTION> actions = orderActions(state, gameActions, player, depth);
+			for (ACTION action : applyMoveOrdering(actions, tableAction, depth, true)) {
+				double childValue = minValue(applyAction(state, action), //
+						player, alpha, beta, depth + 1);
+				undoAction(state, action);
+				if (childValue > value || bestAction == null) {
+					value = childValue;
+					bestAction = action;
+				}
+				if (value >= beta) {
+					recordCutoff(action, depth, true);
+					break;
+				}
 				alpha = Math.max(alpha, value);
 			}
+			if (transpositionTableUsed)
+				store(key, depth, value, alphaOrig, beta, gameActions.indexOf(bestAction));
+			heuristicEvaluationUsed |= heuristicUsedBefore;
 			return value;
 		}
 	}
 
-	// returns an utility value
+	// returns an utility value; states of reversible games are modified during
+	// the call and restored at the end
 	public double minValue(STATE state, PLAYER player, double alpha, double beta, int depth) {
 		updateMetrics(depth);
 		if (game.isTerminal(state) || depth >= currDepthLimit || timer.timeOutOccured()) {
 			return eval(state, player);
 		} else {
+			long key = 0;
+			int tableActionIndex = -1;
+			if (transpositionTableUsed) {
+				key = ((ZobristHashable) state).getZobristHash();
+				if (transpositionTable.load(key, tableEntry)) {
+					double value = lookUp(depth, alpha, beta);
+					if (!Double.isNaN(value))
+						return value;
+					tableActionIndex = tableEntry.actionIndex;
+				}
+			}
+			boolean heuristicUsedBefore = heuristicEvaluationUsed;
+			heuristicEvaluationUsed = false;
+			double betaOrig = beta;
 			double value = Double.POSITIVE_INFINITY;
-			for (ACTION action : orderActions(state, game.getActions(state), player, depth)) {
-				value = Math.min(value, maxValue(game.getResult(state, action), //
-						player, alpha, beta, depth + 1));
-				if (value <= alpha)
-					return value;
+			ACTION bestAction = null;
+			List<ACTION> gameActions = game.getActions(state);
+			ACTION tableAction = tableActionIndex < gameActions.size() && tableActionIndex >= 0
+					? gameActions.get(tableActionIndex) : null;
+			List<ACTION> actions = orderActions(state, gameActions, player, depth);
+			for (ACTION action : applyMoveOrdering(actions, tableAction, depth, false)) {
+				double childValue = maxValue(applyAction(state, action), //
+						player, alpha, beta, depth + 1);
+				undoAction(state, action);
+				if (childValue < value || bestAction == null) {
+					value = childValue;
+					bestAction = action;
+				}
+				if (value <= alpha) {
+					recordCutoff(action, depth, false);
+					break;
+				}
 				beta = Math.min(beta, value);
 			}
+			if (transpositionTableUsed)
+				store(key, depth, value, alpha, betaOrig, gameActions.indexOf(bestAction));
+			heuristicEvaluationUsed |= heuristicUsedBefore;
 			return value;
 		}
 	}
@@ -229,23 +389,261 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> implements
 		return actions;
 	}
 
+	/**
+	 * Returns the result of the action. States of reversible games are
+	 * modified in place.
+	 */
+	private STATE applyAction(STATE state, ACTION action) {
+		if (reversibleGame == null)
+			return game.getResult(state, action);
+		reversibleGame.makeMove(state, action);
+		return state;
+	}
+
+	/** Restores the state before {@link #applyAction(Object, Object)}. */
+	private void undoAction(STATE state, ACTION action) {
+		if (reversibleGame != null)
+			reversibleGame.undoMove(state, action);
+	}
+
+	@SuppressWarnings("unchecked")
+	private ReversibleGame<STATE, ACTION, PLAYER> getReversibleGame() {
+		return game instanceof ReversibleGame ? (ReversibleGame<STATE, ACTION, PLAYER>) game : null;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////////
+	// transposition table and move ordering
+
+	/**
+	 * Prepares the tables for a new decision. Table values are relative to the
+	 * player, so the table is cleared when the player changes.
+	 */
+	private void prepareTables(STATE state, PLAYER player) {
+		transpositionTableUsed = transpositionTableSize > 0 && state instanceof ZobristHashable;
+		if (transpositionTableUsed) {
+			if (transpositionTable == null)
+				transpositionTable = new TranspositionTable(transpositionTableSize);
+			else if (!player.equals(transpositionTablePlayer))
+				transpositionTable.clear();
+			transpositionTable.newSearch();
+			transpositionTablePlayer = player;
+		}
+		metrics.set(METRICS_TT_HITS, 0);
+		metrics.set(METRICS_TT_CUTOFFS, 0);
+		for (int i = 0; i < killerActions.length; i++)
+			killerActions[i] = null;
+		maxHistory.clear();
+		minHistory.clear();
+	}
+
+	/**
+	 * Returns the value of a table entry if it is sufficient to decide about
+	 * the state within the window, and NaN otherwise.
+	 */
+	private double lookUp(int depth, double alpha, double beta) {
+		metrics.incrementInt(METRICS_TT_HITS);
+		TranspositionTable.Entry entry = tableEntry;
+		if (entry.depth >= currDepthLimit - depth || !entry.heuristic) {
+			double value = entry.value;
+			int boundType = entry.boundType;
+			if (boundType == TranspositionTable.EXACT || boundType == TranspositionTable.LOWER_BOUND && value >= beta
+					|| boundType == TranspositionTable.UPPER_BOUND && value <= alpha) {
+				metrics.incrementInt(METRICS_TT_CUTOFFS);
+				if (entry.heuristic)
+					heuristicEvaluationUsed = true;
+				return value;
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Stores the result of a state search with the original window. Results of
+	 * interrupted searches are not stored.
+	 */
+	private void store(long key, int depth, double value, double alpha, double beta, int actionIndex) {
+		if (!timer.timeOutOccured()) {
+			int boundType = value <= alpha ? TranspositionTable.UPPER_BOUND
+					: value >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+			transpositionTable.store(key, currDepthLimit - depth, value, boundType, heuristicEvaluationUsed,
+					actionIndex);
+		}
+	}
+
+	/**
+	 * Moves the best action from the transposition table, the killer actions
+	 * of the depth, and actions with high history scores to the front. The
+	 * sort is stable.
+	 */
+	private List<ACTION> applyMoveOrdering(List<ACTION> actions, ACTION tableAction, int depth, boolean isMax) {
+		if (actions.size() < 2 || !moveOrderingEnabled && tableAction == null)
+			return actions;
+		Object killer1 = null;
+		Object killer2 = null;
+		if (moveOrderingEnabled && 2 * depth + 1 < killerActions.length) {
+			killer1 = killerActions[2 * depth];
+			killer2 = killerActions[2 * depth + 1];
+		}
+		Map<ACTION, Integer> history = isMax ? maxHistory : minHistory;
+		List<ACTION> result = new ArrayList<ACTION>(actions);
+		int[] scores = new int[result.size()];
+		for (int i = 0; i < scores.length; i++) {
+			ACTION action = result.get(i);
+			int score;
+			if (action.equals(tableAction))
+				score = Integer.MAX_VALUE;
+			else if (action.equals(killer1))
+				score = Integer.MAX_VALUE - 1;
+			else if (action.equals(killer2))
+				score = Integer.MAX_VALUE - 2;
+			else if (moveOrderingEnabled)
+				score = history.getOrDefault(action, 0);
+			else
+				score = 0;
+			// insertion sort
+			int j = i;
+			for (; j > 0 && scores[j - 1] < score; j--) {
+				scores[j] = scores[j - 1];
+				result.set(j, result.get(j - 1));
+			}
+			scores[j] = score;
+			result.set(j, action);
+		}
+		return result;
+	}
+
+	/** Updates killer actions and history scores after a cutoff. */
+	private void recordCutoff(ACTION action, int depth, boolean isMax) {
+		if (!moveOrderingEnabled)
+			return;
+		if (2 * depth + 1 >= killerActions.length)
+			killerActions = Arrays.copyOf(killerActions, 2 * depth + 64);
+		if (!action.equals(killerActions[2 * depth])) {
+			killerActions[2 * depth + 1] = killerActions[2 * depth];
+			killerActions[2 * depth] = action;
+		}
+		int remainingDepth = currDepthLimit - depth;
+		Map<ACTION, Integer> history = isMax ? maxHistory : minHistory;
+		Integer score = history.get(action);
+		int newScore = (score != null ? score : 0) + remainingDepth * remainingDepth;
+		history.put(action, Math.min(newScore, Integer.MAX_VALUE - 3));
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////////
+	// parallel search
+
+	/**
+	 * Starts the helper threads. Helper i begins with depth limit
+	 * 1 + (i + 1) / 2, so half of the helpers search one ply deeper than the
+	 * other half.
+	 */
+	private List<Thread> startHelpers(final STATE state, final PLAYER player, final List<ACTION> actions,
+			List<IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>> helpers) {
+		List<Thread> result = new ArrayList<Thread>();
+		helperFailure = null;
+		if (numThreads > 1 && transpositionTableUsed) {
+			for (int i = 1; i < numThreads; i++) {
+				final IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> helper = createHelper();
+				final int depthOffset = (i + 1) / 2;
+				Thread thread = new Thread(() -> {
+					try {
+						helper.runHelper(state, player, actions, depthOffset);
+					} catch (Throwable t) {
+						helperFailure = t;
+					}
+				}, "alpha-beta-helper-" + i);
+				thread.setDaemon(true);
+				helpers.add(helper);
+				result.add(thread);
+			}
+			for (Thread thread : result)
+				thread.start();
+		}
+		return result;
+	}
+
+	/** Returns a copy of this search with private search data. */
+	@SuppressWarnings("unchecked")
+	private IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> createHelper() {
+		try {
+			IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> result;
+			result = (IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>) clone();
+			result.metrics = new Metrics();
+			result.tableEntry = new TranspositionTable.Entry();
+			result.killerActions = new Object[killerActions.length];
+			result.maxHistory = new HashMap<ACTION, Integer>();
+			result.minHistory = new HashMap<ACTION, Integer>();
+			result.logEnabled = false;
+			result.numThreads = 1;
+			return result;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Iterative deepening loop of a helper, results are discarded. */
+	private void runHelper(STATE state, PLAYER player, List<ACTION> actions, int depthOffset) {
+		currDepthLimit = depthOffset;
+		do {
+			incrementDepthLimit();
+			heuristicEvaluationUsed = false;
+			ActionStore<ACTION> newResults = searchRootActions(state, player, actions, null);
+			if (newResults.size() > 0 && !timer.timeOutOccured())
+				actions = newResults.actions;
+		} while (!timer.timeOutOccured() && heuristicEvaluationUsed);
+	}
+
+	/** Stops the helpers and adds their metrics to the metrics of the search. */
+	private void stopHelpers(List<IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>> helpers,
+			List<Thread> helperThreads) {
+		timer.stop();
+		boolean interrupted = false;
+		for (Thread thread : helperThreads) {
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		metrics.set(METRICS_THREADS, helpers.size() + 1);
+		for (IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> helper : helpers) {
+			Metrics m = helper.metrics;
+			for (String name : new String[] { METRICS_NODES_EXPANDED, METRICS_TT_HITS, METRICS_TT_CUTOFFS })
+				metrics.set(name, metrics.getInt(name) + m.getInt(name));
+			metrics.set(METRICS_MAX_DEPTH, Math.max(metrics.getInt(METRICS_MAX_DEPTH), m.getInt(METRICS_MAX_DEPTH)));
+		}
+		if (helperFailure != null)
+			throw new RuntimeException("Helper thread failed.", helperFailure);
+	}
+
 	///////////////////////////////////////////////////////////////////////////////////////////
 	// nested helper classes
 
 	private static class Timer {
 		private long duration;
-		private long startTime;
+		private volatile long startTime;
+		private volatile boolean stopped;
 
 		Timer(int maxSeconds) {
 			this.duration = 1000l * maxSeconds;
 		}
 
-		void start() {
-			startTime = System.currentTimeMillis();
+		void start(long startTime) {
+			this.startTime = startTime;
+			stopped = false;
+		}
+
+		/** Lets the time limit expire immediately. */
+		void stop() {
+			stopped = true;
 		}
 
 		boolean timeOutOccured() {
-			return System.currentTimeMillis() > startTime + duration;
+			return stopped || System.currentTimeMillis() > startTime + duration;
 		}
 	}
 
@@ -0,0 +1,536 @@
+package aima.core.search.adversarial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import aima.core.search.framework.Metrics;
+
+/**
+ * Monte Carlo tree search with the UCT selection rule (Kocsis and Szepesvari
+ * 2006). Each iteration descends the search tree from the root, choosing the
+ * child which maximizes the average reward plus an exploration bonus,
+ * expands the first node which has no children yet, plays the game to the end
+ * with random moves (a playout), and adds the outcome to all nodes on the
+ * path. The action of the most visited root child is returned. No evaluation
+ * function is needed; utilities of terminal states are normalized with
+ * respect to <code>utilMin</code> and <code>utilMax</code>.<br>
+ * <br>
+ * The search is bounded by time, by the number of playouts, or by both. The
+ * tree is stored in parallel arrays, so descending and updating the tree does
+ * not allocate memory, and states of child nodes are only computed when the
+ * child is visited first. After a decision, the subtree of the next own turn
+ * is kept: if the next call starts in a state which was reached in the tree
+ * (after one or two moves), the search continues with the statistics
+ * collected so far.<br>
+ * <br>
+ * Two parallel modes are supported. With root parallelism, each thread builds
+ * a tree of its own, and the root statistics are summed up for the decision.
+ * With tree parallelism, all threads share one tree. Tree updates are
+ * synchronized, playouts run concurrently, and each thread adds a virtual loss
+ * to the nodes of its path until its playout is finished, which leads other
+ * threads to different parts of the tree. In both modes, the game must
+ * support concurrent calls.
+ *
+ * @param <STATE>
+ *            Type which is used for states in the game.
+ * @param <ACTION>
+ *            Type which is used for actions in the game.
+ * @param <PLAYER>
+ *            Type which is used for players in the game.
+ */
+public class MonteCarloTreeSearch<STATE, ACTION, PLAYER> implements AdversarialSearch<STATE, ACTION> {
+
+	public final static String METRICS_PLAYOUTS = "playouts";
+	public final static String METRICS_PLAYOUTS_PER_SECOND = "playoutsPerSecond";
+	public final static String METRICS_TREE_SIZE = "treeSize";
+	public final static String METRICS_REUSED_NODES = "reusedNodes";
+	public final static String METRICS_THREADS = "threads";
+	public final static String METRICS_WIN_RATE = "winRate";
+
+	/** Parallel modes of the search. */
+	public enum Parallelism {
+		/** The calling thread searches alone. */
+		NONE,
+		/** Each thread builds a tree of its own. */
+		ROOT,
+		/** All threads share one tree and use virtual losses. */
+		TREE
+	}
+
+	protected Game<STATE, ACTION, PLAYER> game;
+	protected double utilMax;
+	protected double utilMin;
+	private final long timeLimit;
+	private int maxPlayouts;
+	private int maxTreeSize = 1 << 22;
+	private double explorationConstant = Math.sqrt(2);
+	private Parallelism parallelism = Parallelism.NONE;
+	private int numThreads = 1;
+	private boolean treeReuseEnabled = true;
+	private long seed = System.nanoTime();
+
+	// state of the current search
+	private List<Tree> trees = new ArrayList<Tree>();
+	private PLAYER[] players;
+	private volatile long deadline;
+	private final AtomicInteger playouts = new AtomicInteger();
+	private volatile Throwable failure;
+	private Metrics metrics = new Metrics();
+
+	/**
+	 * Creates a new search object for a given game.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param utilMin
+	 *            Utility value of worst state for this player.
+	 * @param utilMax
+	 *            Utility value of best state for this player.
+	 * @param time
+	 *            Maximal computation time in seconds. If not positive, the
+	 *            search is bounded by the number of playouts only.
+	 */
+	public static <STATE, ACTION, PLAYER> MonteCarloTreeSearch<STATE, ACTION, PLAYER> createFor(
+			Game<STATE, ACTION, PLAYER> game, double utilMin, double utilMax, int time) {
+		return new MonteCarloTreeSearch<STATE, ACTION, PLAYER>(game, utilMin, utilMax, time);
+	}
+
+	/**
+	 * Creates a new search object for a given game.
+	 *
+	 * @param game
+	 *            The game.
+	 * @param utilMin
+	 *            Utility value of worst state for this player.
+	 * @param utilMax
+	 *            Utility value of best state for this player.
+	 * @param time
+	 *            Maximal computation time in seconds. If not positive, the
+	 *            search is bounded by the number of playouts only.
+	 */
+	public MonteCarloTreeSearch(Game<STATE, ACTION, PLAYER> game, double utilMin, double utilMax, int time) {
+		this.game = game;
+		this.utilMin = utilMin;
+		this.utilMax = utilMax;
+		this.timeLimit = 1000L * time;
+	}
+
+	/** Sets the maximal number of playouts per decision; 0 means unbounded. */
+	public void setMaxPlayouts(int n) {
+		maxPlayouts = n;
+	}
+
+	/**
+	 * Sets the maximal number of nodes per tree (default 4M). Leaves of full
+	 * trees are not expanded anymore, but playouts continue.
+	 */
+	public void setMaxTreeSize(int n) {
+		maxTreeSize = n;
+	}
+
+	/** Sets the weight of the exploration term (default sqrt(2)). */
+	public void setExplorationConstant(double c) {
+		explorationConstant = c;
+	}
+
+	/** Selects the parallel mode and the number of threads. */
+	public void setParallelism(Parallelism mode, int numThreads) {
+		if (numThreads < 1)
+			throw new IllegalArgumentException("At least one thread is needed.");
+		parallelism = mode;
+		this.numThreads = mode == Parallelism.NONE ? 1 : numThreads;
+		trees.clear();
+	}
+
+	/** Enables or disables the reuse of subtrees between decisions. */
+	public void setTreeReuseEnabled(boolean b) {
+		treeReuseEnabled = b;
+	}
+
+	/** Sets the seed of the random generators used for playouts. */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public ACTION makeDecision(STATE state) {
+		if (timeLimit <= 0 && maxPlayouts <= 0)
+			throw new IllegalStateException("Neither time nor playouts are bounded.");
+		metrics = new Metrics();
+		players = game.getPlayers();
+		List<ACTION> actions = game.getActions(state);
+		if (actions.size() < 2)
+			return actions.isEmpty() ? null : actions.get(0);
+
+		int numTrees = parallelism == Parallelism.ROOT ? numThreads : 1;
+		int reusedNodes = 0;
+		if (!treeReuseEnabled || trees.size() != numTrees) {
+			trees.clear();
+			for (int i = 0; i < numTrees; i++)
+				trees.add(new Tree());
+		}
+		for (Tree tree : trees) {
+			if (treeReuseEnabled && tree.moveRoot(state))
+				reusedNodes += tree.size;
+			else
+				tree.init(state);
+		}
+
+		long startTime = System.currentTimeMillis();
+		deadline = timeLimit > 0 ? startTime + timeLimit : Long.MAX_VALUE;
+		playouts.set(0);
+		failure = null;
+		if (numThreads == 1) {
+			search(trees.get(0), new Random(seed++), false);
+		} else {
+			Thread[] threads = new Thread[numThreads];
+			for (int i = 0; i < numThreads; i++) {
+				final Tree tree = trees.get(parallelism == Parallelism.ROOT ? i : 0);
+				final Random random = new Random(seed++);
+				final boolean shared = parallelism == Parallelism.TREE;
+				threads[i] = new Thread(() -> {
+					try {
+						search(tree, random, shared);
+					} catch (Throwable t) {
+						failure = t;
+						deadline = 0;
+					}
+				}, "mcts-worker-" + i);
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			joinAll(threads);
+			if (failure != null)
+				throw new RuntimeException("Search thread failed.", failure);
+		}
+		long duration = Math.max(1, System.currentTimeMillis() - startTime);
+
+		// sum up the root statistics of all trees
+		int[] visits = new int[actions.size()];
+		double[] rewards = new double[actions.size()];
+		int treeSize = 0;
+		for (Tree tree : trees) {
+			treeSize += tree.size;
+			int first = tree.firstChild[0];
+			for (int i = 0; first != -1 && i < tree.childCount[0]; i++) {
+				visits[i] += tree.visits[first + i];
+				rewards[i] += tree.rewards[first + i];
+			}
+		}
+		int best = 0;
+		for (int i = 1; i < visits.length; i++)
+			if (visits[i] > visits[best])
+				best = i;
+		metrics.set(METRICS_PLAYOUTS, playouts.get());
+		metrics.set(METRICS_PLAYOUTS_PER_SECOND, playouts.get() * 1000L / duration);
+		metrics.set(METRICS_TREE_SIZE, treeSize);
+		metrics.set(METRICS_REUSED_NODES, reusedNodes);
+		metrics.set(METRICS_THREADS, numThreads);
+		metrics.set(METRICS_WIN_RATE, visits[best] > 0 ? rewards[best] / visits[best] : 0);
+		return actions.get(best);
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Runs iterations on the tree until the budget is exhausted. */
+	private void search(Tree tree, Random random, boolean shared) {
+		double[] outcome = new double[players.length];
+		while (System.currentTimeMillis() < deadline) {
+			if (maxPlayouts > 0 && playouts.getAndIncrement() >= maxPlayouts) {
+				playouts.decrementAndGet();
+				break;
+			} else if (maxPlayouts <= 0) {
+				playouts.incrementAndGet();
+			}
+			int node;
+			STATE leafState;
+			if (shared) {
+				synchronized (tree) {
+					node = tree.selectAndExpand(random, true);
+					leafState = tree.getState(node);
+				}
+			} else {
+				node = tree.selectAndExpand(random, false);
+				leafState = tree.getState(node);
+			}
+			playout(leafState, random, outcome);
+			if (shared) {
+				synchronized (tree) {
+					tree.update(node, outcome, true);
+				}
+			} else {
+				tree.update(node, outcome, false);
+			}
+		}
+	}
+
+	/**
+	 * Plays random moves until the game ends and stores the normalized
+	 * utilities of all players in the outcome array.
+	 */
+	private void playout(STATE state, Random random, double[] outcome) {
+		while (!game.isTerminal(state)) {
+			List<ACTION> actions = game.getActions(state);
+			state = game.getResult(state, actions.get(random.nextInt(actions.size())));
+		}
+		for (int i = 0; i < players.length; i++)
+			outcome[i] = (game.getUtility(state, players[i]) - utilMin) / (utilMax - utilMin);
+	}
+
+	private int getPlayerIndex(STATE state) {
+		PLAYER player = game.getPlayer(state);
+		for (int i = 0; i < players.length; i++)
+			if (players[i].equals(player))
+				return i;
+		return 0;
+	}
+
+	private void joinAll(Thread[] threads) {
+		boolean interrupted = false;
+		for (Thread thread : threads) {
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+					deadline = 0;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Search tree in parallel arrays. The children of a node occupy
+	 * consecutive indices. Node 0 is the root.
+	 */
+	private class Tree {
+		int size;
+		int[] parent = new int[1024];
+		int[] firstChild = new int[1024]; // -1 if not expanded
+		int[] childCount = new int[1024];
+		int[] visits = new int[1024];
+		int[] virtualLosses = new int[1024];
+		// rewards for the player who moved to the node
+		double[] rewards = new double[1024];
+		// player to move in the state of the node, -1 if unknown
+		int[] playerIndices = new int[1024];
+		Object[] actions = new Object[1024];
+		Object[] states = new Object[1024];
+
+		void init(STATE rootState) {
+			Arrays.fill(states, 0, size, null);
+			Arrays.fill(actions, 0, size, null);
+			size = 0;
+			int root = newNode(-1, null);
+			states[root] = rootState;
+			playerIndices[root] = getPlayerIndex(rootState);
+		}
+
+		@SuppressWarnings("unchecked")
+		STATE getState(int node) {
+			return (STATE) states[node];
+		}
+
+		/**
+		 * Descends from the root by UCT and returns a node for the playout,
+		 * expanding the tree by one level if possible.
+		 */
+		int selectAndExpand(Random random, boolean useVirtualLoss) {
+			int node = 0;
+			while (true) {
+				if (useVirtualLoss)
+					virtualLosses[node]++;
+				STATE state = getState(node);
+				if (game.isTerminal(state))
+					return node;
+				if (firstChild[node] == -1) {
+					if (size + 1 >= maxTreeSize || visits[node] == 0 && node != 0)
+						return node;
+					expand(node, state);
+				}
+				node = selectChild(node, random);
+				if (states[node] == null) {
+					STATE childState = game.getResult(state, getAction(node));
+					states[node] = childState;
+					playerIndices[node] = getPlayerIndex(childState);
+					if (useVirtualLoss)
+						virtualLosses[node]++;
+					return node;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		ACTION getAction(int node) {
+			return (ACTION) actions[node];
+		}
+
+		/**
+		 * Adds the outcome of a playout to the node and its ancestors and
+		 * removes the virtual losses of the path.
+		 */
+		void update(int node, double[] outcome, boolean useVirtualLoss) {
+			while (node != -1) {
+				visits[node]++;
+				if (useVirtualLoss)
+					virtualLosses[node]--;
+				int p = parent[node];
+				if (p != -1)
+					rewards[node] += outcome[playerIndices[p]];
+				node = p;
+			}
+		}
+
+		/**
+		 * Makes the node whose state equals the specified state the new root
+		 * and drops the rest of the tree. Candidates are the root and the
+		 * nodes one or two levels below. Returns false if no node matches.
+		 */
+		boolean moveRoot(STATE state) {
+			if (size == 0)
+				return false;
+			int newRoot = -1;
+			if (state.equals(states[0])) {
+				newRoot = 0;
+			} else {
+				for (int i = 0; newRoot == -1 && firstChild[0] != -1 && i < childCount[0]; i++) {
+					int child = firstChild[0] + i;
+					if (state.equals(states[child]))
+						newRoot = child;
+					for (int j = 0; newRoot == -1 && firstChild[child] != -1 && j < childCount[child]; j++)
+						if (state.equals(states[firstChild[child] + j]))
+							newRoot = firstChild[child] + j;
+				}
+			}
+			if (newRoot == -1)
+				return false;
+			if (newRoot != 0)
+				compact(newRoot);
+			return true;
+		}
+
+		//
+		// PRIVATE METHODS
+		//
+
+		private int newNode(int parentNode, Object action) {
+			if (size == parent.length)
+				grow(2 * size);
+			int node = size++;
+			parent[node] = parentNode;
+			firstChild[node] = -1;
+			childCount[node] = 0;
+			visits[node] = 0;
+			virtualLosses[node] = 0;
+			rewards[node] = 0;
+			playerIndices[node] = -1;
+			actions[node] = action;
+			states[node] = null;
+			return node;
+		}
+
+		private void expand(int node, STATE state) {
+			List<ACTION> nodeActions = game.getActions(state);
+			if (size + nodeActions.size() > parent.length)
+				grow(Math.max(2 * parent.length, size + nodeActions.size()));
+			firstChild[node] = size;
+			childCount[node] = nodeActions.size();
+			for (ACTION action : nodeActions)
+				newNode(node, action);
+		}
+
+		/**
+		 * Returns the child with the highest UCT value. Unvisited children
+		 * are preferred, ties are broken randomly. Virtual losses count as
+		 * visits without reward.
+		 */
+		private int selectChild(int node, Random random) {
+			int first = firstChild[node];
+			int count = childCount[node];
+			double logParentVisits = Math.log(Math.max(1, visits[node] + virtualLosses[node]));
+			int best = -1;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			int ties = 0;
+			for (int child = first; child < first + count; child++) {
+				int n = visits[child] + virtualLosses[child];
+				double value = n == 0 ? Double.POSITIVE_INFINITY
+						: rewards[child] / n + explorationConstant * Math.sqrt(logParentVisits / n);
+				if (value > bestValue) {
+					best = child;
+					bestValue = value;
+					ties = 1;
+				} else if (value == bestValue && random.nextInt(++ties) == 0) {
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		private void grow(int capacity) {
+			parent = Arrays.copyOf(parent, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+			visits = Arrays.copyOf(visits, capacity);
+			virtualLosses = Arrays.copyOf(virtualLosses, capacity);
+			rewards = Arrays.copyOf(rewards, capacity);
+			playerIndices = Arrays.copyOf(playerIndices, capacity);
+			actions = Arrays.copyOf(actions, capacity);
+			states = Arrays.copyOf(states, capacity);
+		}
+
+		/**
+		 * Copies the subtree of the new root in breadth-first order to the
+		 * front of the arrays. Children stay consecutive.
+		 */
+		private void compact(int newRoot) {
+			Tree result = new Tree();
+			result.grow(parent.length);
+			int[] oldIndices = new int[size];
+			int root = result.newNode(-1, null);
+			copyNode(newRoot, result, root);
+			oldIndices[root] = newRoot;
+			for (int next = 0; next < result.size; next++) {
+				int old = oldIndices[next];
+				if (firstChild[old] == -1)
+					continue;
+				result.firstChild[next] = result.size;
+				result.childCount[next] = childCount[old];
+				for (int i = 0; i < childCount[old]; i++) {
+					int oldChild = firstChild[old] + i;
+					int child = result.newNode(next, actions[oldChild]);
+					copyNode(oldChild, result, child);
+					oldIndices[child] = oldChild;
+				}
+			}
+			size = result.size;
+			parent = result.parent;
+			firstChild = result.firstChild;
+			childCount = result.childCount;
+			visits = result.visits;
+			virtualLosses = result.virtualLosses;
+			rewards = result.rewards;
+			playerIndices = result.playerIndices;
+			actions = result.actions;
+			states = result.states;
+		}
+
+		private void copyNode(int from, Tree to, int toNode) {
+			to.visits[toNode] = visits[from];
+			to.rewards[toNode] = rewards[from];
+			to.playerIndices[toNode] = playerIndices[from];
+			to.states[toNode] = states[from];
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package aima.core.search.adversarial;
+
+/**
+ * Game whose states can be modified in place. Searches which follow one line
+ * of play at a time, like {@link IterativeDeepeningAlphaBetaSearch}, apply an
+ * action to a state and take it back after evaluating the result, instead of
+ * creating a new state for each action.
+ *
+ * @param <STATE>
+ *            Type which is used for states in the game.
+ * @param <ACTION>
+ *            Type which is used for actions in the game.
+ * @param <PLAYER>
+ *            Type which is used for players in the game.
+ */
+public interface ReversibleGame<STATE, ACTION, PLAYER> extends Game<STATE, ACTION, PLAYER> {
+
+	/** Applies the action to the state. */
+	void makeMove(STATE state, ACTION action);
+
+	/**
+	 * Takes back the action, which must be the last action applied to the
+	 * state.
+	 */
+	void undoMove(STATE state, ACTION action);
+}
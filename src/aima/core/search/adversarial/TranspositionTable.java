@@ -0,0 +1,168 @@
+package aima.core.search.adversarial;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table which stores results of depth-limited alpha-beta
+ * searches, indexed by 64-bit state keys (see {@link ZobristHashable}). An
+ * entry contains the value of a state, the remaining search depth used to
+ * compute it, the bound type of the value with respect to the search window,
+ * and the index of the best action in the action list of the game.<br>
+ * <br>
+ * The table consists of buckets with two slots. The first slot of a bucket
+ * keeps the result of the deepest search (depth-preferred replacement) unless
+ * it is outdated, the second slot always takes the newest result. Entries of
+ * earlier searches are outdated after {@link #newSearch()} and are replaced
+ * first.<br>
+ * <br>
+ * The table can be shared by several search threads without locking. Each
+ * slot consists of three <code>long</code>s in one array: the value, the
+ * packed remaining data, and the key XORed with both. A reader accepts an
+ * entry only if the XOR of the three words yields the requested key, so
+ * entries which are torn by concurrent writes are ignored (with high
+ * probability) instead of being misread.
+ */
+public class TranspositionTable {
+
+	/** The value is exact. */
+	public static final int EXACT = 0;
+	/** The value is a lower bound (the search failed high). */
+	public static final int LOWER_BOUND = 1;
+	/** The value is an upper bound (the search failed low). */
+	public static final int UPPER_BOUND = 2;
+
+	// layout of the data word
+	private static final long USED = 1L << 63;
+	private static final int BOUND_SHIFT = 16;
+	private static final int HEURISTIC_SHIFT = 18;
+	private static final int GENERATION_SHIFT = 19;
+	private static final int ACTION_SHIFT = 27;
+
+	private final int bucketMask;
+	private final long[] words;
+	private volatile int generation;
+
+	/**
+	 * Creates a table with at least the specified number of entries. The number
+	 * is rounded up to a power of two.
+	 */
+	public TranspositionTable(int minEntries) {
+		int entries = 2;
+		while (entries < minEntries && entries < (1 << 28))
+			entries <<= 1;
+		bucketMask = entries / 2 - 1;
+		words = new long[3 * entries];
+	}
+
+	/** Returns the number of entries. */
+	public int capacity() {
+		return words.length / 3;
+	}
+
+	/** Removes all entries. Must not be called during a search. */
+	public void clear() {
+		Arrays.fill(words, 0);
+	}
+
+	/**
+	 * Marks all entries as outdated. They can still be found, but are
+	 * replaced by results of the new search regardless of their depth.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	/**
+	 * Copies the entry for the key into the specified entry object.
+	 *
+	 * @return false if the table contains no (consistent) entry for the key.
+	 */
+	public boolean load(long key, Entry entry) {
+		int pos = bucket(key);
+		for (int i = 0; i < 2; i++, pos += 3) {
+			long value = words[pos];
+			long data = words[pos + 1];
+			long check = words[pos + 2];
+			if ((data & USED) != 0 && (check ^ value ^ data) == key) {
+				entry.value = Double.longBitsToDouble(value);
+				entry.depth = (int) (data & 0xFFFF);
+				entry.boundType = (int) (data >>> BOUND_SHIFT) & 3;
+				entry.heuristic = ((data >>> HEURISTIC_SHIFT) & 1) != 0;
+				entry.actionIndex = (int) ((data >>> ACTION_SHIFT) & 0xFFFF) - 1;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stores a search result.
+	 *
+	 * @param key
+	 *            the key of the state
+	 * @param depth
+	 *            the remaining search depth below the state
+	 * @param value
+	 *            the value of the state
+	 * @param boundType
+	 *            {@link #EXACT}, {@link #LOWER_BOUND}, or {@link #UPPER_BOUND}
+	 * @param heuristic
+	 *            true if heuristic evaluations contributed to the value
+	 * @param actionIndex
+	 *            the index of the best action in the action list of the
+	 *            state, or -1
+	 */
+	public void store(long key, int depth, double value, int boundType, boolean heuristic, int actionIndex) {
+		int first = bucket(key);
+		long firstData = words[first + 1];
+		boolean firstMatches = (firstData & USED) != 0
+				&& (words[first + 2] ^ words[first] ^ firstData) == key;
+		int pos;
+		if ((firstData & USED) == 0 || firstMatches
+				|| (int) ((firstData >>> GENERATION_SHIFT) & 0xFF) != generation
+				|| depth >= (int) (firstData & 0xFFFF)) {
+			pos = first;
+			// keep the displaced result in the second slot
+			if (!firstMatches && (firstData & USED) != 0)
+				System.arraycopy(words, first, words, first + 3, 3);
+		} else {
+			pos = first + 3;
+		}
+		long valueBits = Double.doubleToRawLongBits(value);
+		long data = USED | Math.min(depth, 0xFFFF) | (long) boundType << BOUND_SHIFT
+				| (heuristic ? 1L : 0L) << HEURISTIC_SHIFT | (long) generation << GENERATION_SHIFT
+				| (long) Math.min(actionIndex + 1, 0xFFFF) << ACTION_SHIFT;
+		words[pos] = valueBits;
+		words[pos + 1] = data;
+		words[pos + 2] = key ^ valueBits ^ data;
+	}
+
+	/** Receives the data of an entry. */
+	public static class Entry {
+		public double value;
+		/** The remaining search depth below the state. */
+		public int depth;
+		/**
+		 * {@link TranspositionTable#EXACT},
+		 * {@link TranspositionTable#LOWER_BOUND}, or
+		 * {@link TranspositionTable#UPPER_BOUND}.
+		 */
+		public int boundType;
+		/**
+		 * True if heuristic evaluations contributed to the value. If not, the
+		 * value is the game-theoretic value (or a bound of it) and valid for
+		 * all search depths.
+		 */
+		public boolean heuristic;
+		/** Index of the best action in the action list, or -1. */
+		public int actionIndex;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int bucket(long key) {
+		return 6 * ((int) (key ^ (key >>> 32)) & bucketMask);
+	}
+}
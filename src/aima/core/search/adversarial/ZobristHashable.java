@@ -0,0 +1,16 @@
+package aima.core.search.adversarial;
+
+/**
+ * Optional interface for game states which provide a 64-bit hash key, usually
+ * computed incrementally with Zobrist hashing: each combination of a piece and
+ * a board position gets a random 64-bit number, and the key of a state is the
+ * XOR of the numbers of all pieces on the board (plus a number for the player
+ * to move if it is not implied by the board). Equal states must have equal
+ * keys. Searches use the key to recognize transpositions, see
+ * {@link TranspositionTable}.
+ */
+public interface ZobristHashable {
+
+	/** Returns the 64-bit hash key of the state. */
+	long getZobristHash();
+}
@@ -0,0 +1,217 @@
+package aima.core.search.framework;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority queue of nodes which contains at most one node per state. It is
+ * implemented as a d-ary heap together with an index from states to heap
+ * entries. Adding a node for a state which is already present replaces the
+ * old node if the new node comes first with respect to the comparator
+ * (decrease-key) and is ignored otherwise. So duplicates do not pile up in
+ * the frontier, and all operations including {@link #remove(Object)} run in
+ * O(log n). Note that the smallest element comes first!
+ */
+public class IndexedNodePriorityQueue extends AbstractQueue<Node> {
+
+	private final Comparator<? super Node> comparator;
+	private final int arity;
+	private Entry[] heap = new Entry[16];
+	private int size;
+	private final Map<Object, Entry> index = new HashMap<Object, Entry>();
+
+	/** Creates a 4-ary heap. */
+	public IndexedNodePriorityQueue(Comparator<? super Node> comparator) {
+		this(comparator, 4);
+	}
+
+	public IndexedNodePriorityQueue(Comparator<? super Node> comparator, int arity) {
+		if (arity < 2)
+			throw new IllegalArgumentException("Heap arity must be at least 2.");
+		this.comparator = comparator;
+		this.arity = arity;
+	}
+
+	public Comparator<? super Node> comparator() {
+		return comparator;
+	}
+
+	/** Returns the node of the specified state or null if there is none. */
+	public Node get(Object state) {
+		Entry entry = index.get(state);
+		return entry != null ? entry.node : null;
+	}
+
+	/**
+	 * Inserts the node if its state is not yet represented or if it is better
+	 * than the node currently representing the state.
+	 *
+	 * @return true if the queue changed.
+	 */
+	@Override
+	public boolean offer(Node node) {
+		Entry entry = index.get(node.getState());
+		if (entry == null) {
+			entry = new Entry(node);
+			if (size == heap.length)
+				heap = Arrays.copyOf(heap, size * 2);
+			entry.pos = size;
+			heap[size++] = entry;
+			index.put(node.getState(), entry);
+			siftUp(entry.pos);
+			return true;
+		} else if (comparator.compare(node, entry.node) < 0) {
+			entry.node = node;
+			siftUp(entry.pos);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Same as {@link #offer(Node)}. In contrast to other queues, false is
+	 * returned if the state is already represented by a better node.
+	 */
+	@Override
+	public boolean add(Node node) {
+		return offer(node);
+	}
+
+	@Override
+	public Node poll() {
+		if (size == 0)
+			return null;
+		Entry result = heap[0];
+		removeAt(0);
+		return result.node;
+	}
+
+	@Override
+	public Node peek() {
+		return size > 0 ? heap[0].node : null;
+	}
+
+	/** Removes the specified node if it is contained. */
+	@Override
+	public boolean remove(Object o) {
+		if (o instanceof Node) {
+			Entry entry = index.get(((Node) o).getState());
+			if (entry != null && entry.node == o) {
+				removeAt(entry.pos);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o instanceof Node) {
+			Entry entry = index.get(((Node) o).getState());
+			return entry != null && entry.node == o;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+		index.clear();
+	}
+
+	/** Iterates over the nodes in no particular order. Removal is not supported. */
+	@Override
+	public Iterator<Node> iterator() {
+		return new Iterator<Node>() {
+			int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public Node next() {
+				if (next >= size)
+					throw new NoSuchElementException();
+				return heap[next++].node;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void removeAt(int pos) {
+		Entry removed = heap[pos];
+		index.remove(removed.node.getState());
+		Entry last = heap[--size];
+		heap[size] = null;
+		if (pos < size) {
+			heap[pos] = last;
+			last.pos = pos;
+			siftDown(pos);
+			if (heap[pos] == last)
+				siftUp(pos);
+		}
+	}
+
+	private void siftUp(int pos) {
+		Entry entry = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / arity;
+			Entry p = heap[parent];
+			if (comparator.compare(entry.node, p.node) >= 0)
+				break;
+			heap[pos] = p;
+			p.pos = pos;
+			pos = parent;
+		}
+		heap[pos] = entry;
+		entry.pos = pos;
+	}
+
+	private void siftDown(int pos) {
+		Entry entry = heap[pos];
+		while (true) {
+			int first = pos * arity + 1;
+			if (first >= size)
+				break;
+			int last = Math.min(first + arity, size);
+			int best = first;
+			for (int c = first + 1; c < last; c++)
+				if (comparator.compare(heap[c].node, heap[best].node) < 0)
+					best = c;
+			if (comparator.compare(heap[best].node, entry.node) >= 0)
+				break;
+			heap[pos] = heap[best];
+			heap[pos].pos = pos;
+			pos = best;
+		}
+		heap[pos] = entry;
+		entry.pos = pos;
+	}
+
+	/** Heap element, knows its own position to support removal and decrease-key. */
+	private static class Entry {
+		Node node;
+		int pos;
+
+		Entry(Node node) {
+			this.node = node;
+		}
+	}
+}
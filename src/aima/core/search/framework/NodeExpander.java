@@ -67,8 +67,40 @@ public class NodeExpander {
 	 *         specified problem.
 	 */
 	public List<Node> expand(Node node, Problem problem) {
-		List<Node> successors = new ArrayList<Node>();
+		return expand(node, problem, new ArrayList<Node>());
+	}
+
+	/**
+	 * Clears the provided buffer, fills it with the children obtained from
+	 * expanding the specified node, and returns it. Reusing the buffer for all
+	 * expansions of a search avoids allocating a list per expansion.
+	 */
+	public List<Node> expand(Node node, Problem problem, List<Node> buffer) {
+		buffer.clear();
+		ActionsFunction actionsFunction = problem.getActionsFunction();
+		ResultFunction resultFunction = problem.getResultFunction();
+		StepCostFunction stepCostFunction = problem.getStepCostFunction();
+
+		for (Action action : actionsFunction.actions(node.getState())) {
+			Object successorState = resultFunction.result(node.getState(), action);
 
+			double stepCost = stepCostFunction.c(node.getState(), action, successorState);
+			buffer.add(createNode(successorState, node, action, stepCost));
+		}
+		notifyNodeListeners(node);
+		counter++;
+		return buffer;
+	}
+
+	/**
+	 * Expands the specified node without creating child nodes. Each successor
+	 * state is passed to the consumer together with the action and step costs
+	 * leading to it. The consumer decides whether the successor is needed and
+	 * calls {@link #createNode(Object, Node, Action, double)} only in that
+	 * case. So search implementations can drop successors of already explored
+	 * states before any node object is allocated.
+	 */
+	public void expand(Node node, Problem problem, SuccessorConsumer consumer) {
 		ActionsFunction actionsFunction = problem.getActionsFunction();
 		ResultFunction resultFunction = problem.getResultFunction();
 		StepCostFunction stepCostFunction = problem.getStepCostFunction();
@@ -77,11 +109,15 @@ public class NodeExpander {
 			Object successorState = resultFunction.result(node.getState(), action);
 
 			double stepCost = stepCostFunction.c(node.getState(), action, successorState);
-			successors.add(createNode(successorState, node, action, stepCost));
+			consumer.accept(node, action, successorState, stepCost);
 		}
 		notifyNodeListeners(node);
 		counter++;
-		return successors;
+	}
+
+	/** Receives the successors generated by successor-visitor expansion. */
+	public static interface SuccessorConsumer {
+		void accept(Node parent, Action action, Object successorState, double stepCost);
 	}
 
 	///////////////////////////////////////////////////////////////////////
@@ -102,6 +138,8 @@ public class NodeExpander {
 	}
 
 	protected void notifyNodeListeners(Node node) {
+		if (nodeListeners.isEmpty())
+			return;
 		for (NodeListener listener : nodeListeners)
 			listener.onNodeExpanded(node);
 	}
@@ -114,7 +152,7 @@ public class NodeExpander {
 	///////////////////////////////////////////////////////////////////////
 	// statistical data
 
-	/** Counts the number of {@link #expand(Node, Problem)} calls. */
+	/** Counts the number of node expansions, regardless of the expand variant. */
 	protected int counter;
 
 	/**
@@ -2,6 +2,7 @@ package aima.core.search.framework;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
 
 import aima.core.agent.Action;
 import aima.core.search.framework.problem.Problem;
@@ -18,30 +19,54 @@ import aima.core.search.framework.qsearch.QueueSearch;
 public class PrioritySearch implements SearchForActions, SearchForStates {
 	private final QueueSearch implementation;
 	private final Comparator<Node> comparator;
+	private boolean useIndexedFrontier = false;
 
 	public PrioritySearch(QueueSearch impl, Comparator<Node> comp) {
 		implementation = impl;
 		comparator = comp;
 	}
 
+	/**
+	 * Modifies {@link #useIndexedFrontier} and returns this search. An indexed
+	 * frontier keeps only the best node for each state and replaces it in
+	 * O(log n) when a better node is found. This reduces frontier size and
+	 * time for graph search on large state spaces.
+	 */
+	public PrioritySearch useIndexedFrontier(boolean state) {
+		useIndexedFrontier = state;
+		return this;
+	}
+
 	@Override
 	public List<Action> findActions(Problem p) {
 		implementation.getNodeExpander().useParentLinks(true);
-		Node node = implementation.findNode(p, QueueFactory.<Node>createPriorityQueue(comparator));
+		Node node = implementation.findNode(p, createFrontier());
 		return node == null ? SearchUtils.failure() : SearchUtils.getSequenceOfActions(node);
 	}
 
 	@Override
 	public Object findState(Problem p) {
 		implementation.getNodeExpander().useParentLinks(false);
-		Node node = implementation.findNode(p, QueueFactory.<Node>createPriorityQueue(comparator));
+		Node node = implementation.findNode(p, createFrontier());
 		return node == null ? null : node.getState();
 	}
 
+	/** Returns the queue search implementation which controls exploration. */
+	public QueueSearch getImplementation() {
+		return implementation;
+	}
+
 	public Comparator<Node> getComparator() {
 		return comparator;
 	}
 
+	/** Factory method, which creates the frontier for a new search. */
+	protected Queue<Node> createFrontier() {
+		if (useIndexedFrontier)
+			return QueueFactory.createIndexedPriorityQueue(comparator);
+		return QueueFactory.<Node>createPriorityQueue(comparator);
+	}
+
 	@Override
 	public NodeExpander getNodeExpander() {
 		return implementation.getNodeExpander();
@@ -36,4 +36,13 @@ public class QueueFactory {
 	public static <E> Queue<E> createPriorityQueue(Comparator<? super E> comparator) {
 		return new PriorityQueue<E>(11, comparator);
 	}
+
+	/**
+	 * Returns an {@link IndexedNodePriorityQueue}, which keeps only the best
+	 * node per state and supports decrease-key. Note that the smallest element
+	 * comes first!
+	 */
+	public static Queue<Node> createIndexedPriorityQueue(Comparator<? super Node> comparator) {
+		return new IndexedNodePriorityQueue(comparator);
+	}
 }
@@ -0,0 +1,56 @@
+package aima.core.search.framework;
+
+/**
+ * Receives notifications about the progress of a queue-based search. Sinks
+ * are attached to a {@link aima.core.search.framework.qsearch.QueueSearch}
+ * instance and are typically used for instrumentation, e.g. to record the
+ * explored search tree for visualization. Searches without an attached sink
+ * use {@link #NO_OP}, whose empty methods are inlined away by the JIT.
+ */
+public interface SearchEventSink {
+
+	/** Sink which ignores all events. Used by default. */
+	SearchEventSink NO_OP = new NoOpSearchEventSink();
+
+	/** Called when the root node of a new search has been created. */
+	void onRoot(Node root);
+
+	/** Called when a node has been accepted by the frontier. */
+	void onEnqueue(Node node);
+
+	/** Called when a node has been chosen from the frontier. */
+	void onDequeue(Node node);
+
+	/** Called when the successors of a node have been generated. */
+	void onExpand(Node node);
+
+	/** Called when a node containing a goal state has been found. */
+	void onGoal(Node node);
+
+	/** Sink implementation which does nothing. */
+	final class NoOpSearchEventSink implements SearchEventSink {
+
+		private NoOpSearchEventSink() {
+		}
+
+		@Override
+		public void onRoot(Node root) {
+		}
+
+		@Override
+		public void onEnqueue(Node node) {
+		}
+
+		@Override
+		public void onDequeue(Node node) {
+		}
+
+		@Override
+		public void onExpand(Node node) {
+		}
+
+		@Override
+		public void onGoal(Node node) {
+		}
+	}
+}
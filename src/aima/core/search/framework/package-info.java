@@ -41,7 +41,9 @@
  * be switched off. However, by switching on parent links, those algorithms can
  * be turned into search for actions algorithms. Additionally, the common node
  * expander interface unifies progress tracing for all search algorithms (just
- * add a node listener to get notifications about expanded nodes).
+ * add a node listener to get notifications about expanded nodes). Queue-based
+ * searches additionally report frontier access and goal detection to an
+ * attached {@link aima.core.search.framework.SearchEventSink}.
  * 
  * @author Ruediger Lunde
  */
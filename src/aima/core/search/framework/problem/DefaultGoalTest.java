@@ -12,6 +12,10 @@ public class DefaultGoalTest implements GoalTest {
 		this.goalState = goalState;
 	}
 
+	public Object getGoalState() {
+		return goalState;
+	}
+
 	public boolean isGoalState(Object state) {
 		return goalState.equals(state);
 	}
@@ -0,0 +1,56 @@
+package aima.core.search.framework.problem;
+
+import aima.core.agent.Action;
+
+/**
+ * State space with a single current state which is modified in place. Moves
+ * are identified by small integer indices and can be undone, so depth-first
+ * search engines can walk the search tree without creating state or node
+ * objects. The heuristic value of the current state is maintained by the
+ * state space itself, which allows incremental updates.<br>
+ * <br>
+ * Implementations are typically backed by a reversible problem like the
+ * sliding-tile puzzle, where every move can be reverted by another move.
+ */
+public interface ReversibleStateSpace {
+
+	/** Returns the number of move indices. Moves are numbered from 0. */
+	int getMoveCount();
+
+	/** Checks whether the move can be applied to the current state. */
+	boolean isApplicable(int move);
+
+	/** Applies the move to the current state and returns the step costs. */
+	double apply(int move);
+
+	/** Reverts the specified move, which must be the last move applied. */
+	void undo(int move);
+
+	/**
+	 * Returns the move which leads back to the state before the specified
+	 * move was applied, or -1 if there is no such move.
+	 */
+	int getReverseMove(int move);
+
+	/**
+	 * Checks whether a goal state can be reached from the current state.
+	 * Depth-first searches cannot detect the opposite by themselves and would
+	 * not terminate, so they return failure right away.
+	 */
+	boolean isSolvable();
+
+	/** Checks whether the current state is a goal state. */
+	boolean isGoalState();
+
+	/** Returns the estimated costs from the current state to a goal. */
+	double h();
+
+	/**
+	 * Returns a key which identifies the current state. Different states must
+	 * have different keys if the key is used to detect transpositions.
+	 */
+	long getStateKey();
+
+	/** Returns the action which corresponds to the specified move. */
+	Action getAction(int move);
+}
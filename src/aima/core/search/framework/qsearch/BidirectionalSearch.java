@@ -47,6 +47,8 @@ public class BidirectionalSearch extends QueueSearch {
 	// index 0: original problem, index 2: reverse problem
 	private List<Map<Object, ExtendedNode>> explored;
 	private ExtendedNode goalStateNode;
+	// reused for all expansions
+	private final List<Node> successors = new ArrayList<Node>();
 
 	public BidirectionalSearch() {
 		this(new NodeExpander());
@@ -98,29 +100,38 @@ public class BidirectionalSearch extends QueueSearch {
 			return getSolution(orgP, initStateNode, goalStateNode);
 
 		// initialize the frontier using the initial state of the problem
+		eventSink.onRoot(initStateNode);
+		eventSink.onRoot(goalStateNode);
 		addToFrontier(initStateNode);
 		addToFrontier(goalStateNode);
 
 		while (!isFrontierEmpty() && !CancelableThread.currIsCanceled()) {
 			// choose a leaf node and remove it from the frontier
 			ExtendedNode nodeToExpand = (ExtendedNode) removeFromFrontier();
+			eventSink.onDequeue(nodeToExpand);
 			ExtendedNode nodeFromOtherProblem;
 
 			// if the node contains a goal state then return the
 			// corresponding solution
-			if (!earlyGoalTest && (nodeFromOtherProblem = getCorrespondingNodeFromOtherProblem(nodeToExpand)) != null)
+			if (!earlyGoalTest && (nodeFromOtherProblem = getCorrespondingNodeFromOtherProblem(nodeToExpand)) != null) {
+				eventSink.onGoal(nodeToExpand);
 				return getSolution(orgP, nodeToExpand, nodeFromOtherProblem);
+			}
 
 			// expand the chosen node, adding the resulting nodes to the
 			// frontier
-			for (Node s : nodeExpander.expand(nodeToExpand, problem)) {
+			nodeExpander.expand(nodeToExpand, problem, successors);
+			eventSink.onExpand(nodeToExpand);
+			for (Node s : successors) {
 				ExtendedNode successor = new ExtendedNode(s, nodeToExpand.getProblemIndex());
 				if (!isReverseActionTestEnabled || nodeToExpand.getProblemIndex() == ORG_P_IDX
 						|| getReverseAction(orgP, successor) != null) {
 
 					if (earlyGoalTest
-							&& (nodeFromOtherProblem = getCorrespondingNodeFromOtherProblem(successor)) != null)
+							&& (nodeFromOtherProblem = getCorrespondingNodeFromOtherProblem(successor)) != null) {
+						eventSink.onGoal(successor);
 						return getSolution(orgP, successor, nodeFromOtherProblem);
+					}
 
 					addToFrontier(successor);
 				}
@@ -147,6 +158,7 @@ public class BidirectionalSearch extends QueueSearch {
 	protected void addToFrontier(Node node) {
 		if (!isExplored(node)) {
 			frontier.add(node);
+			eventSink.onEnqueue(node);
 			updateMetrics(frontier.size());
 		}
 	}
@@ -4,7 +4,6 @@ import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 
-import Presentation.EightPuzzleTree;
 import aima.core.search.framework.Node;
 import aima.core.search.framework.NodeExpander;
 import aima.core.search.framework.problem.Problem;
@@ -36,7 +35,9 @@ import aima.core.search.framework.problem.Problem;
  * to use the implementation also in combination with priority queue frontiers.
  * This implementation avoids linear costs for frontier node removal (compared
  * to {@link GraphSearchReducedFrontier}) and gets by without node comparator
- * knowledge.
+ * knowledge. If the frontier is an
+ * {@link aima.core.search.framework.IndexedNodePriorityQueue}, nodes for
+ * states already in the frontier replace the old nodes instead of being added.
  * 
  * @author Ruediger Lunde
  */
@@ -70,12 +71,21 @@ public class GraphSearch extends QueueSearch {
 	@Override
 	protected void addToFrontier(Node node) {
 		if (!explored.contains(node.getState())) {
-			frontier.add(node);
-			EightPuzzleTree.addToTree(node);
+			if (frontier.add(node))
+				eventSink.onEnqueue(node);
 			updateMetrics(frontier.size());
 		}
 	}
 
+	/**
+	 * Rejects states which were already explored, so that no nodes are
+	 * created for them.
+	 */
+	@Override
+	protected boolean acceptsState(Object state) {
+		return !explored.contains(state);
+	}
+
 	/**
 	 * Removes the node at the head of the frontier, adds the corresponding
 	 * state to the explored set, and returns the node. Leading nodes of already
@@ -72,10 +72,20 @@ public class GraphSearchBFS extends QueueSearch {
 		if (!explored.contains(node.getState()) && !frontierStates.contains(node.getState())) {
 			frontier.add(node);
 			frontierStates.add(node.getState());
+			eventSink.onEnqueue(node);
 			updateMetrics(frontier.size());
 		}
 	}
 
+	/**
+	 * Rejects states which were already explored or are frontier states, so
+	 * that no nodes are created for them.
+	 */
+	@Override
+	protected boolean acceptsState(Object state) {
+		return !explored.contains(state) && !frontierStates.contains(state);
+	}
+
 	/**
 	 * Removes the node at the head of the frontier, adds the corresponding
 	 * state to the explored set, and returns the node.
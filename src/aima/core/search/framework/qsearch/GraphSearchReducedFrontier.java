@@ -8,6 +8,7 @@ import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 
+import aima.core.search.framework.IndexedNodePriorityQueue;
 import aima.core.search.framework.Node;
 import aima.core.search.framework.NodeExpander;
 import aima.core.search.framework.problem.Problem;
@@ -69,6 +70,8 @@ public class GraphSearchReducedFrontier extends QueueSearch {
 		// initialize the explored set to be empty
 		if (frontier instanceof PriorityQueue<?>)
 			nodeComparator = ((PriorityQueue<Node>) frontier).comparator();
+		else if (frontier instanceof IndexedNodePriorityQueue)
+			nodeComparator = ((IndexedNodePriorityQueue) frontier).comparator();
 		explored.clear();
 		frontierNodeLookup.clear();
 		return super.findNode(problem, frontier);
@@ -93,6 +96,7 @@ public class GraphSearchReducedFrontier extends QueueSearch {
 				// child.STATE is not in frontier and not yet explored
 				frontier.add(node);
 				frontierNodeLookup.put(node.getState(), node);
+				eventSink.onEnqueue(node);
 				updateMetrics(frontier.size());
 			} else if (nodeComparator != null && nodeComparator.compare(node, frontierNode) < 0) {
 				// child.STATE is in frontier with higher cost
@@ -101,6 +105,7 @@ public class GraphSearchReducedFrontier extends QueueSearch {
 					frontierNodeLookup.remove(frontierNode.getState());
 				frontier.add(node);
 				frontierNodeLookup.put(node.getState(), node);
+				eventSink.onEnqueue(node);
 			}
 		}
 	}
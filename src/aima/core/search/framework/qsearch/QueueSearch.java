@@ -2,10 +2,11 @@ package aima.core.search.framework.qsearch;
 
 import java.util.Queue;
 
-import Presentation.EightPuzzleTree;
+import aima.core.agent.Action;
 import aima.core.search.framework.Metrics;
 import aima.core.search.framework.Node;
 import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchEventSink;
 import aima.core.search.framework.SearchUtils;
 import aima.core.search.framework.problem.Problem;
 import aima.core.util.CancelableThread;
@@ -34,6 +35,9 @@ public abstract class QueueSearch {
 	protected Queue<Node> frontier;
 	protected boolean earlyGoalTest = false;
 	protected Metrics metrics = new Metrics();
+	protected SearchEventSink eventSink = SearchEventSink.NO_OP;
+
+	private final SuccessorHandler successorHandler = new SuccessorHandler();
 
 	protected QueueSearch(NodeExpander nodeExpander) {
 		this.nodeExpander = nodeExpander;
@@ -56,44 +60,55 @@ public abstract class QueueSearch {
 	 */
 	public Node findNode(Problem problem, Queue<Node> frontier) {
 		this.frontier = frontier;
+		successorHandler.problem = problem;
+		successorHandler.goal = null;
 		clearInstrumentation();
 		// initialize the frontier using the initial state of the problem
 		Node root = nodeExpander.createRootNode(problem.getInitialState());
+		eventSink.onRoot(root);
 		addToFrontier(root);
 		if (earlyGoalTest && SearchUtils.isGoalState(problem, root)) {
-			EightPuzzleTree.setGoalState(root,0);
+			eventSink.onGoal(root);
 			return getSolution(root);
 		}
 
 		while (!isFrontierEmpty() && !CancelableThread.currIsCanceled()) {
 			// choose a leaf node and remove it from the frontier
 			Node nodeToExpand = removeFromFrontier();
-			EightPuzzleTree.numberOfExpandedNodes++;
-			EightPuzzleTree.setChosenNodeFromFrontier(nodeToExpand,nodeToExpand.getDepth());
+			eventSink.onDequeue(nodeToExpand);
 			// Only need to check the nodeToExpand if have not already
 			// checked before adding to the frontier
 			if (!earlyGoalTest && SearchUtils.isGoalState(problem, nodeToExpand)) {
 				// if the node contains a goal state then return the
 				// corresponding solution
-				EightPuzzleTree.numberOfExpandedNodes--;
-				EightPuzzleTree.setGoalState(nodeToExpand, nodeToExpand.getDepth());
+				eventSink.onGoal(nodeToExpand);
 				return getSolution(nodeToExpand);
 			}
 			// expand the chosen node, adding the resulting nodes to the
 			// frontier
-			for (Node successor : nodeExpander.expand(nodeToExpand, problem)) {
-				successor.setDepth(nodeToExpand.getDepth() + 1);
-				addToFrontier(successor);
-				if (earlyGoalTest && SearchUtils.isGoalState(problem, successor)) {
-					EightPuzzleTree.setGoalState(successor,successor.getDepth());
-					return getSolution(successor);
-				}
+			nodeExpander.expand(nodeToExpand, problem, successorHandler);
+			eventSink.onExpand(nodeToExpand);
+			if (successorHandler.goal != null) {
+				Node goal = successorHandler.goal;
+				successorHandler.goal = null;
+				eventSink.onGoal(goal);
+				return getSolution(goal);
 			}
 		}
 		// if the frontier is empty then return failure
 		return null;
 	}
 
+	/**
+	 * Primitive operation which checks whether a node for the specified
+	 * successor state would be accepted by the frontier. Successors for which
+	 * false is returned are dropped before a node is created for them. This
+	 * implementation accepts all states.
+	 */
+	protected boolean acceptsState(Object state) {
+		return true;
+	}
+
 	/**
 	 * Primitive operation which inserts the node at the tail of the frontier.
 	 */
@@ -123,6 +138,19 @@ public abstract class QueueSearch {
 		earlyGoalTest = state;
 	}
 
+	/**
+	 * Attaches a sink which is informed about root creation, frontier access,
+	 * node expansion and goal detection. Passing null restores the default
+	 * sink, which ignores all events.
+	 */
+	public void setEventSink(SearchEventSink sink) {
+		eventSink = sink != null ? sink : SearchEventSink.NO_OP;
+	}
+
+	public SearchEventSink getEventSink() {
+		return eventSink;
+	}
+
 	public NodeExpander getNodeExpander() {
 		return nodeExpander;
 	}
@@ -158,4 +186,26 @@ public abstract class QueueSearch {
 		metrics.set(METRIC_PATH_COST, node.getPathCost());
 		return node;
 	}
+
+	/**
+	 * Receives successor states during expansion, creates nodes for the
+	 * states accepted by the frontier, and adds them. With early goal test,
+	 * the first goal node is recorded and the remaining successors are
+	 * ignored.
+	 */
+	private class SuccessorHandler implements NodeExpander.SuccessorConsumer {
+		private Problem problem;
+		private Node goal;
+
+		@Override
+		public void accept(Node parent, Action action, Object successorState, double stepCost) {
+			if (goal != null || !acceptsState(successorState))
+				return;
+			Node successor = nodeExpander.createNode(successorState, parent, action, stepCost);
+			successor.setDepth(parent.getDepth() + 1);
+			addToFrontier(successor);
+			if (earlyGoalTest && SearchUtils.isGoalState(problem, successor))
+				goal = successor;
+		}
+	}
 }
\ No newline at end of file
@@ -47,6 +47,7 @@ public class TreeSearch extends QueueSearch {
 	@Override
 	protected void addToFrontier(Node node) {
 		frontier.add(node);
+		eventSink.onEnqueue(node);
 		updateMetrics(frontier.size());
 	}
 
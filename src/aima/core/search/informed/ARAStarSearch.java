@@ -0,0 +1,342 @@
+package aima.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchForStates;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.evalfunc.HeuristicFunction;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.util.CancelableThread;
+
+/**
+ * Anytime Repairing A* (ARA*, Likhachev, Gordon and Thrun 2003). The search
+ * starts as weighted A* with f(n) = g(n) + w * h(n) and a large weight w, which
+ * finds a first solution quickly. Then the weight is decreased step by step
+ * down to 1, and each iteration improves the current solution. Search effort is
+ * reused between iterations: states are expanded at most once per iteration,
+ * and states whose path costs decrease after their expansion are collected and
+ * only reconsidered in the next iteration.<br>
+ * <br>
+ * After each iteration which improves the solution or its quality bound,
+ * registered {@link SolutionListener}s are informed. The bound states how much
+ * more expensive the solution can be than an optimal solution if the heuristic
+ * is consistent. When the calling thread is canceled (see
+ * {@link CancelableThread}), the search returns the best solution found so far
+ * instead of failure. Without cancellation, the result is optimal for
+ * consistent heuristics.
+ */
+public class ARAStarSearch implements SearchForActions, SearchForStates {
+
+	public static final String METRIC_NODES_EXPANDED = QueueSearch.METRIC_NODES_EXPANDED;
+	public static final String METRIC_QUEUE_SIZE = QueueSearch.METRIC_QUEUE_SIZE;
+	public static final String METRIC_MAX_QUEUE_SIZE = QueueSearch.METRIC_MAX_QUEUE_SIZE;
+	public static final String METRIC_PATH_COST = QueueSearch.METRIC_PATH_COST;
+	public static final String METRIC_ITERATIONS = "iterations";
+	public static final String METRIC_WEIGHT = "weight";
+	public static final String METRIC_SUBOPTIMALITY_BOUND = "suboptimalityBound";
+
+	private final HeuristicFunction hf;
+	private final double initialWeight;
+	private final double weightDecrement;
+	private final NodeExpander nodeExpander;
+	private final Metrics metrics = new Metrics();
+	private final List<SolutionListener> solutionListeners = new ArrayList<SolutionListener>();
+	private final NodeExpander.SuccessorConsumer successorConsumer = this::accept;
+
+	// state of the current search
+	private Problem problem;
+	private double weight;
+	private final Map<Object, Node> bestNodes = new HashMap<Object, Node>();
+	private final Set<Object> expandedStates = new HashSet<Object>();
+	// expanded states whose path costs decreased in the current iteration
+	private final Set<Object> inconsistentStates = new HashSet<Object>();
+	private final PriorityQueue<Entry> frontier = new PriorityQueue<Entry>(64, Entry.COMPARATOR);
+	private Node solution;
+	private double bound;
+	private int maxQueueSize;
+
+	/**
+	 * Creates a search which starts with weight 2.5 and decreases the weight
+	 * by 0.5 after each iteration.
+	 */
+	public ARAStarSearch(HeuristicFunction hf) {
+		this(hf, 2.5, 0.5);
+	}
+
+	/**
+	 * Creates a search with the specified schedule of weights.
+	 *
+	 * @param hf
+	 *            a heuristic function which estimates the costs to the
+	 *            nearest goal state
+	 * @param initialWeight
+	 *            the weight of the heuristic in the first iteration (at least
+	 *            1)
+	 * @param weightDecrement
+	 *            the amount the weight is decreased by after each iteration
+	 *            (positive)
+	 */
+	public ARAStarSearch(HeuristicFunction hf, double initialWeight, double weightDecrement) {
+		this(hf, initialWeight, weightDecrement, new NodeExpander());
+	}
+
+	public ARAStarSearch(HeuristicFunction hf, double initialWeight, double weightDecrement,
+			NodeExpander nodeExpander) {
+		if (initialWeight < 1 || weightDecrement <= 0)
+			throw new IllegalArgumentException("Weight must be at least 1, decrement must be positive.");
+		this.hf = hf;
+		this.initialWeight = initialWeight;
+		this.weightDecrement = weightDecrement;
+		this.nodeExpander = nodeExpander;
+	}
+
+	/**
+	 * Adds a listener which is informed about each new solution and each
+	 * improvement of the suboptimality bound. Listeners are called by the
+	 * searching thread.
+	 */
+	public void addSolutionListener(SolutionListener listener) {
+		solutionListeners.add(listener);
+	}
+
+	public boolean removeSolutionListener(SolutionListener listener) {
+		return solutionListeners.remove(listener);
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		Node node = findNode(p);
+		return node == null ? SearchUtils.failure() : SearchUtils.getSequenceOfActions(node);
+	}
+
+	@Override
+	public Object findState(Problem p) {
+		Node node = findNode(p);
+		return node == null ? null : node.getState();
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/** Is informed about the solutions found during the search. */
+	public static interface SolutionListener {
+		/**
+		 * Called after an iteration which found a cheaper solution or a better
+		 * bound.
+		 *
+		 * @param solution
+		 *            a goal node, the actions can be obtained with
+		 *            {@link SearchUtils#getSequenceOfActions(Node)}
+		 * @param suboptimalityBound
+		 *            the costs of the solution are at most this factor times
+		 *            the optimal costs (for consistent heuristics)
+		 */
+		void onSolutionFound(Node solution, double suboptimalityBound);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Runs iterations with decreasing weights until the solution is proven
+	 * optimal, and returns the best goal node found, or null.
+	 */
+	private synchronized Node findNode(Problem p) {
+		problem = p;
+		clear();
+		nodeExpander.resetCounter();
+		metrics.set(METRIC_ITERATIONS, 0);
+		weight = initialWeight;
+		solution = null;
+		bound = Double.POSITIVE_INFINITY;
+		maxQueueSize = 0;
+
+		Node root = nodeExpander.createRootNode(p.getInitialState());
+		bestNodes.put(root.getState(), root);
+		if (SearchUtils.isGoalState(p, root))
+			solution = root;
+		else
+			insert(root);
+		boolean canceled = false;
+		while (!canceled) {
+			canceled = !improvePath();
+			if (!canceled && solution == null)
+				break; // frontier exhausted, no goal reachable
+			metrics.incrementInt(METRIC_ITERATIONS);
+			double newBound = computeBound();
+			if (solution != null && newBound < bound) {
+				bound = newBound;
+				notifySolutionListeners();
+			}
+			if (canceled || bound <= 1)
+				break;
+			weight = Math.max(1, Math.min(weight, bound) - weightDecrement);
+			reopenStates();
+		}
+		updateMetrics();
+		Node result = solution;
+		clear();
+		problem = null;
+		return result;
+	}
+
+	/**
+	 * Expands nodes until the current solution is not more expensive than
+	 * the lowest f-value of the frontier. Returns false if the thread was
+	 * canceled.
+	 */
+	private boolean improvePath() {
+		Entry entry;
+		while ((entry = peekValid()) != null && (solution == null || solution.getPathCost() > entry.f)) {
+			if (CancelableThread.currIsCanceled())
+				return false;
+			frontier.poll();
+			Node node = entry.node;
+			expandedStates.add(node.getState());
+			nodeExpander.expand(node, problem, successorConsumer);
+		}
+		return true;
+	}
+
+	private void accept(Node parent, Action action, Object successorState, double stepCost) {
+		double pathCost = parent.getPathCost() + stepCost;
+		Node known = bestNodes.get(successorState);
+		if (known != null && pathCost >= known.getPathCost())
+			return;
+		Node successor = nodeExpander.createNode(successorState, parent, action, stepCost);
+		bestNodes.put(successorState, successor);
+		if (SearchUtils.isGoalState(problem, successor)) {
+			if (solution == null || pathCost < solution.getPathCost())
+				solution = successor;
+		}
+		if (expandedStates.contains(successorState))
+			inconsistentStates.add(successorState);
+		else
+			insert(successor);
+	}
+
+	/**
+	 * Moves the inconsistent states into the frontier, recomputes all
+	 * priorities with the current weight and starts a new iteration.
+	 */
+	private void reopenStates() {
+		List<Node> nodes = new ArrayList<Node>(frontier.size() + inconsistentStates.size());
+		for (Entry entry : frontier)
+			if (isValid(entry))
+				nodes.add(entry.node);
+		for (Object state : inconsistentStates)
+			nodes.add(bestNodes.get(state));
+		frontier.clear();
+		inconsistentStates.clear();
+		expandedStates.clear();
+		for (Node node : nodes)
+			insert(node);
+	}
+
+	/**
+	 * Returns the bound w' = min(w, cost / min(g + h)), where the minimum is
+	 * taken over the frontier and the inconsistent states.
+	 */
+	private double computeBound() {
+		if (solution == null)
+			return Double.POSITIVE_INFINITY;
+		double minF = solution.getPathCost();
+		for (Entry entry : frontier)
+			if (isValid(entry))
+				minF = Math.min(minF, entry.node.getPathCost() + entry.h);
+		for (Object state : inconsistentStates) {
+			Node node = bestNodes.get(state);
+			minF = Math.min(minF, node.getPathCost() + h(node));
+		}
+		double result = minF > 0 ? solution.getPathCost() / minF : 1;
+		return Math.max(1, Math.min(weight, result));
+	}
+
+	private void insert(Node node) {
+		frontier.add(new Entry(node, h(node), weight));
+		if (frontier.size() > maxQueueSize)
+			maxQueueSize = frontier.size();
+	}
+
+	private double h(Node node) {
+		return hf.h(node.getState());
+	}
+
+	/**
+	 * Removes outdated entries (with better nodes for their states or of
+	 * states expanded in the current iteration) from the head of the frontier
+	 * and returns the head.
+	 */
+	private Entry peekValid() {
+		Entry entry;
+		while ((entry = frontier.peek()) != null && !isValid(entry))
+			frontier.poll();
+		return entry;
+	}
+
+	private boolean isValid(Entry entry) {
+		Object state = entry.node.getState();
+		return bestNodes.get(state) == entry.node && !expandedStates.contains(state);
+	}
+
+	private void notifySolutionListeners() {
+		for (SolutionListener listener : solutionListeners)
+			listener.onSolutionFound(solution, bound);
+	}
+
+	private void updateMetrics() {
+		metrics.set(METRIC_NODES_EXPANDED, nodeExpander.getNumOfExpandCalls());
+		metrics.set(METRIC_QUEUE_SIZE, frontier.size());
+		metrics.set(METRIC_MAX_QUEUE_SIZE, maxQueueSize);
+		metrics.set(METRIC_WEIGHT, weight);
+		metrics.set(METRIC_SUBOPTIMALITY_BOUND, bound);
+		metrics.set(METRIC_PATH_COST, solution != null ? solution.getPathCost() : 0);
+	}
+
+	private void clear() {
+		bestNodes.clear();
+		expandedStates.clear();
+		inconsistentStates.clear();
+		frontier.clear();
+	}
+
+	/** Frontier element, caches the heuristic value and the priority. */
+	private static class Entry {
+		static final Comparator<Entry> COMPARATOR = new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return Double.compare(e1.f, e2.f);
+			}
+		};
+
+		final Node node;
+		final double h;
+		final double f;
+
+		Entry(Node node, double h, double weight) {
+			this.node = node;
+			this.h = h;
+			f = node.getPathCost() + weight * h;
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package aima.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.evalfunc.HeuristicFunction;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.problem.ReversibleStateSpace;
+import aima.core.util.CancelableThread;
+
+/**
+ * Iterative deepening A* (IDA*). Performs a sequence of depth-first searches.
+ * Each iteration explores all nodes whose f-value does not exceed a threshold
+ * (a contour), starting with the heuristic value of the initial state. The
+ * next threshold is the smallest f-value which exceeded the current one. With
+ * an admissible heuristic, the first solution found is optimal. Memory
+ * consumption is linear in the solution depth.<br>
+ * <br>
+ * Two search modes are supported. Problems are searched with nodes created by
+ * the node expander and the heuristic function provided on construction.
+ * {@link ReversibleStateSpace} instances are searched by applying and undoing
+ * moves in place, so no objects are created per generated state. In both
+ * modes, the successor which leads back to the state of the parent is pruned.
+ * Optionally, a transposition table of fixed size stores the lowest path costs
+ * at which states have been reached during the current iteration, and states
+ * reached again on a path which is not cheaper are cut off.<br>
+ * <br>
+ * Besides the usual totals, metrics report the threshold and the number of
+ * expanded nodes of each contour with the prefix
+ * <code>contour&lt;i&gt;.</code>.
+ */
+public class IDAStarSearch implements SearchForActions {
+
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_NODES_GENERATED = "nodesGenerated";
+	public static final String METRIC_PATH_COST = "pathCost";
+	public static final String METRIC_CONTOURS = "contours";
+	public static final String METRIC_TRANSPOSITION_CUTOFFS = "transpositionCutoffs";
+	public static final String METRIC_THRESHOLD = "threshold";
+
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	private final HeuristicFunction hf;
+	private final NodeExpander nodeExpander;
+	private final int transpositionTableSize;
+	private TranspositionTable transpositionTable;
+	private Metrics metrics = new Metrics();
+
+	// state of the current search
+	private double threshold;
+	private double nextThreshold;
+	private long nodesExpanded;
+	private long nodesGenerated;
+	private long contourNodesExpanded;
+	private long transpositionCutoffs;
+	private boolean canceled;
+	// in-place mode
+	private ReversibleStateSpace space;
+	private int[] moves = new int[64];
+	private int solutionLength;
+	private double solutionCost;
+	// node mode
+	private Problem problem;
+	private final List<List<Node>> successorBuffers = new ArrayList<List<Node>>();
+	private Node solution;
+
+	/** Creates a search without transposition table. */
+	public IDAStarSearch(HeuristicFunction hf) {
+		this(hf, 0);
+	}
+
+	/**
+	 * Creates a search with a transposition table of the specified number of
+	 * entries. A size of 0 disables the table.
+	 */
+	public IDAStarSearch(HeuristicFunction hf, int transpositionTableSize) {
+		this(hf, transpositionTableSize, new NodeExpander());
+	}
+
+	public IDAStarSearch(HeuristicFunction hf, int transpositionTableSize, NodeExpander nodeExpander) {
+		if (transpositionTableSize < 0)
+			throw new IllegalArgumentException("Transposition table size must not be negative.");
+		this.hf = hf;
+		this.transpositionTableSize = transpositionTableSize;
+		this.nodeExpander = nodeExpander;
+	}
+
+	/**
+	 * Searches a solution for the problem. Nodes are created by the node
+	 * expander and evaluated with the heuristic function of this search.
+	 */
+	@Override
+	public List<Action> findActions(Problem p) {
+		startSearch();
+		problem = p;
+		Node root = nodeExpander.createRootNode(p.getInitialState());
+		threshold = hf.h(root.getState());
+		while (true) {
+			startContour();
+			boolean found = search(root, 0);
+			endContour();
+			if (found) {
+				metrics.set(METRIC_PATH_COST, solution.getPathCost());
+				List<Action> result = SearchUtils.getSequenceOfActions(solution);
+				endSearch();
+				return result;
+			}
+			if (nextThreshold == INFINITY || canceled) {
+				endSearch();
+				return SearchUtils.failure();
+			}
+			threshold = nextThreshold;
+		}
+	}
+
+	/**
+	 * Searches a sequence of moves from the current state of the state space
+	 * to a goal state. The heuristic of the state space is used. When the
+	 * method returns, the state space is back in its initial state.
+	 */
+	public List<Action> findActions(ReversibleStateSpace space) {
+		startSearch();
+		if (!space.isSolvable()) {
+			endSearch();
+			return SearchUtils.failure();
+		}
+		this.space = space;
+		threshold = space.h();
+		while (true) {
+			startContour();
+			boolean found = search(0, 0, -1);
+			endContour();
+			if (found) {
+				metrics.set(METRIC_PATH_COST, solutionCost);
+				List<Action> result = new ArrayList<Action>(Math.max(solutionLength, 1));
+				if (solutionLength == 0)
+					result.add(NoOpAction.NO_OP);
+				for (int i = 0; i < solutionLength; i++)
+					result.add(space.getAction(moves[i]));
+				endSearch();
+				return result;
+			}
+			if (nextThreshold == INFINITY || canceled) {
+				endSearch();
+				return SearchUtils.failure();
+			}
+			threshold = nextThreshold;
+		}
+	}
+
+	public HeuristicFunction getHeuristicFunction() {
+		return hf;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/**
+	 * Returns all the search metrics.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Depth-first contour search on nodes. */
+	private boolean search(Node node, int depth) {
+		double f = node.getPathCost() + hf.h(node.getState());
+		if (f > threshold) {
+			nextThreshold = Math.min(nextThreshold, f);
+			return false;
+		}
+		if (SearchUtils.isGoalState(problem, node)) {
+			solution = node;
+			return true;
+		}
+		if (!visit(node.getState().hashCode(), node.getState(), node.getPathCost()) || isCanceled())
+			return false;
+
+		if (successorBuffers.size() == depth)
+			successorBuffers.add(new ArrayList<Node>());
+		List<Node> successors = nodeExpander.expand(node, problem, successorBuffers.get(depth));
+		Object parentState = node.getParent() != null ? node.getParent().getState() : null;
+		for (int i = 0; i < successors.size(); i++) {
+			Node successor = successors.get(i);
+			// prune the move which undoes the last one
+			if (parentState != null && parentState.equals(successor.getState()))
+				continue;
+			successor.setDepth(depth + 1);
+			nodesGenerated++;
+			if (search(successor, depth + 1))
+				return true;
+		}
+		successors.clear();
+		return false;
+	}
+
+	/** Depth-first contour search on a reversible state space. */
+	private boolean search(int depth, double pathCost, int reverseMove) {
+		double f = pathCost + space.h();
+		if (f > threshold) {
+			nextThreshold = Math.min(nextThreshold, f);
+			return false;
+		}
+		if (space.isGoalState()) {
+			solutionLength = depth;
+			solutionCost = pathCost;
+			return true;
+		}
+		if (!visit(space.getStateKey(), null, pathCost) || isCanceled())
+			return false;
+
+		if (depth == moves.length)
+			moves = Arrays.copyOf(moves, depth * 2);
+		int moveCount = space.getMoveCount();
+		for (int move = 0; move < moveCount; move++) {
+			// prune the move which undoes the last one
+			if (move == reverseMove || !space.isApplicable(move))
+				continue;
+			double stepCost = space.apply(move);
+			nodesGenerated++;
+			moves[depth] = move;
+			boolean found = search(depth + 1, pathCost + stepCost, space.getReverseMove(move));
+			space.undo(move);
+			if (found)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the expansion and consults the transposition table.
+	 *
+	 * @return false if the state was already reached with lower or equal path
+	 *         costs in the current iteration.
+	 */
+	private boolean visit(long key, Object state, double pathCost) {
+		if (transpositionTable != null && !transpositionTable.visit(key, state, pathCost)) {
+			transpositionCutoffs++;
+			return false;
+		}
+		nodesExpanded++;
+		contourNodesExpanded++;
+		return true;
+	}
+
+	private boolean isCanceled() {
+		if ((nodesExpanded & 0x3FF) == 0 && CancelableThread.currIsCanceled())
+			canceled = true;
+		return canceled;
+	}
+
+	private void startSearch() {
+		metrics = new Metrics();
+		nodesExpanded = 0;
+		nodesGenerated = 0;
+		transpositionCutoffs = 0;
+		canceled = false;
+		solution = null;
+		solutionLength = 0;
+		solutionCost = 0;
+		metrics.set(METRIC_CONTOURS, 0);
+		metrics.set(METRIC_PATH_COST, 0.0);
+		if (transpositionTableSize > 0 && transpositionTable == null)
+			transpositionTable = new TranspositionTable(transpositionTableSize);
+	}
+
+	private void startContour() {
+		nextThreshold = INFINITY;
+		contourNodesExpanded = 0;
+		if (transpositionTable != null)
+			transpositionTable.nextIteration();
+	}
+
+	private void endContour() {
+		int contour = metrics.getInt(METRIC_CONTOURS);
+		String prefix = "contour" + contour + ".";
+		metrics.set(prefix + METRIC_THRESHOLD, threshold);
+		metrics.set(prefix + METRIC_NODES_EXPANDED, contourNodesExpanded);
+		metrics.set(METRIC_CONTOURS, contour + 1);
+	}
+
+	private void endSearch() {
+		metrics.set(METRIC_NODES_EXPANDED, nodesExpanded);
+		metrics.set(METRIC_NODES_GENERATED, nodesGenerated);
+		metrics.set(METRIC_TRANSPOSITION_CUTOFFS, transpositionCutoffs);
+		if (transpositionTable != null && problem != null)
+			transpositionTable.releaseStates();
+		space = null;
+		problem = null;
+		solution = null;
+		successorBuffers.clear();
+	}
+
+	/**
+	 * Direct-mapped table which stores, for each slot, a state key, the lowest
+	 * path costs at which the state was reached, and the iteration in which
+	 * the entry was written. New entries replace old ones. Entries of previous
+	 * iterations are ignored, so the table needs no clearing between
+	 * iterations. If states are provided, they are compared to detect key
+	 * collisions.
+	 */
+	private static class TranspositionTable {
+		private final long[] keys;
+		private final Object[] states;
+		private final double[] pathCosts;
+		private final int[] iterations;
+		private final int mask;
+		private int iteration;
+
+		TranspositionTable(int size) {
+			int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+			keys = new long[capacity];
+			states = new Object[capacity];
+			pathCosts = new double[capacity];
+			iterations = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		void nextIteration() {
+			if (++iteration == Integer.MAX_VALUE) {
+				Arrays.fill(iterations, 0);
+				Arrays.fill(states, null);
+				iteration = 1;
+			}
+		}
+
+		/** Drops the references to states so that they can be collected. */
+		void releaseStates() {
+			Arrays.fill(states, null);
+		}
+
+		boolean visit(long key, Object state, double pathCost) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			int slot = (int) (h ^ (h >>> 32)) & mask;
+			if (iterations[slot] == iteration && keys[slot] == key
+					&& (state == null || state.equals(states[slot]))) {
+				if (pathCosts[slot] <= pathCost)
+					return false;
+			}
+			keys[slot] = key;
+			states[slot] = state;
+			pathCosts[slot] = pathCost;
+			iterations[slot] = iteration;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package aima.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchForStates;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.evalfunc.HeuristicFunction;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.util.CancelableThread;
+
+/**
+ * Hash distributed A* (HDA*). The state space is partitioned among worker
+ * threads by state hash code. Each worker owns a private open list and a
+ * private table of the best path costs found for its states. Generated nodes
+ * are sent to the owner of their state in batches through lock-free message
+ * queues. A worker only expands nodes whose f-value is below the cost of the
+ * best solution found so far (the incumbent).<br>
+ * <br>
+ * The search terminates when no worker has nodes left to expand and no
+ * messages are in flight. This is detected by a single counter which holds one
+ * token for each active worker and one for each unprocessed batch. As all
+ * nodes with f-values below the incumbent cost have been expanded at that
+ * point, the incumbent is optimal if the heuristic is admissible.
+ * Inconsistent heuristics are handled by re-expanding states which are
+ * reached with lower path costs.<br>
+ * <br>
+ * Metrics are reported for the whole search and, prefixed with
+ * <code>worker&lt;i&gt;.</code>, for each worker. The node expander returned
+ * by {@link #getNodeExpander()} only creates root nodes; workers expand nodes
+ * with private node expanders, so node listeners are not informed.
+ */
+public class ParallelAStarSearch implements SearchForActions, SearchForStates {
+
+	public static final String METRIC_NODES_GENERATED = "nodesGenerated";
+	public static final String METRIC_MESSAGES_SENT = "messagesSent";
+	public static final String METRIC_WORKERS = "workers";
+
+	private static final int FLUSH_INTERVAL = 64;
+
+	private final HeuristicFunction hf;
+	private final int numWorkers;
+	private final int batchSize;
+	private final NodeExpander nodeExpander = new NodeExpander();
+	private final Metrics metrics = new Metrics();
+
+	// state of the current search
+	private Problem problem;
+	private Worker[] workers;
+	private final AtomicLong outstanding = new AtomicLong();
+	private volatile boolean done;
+	private final Object solutionLock = new Object();
+	private volatile Node bestSolution;
+	private volatile double bestCost;
+	private volatile Throwable failure;
+
+	/** Creates a search with one worker per available processor. */
+	public ParallelAStarSearch(HeuristicFunction hf) {
+		this(hf, Runtime.getRuntime().availableProcessors(), 64);
+	}
+
+	/**
+	 * Creates a search with the specified number of workers. Generated nodes
+	 * are sent to other workers in batches of the specified size.
+	 */
+	public ParallelAStarSearch(HeuristicFunction hf, int numWorkers, int batchSize) {
+		if (numWorkers < 1 || batchSize < 1)
+			throw new IllegalArgumentException("Number of workers and batch size must be positive.");
+		this.hf = hf;
+		this.numWorkers = numWorkers;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		Node node = findNode(p);
+		return node == null ? SearchUtils.failure() : SearchUtils.getSequenceOfActions(node);
+	}
+
+	@Override
+	public Object findState(Problem p) {
+		Node node = findNode(p);
+		return node == null ? null : node.getState();
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/**
+	 * Runs the workers and returns an optimal goal node, or null if no goal is
+	 * reachable or the calling thread was canceled.
+	 */
+	private synchronized Node findNode(Problem p) {
+		problem = p;
+		done = false;
+		bestSolution = null;
+		bestCost = Double.POSITIVE_INFINITY;
+		failure = null;
+		workers = new Worker[numWorkers];
+		for (int i = 0; i < numWorkers; i++)
+			workers[i] = new Worker(i);
+
+		Node root = nodeExpander.createRootNode(p.getInitialState());
+		List<Node> initialBatch = new ArrayList<Node>(1);
+		initialBatch.add(root);
+		outstanding.set(1);
+		workers[owner(root.getState())].inbox.add(initialBatch);
+
+		Thread[] threads = new Thread[numWorkers];
+		for (int i = 0; i < numWorkers; i++) {
+			threads[i] = new Thread(workers[i], "hda-worker-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		try {
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					thread.join(10);
+					if (CancelableThread.currIsCanceled())
+						done = true;
+				}
+			}
+		} catch (InterruptedException e) {
+			done = true;
+			Thread.currentThread().interrupt();
+		}
+		updateMetrics();
+		Node result = CancelableThread.currIsCanceled() ? null : bestSolution;
+		problem = null;
+		workers = null;
+		if (failure != null)
+			throw new RuntimeException("Parallel A* worker failed.", failure);
+		return result;
+	}
+
+	private int owner(Object state) {
+		int h = state.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return (h & 0x7fffffff) % numWorkers;
+	}
+
+	private void offerSolution(Node node) {
+		synchronized (solutionLock) {
+			if (node.getPathCost() < bestCost) {
+				bestSolution = node;
+				bestCost = node.getPathCost();
+			}
+		}
+	}
+
+	private void updateMetrics() {
+		int expanded = 0;
+		int generated = 0;
+		int sent = 0;
+		for (Worker w : workers) {
+			String prefix = "worker" + w.id + ".";
+			metrics.set(prefix + QueueSearch.METRIC_NODES_EXPANDED, w.nodeExpander.getNumOfExpandCalls());
+			metrics.set(prefix + METRIC_NODES_GENERATED, w.nodesGenerated);
+			metrics.set(prefix + QueueSearch.METRIC_MAX_QUEUE_SIZE, w.maxQueueSize);
+			metrics.set(prefix + METRIC_MESSAGES_SENT, w.messagesSent);
+			expanded += w.nodeExpander.getNumOfExpandCalls();
+			generated += w.nodesGenerated;
+			sent += w.messagesSent;
+		}
+		metrics.set(METRIC_WORKERS, numWorkers);
+		metrics.set(QueueSearch.METRIC_NODES_EXPANDED, expanded);
+		metrics.set(METRIC_NODES_GENERATED, generated);
+		metrics.set(METRIC_MESSAGES_SENT, sent);
+		metrics.set(QueueSearch.METRIC_PATH_COST, bestSolution != null ? bestSolution.getPathCost() : 0);
+	}
+
+	/** Open list element, caches the f-value of its node. */
+	private static class Entry {
+		final Node node;
+		final double f;
+
+		Entry(Node node, double f) {
+			this.node = node;
+			this.f = f;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int result = Double.compare(e1.f, e2.f);
+			// prefer deeper nodes on ties
+			return result != 0 ? result : Double.compare(e2.node.getPathCost(), e1.node.getPathCost());
+		}
+	};
+
+	/** Owner of one partition of the state space. */
+	private class Worker implements Runnable {
+		final int id;
+		final Queue<List<Node>> inbox = new ConcurrentLinkedQueue<List<Node>>();
+		final NodeExpander nodeExpander = new NodeExpander();
+		final PriorityQueue<Entry> open = new PriorityQueue<Entry>(64, ENTRY_COMPARATOR);
+		final Map<Object, Double> bestPathCosts = new HashMap<Object, Double>();
+		final List<List<Node>> outboxes = new ArrayList<List<Node>>();
+		int nodesGenerated;
+		int messagesSent;
+		int maxQueueSize;
+
+		Worker(int id) {
+			this.id = id;
+			for (int i = 0; i < numWorkers; i++)
+				outboxes.add(new ArrayList<Node>(batchSize));
+		}
+
+		@Override
+		public void run() {
+			try {
+				boolean active = false;
+				int expandedSinceFlush = 0;
+				while (!done) {
+					List<Node> batch;
+					while ((batch = inbox.poll()) != null) {
+						for (Node node : batch)
+							receive(node);
+						// the token of the batch becomes the token of this
+						// worker, or is dropped if the worker holds one already
+						if (active)
+							outstanding.decrementAndGet();
+						else
+							active = true;
+					}
+					if (active) {
+						Entry entry = pollUsable();
+						if (entry != null) {
+							expand(entry.node);
+							if (++expandedSinceFlush == FLUSH_INTERVAL) {
+								flushAll();
+								expandedSinceFlush = 0;
+							}
+							continue;
+						}
+						flushAll();
+						expandedSinceFlush = 0;
+						active = false;
+						if (outstanding.decrementAndGet() == 0)
+							done = true;
+					} else {
+						LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(20));
+					}
+				}
+			} catch (Throwable t) {
+				failure = t;
+				done = true;
+			}
+		}
+
+		/** Adds the node to the open list if it reaches its state cheaper than known before. */
+		private void receive(Node node) {
+			Double known = bestPathCosts.get(node.getState());
+			if (known == null || node.getPathCost() < known) {
+				bestPathCosts.put(node.getState(), node.getPathCost());
+				open.add(new Entry(node, node.getPathCost() + hf.h(node.getState())));
+				if (open.size() > maxQueueSize)
+					maxQueueSize = open.size();
+			}
+		}
+
+		/** Returns the best open entry which is up to date and can improve the incumbent. */
+		private Entry pollUsable() {
+			Entry entry;
+			while ((entry = open.peek()) != null) {
+				if (entry.f >= bestCost) {
+					// no remaining entry can lead to a better solution
+					open.clear();
+					return null;
+				}
+				open.poll();
+				if (entry.node.getPathCost() <= bestPathCosts.get(entry.node.getState()))
+					return entry;
+			}
+			return null;
+		}
+
+		private void expand(Node node) {
+			if (SearchUtils.isGoalState(problem, node)) {
+				offerSolution(node);
+				return;
+			}
+			for (Node successor : nodeExpander.expand(node, problem)) {
+				successor.setDepth(node.getDepth() + 1);
+				nodesGenerated++;
+				int dest = owner(successor.getState());
+				if (dest == id) {
+					receive(successor);
+				} else {
+					List<Node> outbox = outboxes.get(dest);
+					outbox.add(successor);
+					if (outbox.size() >= batchSize)
+						flush(dest);
+				}
+			}
+		}
+
+		private void flushAll() {
+			for (int i = 0; i < numWorkers; i++)
+				if (!outboxes.get(i).isEmpty())
+					flush(i);
+		}
+
+		private void flush(int dest) {
+			// count the batch before it becomes visible to the receiver
+			outstanding.incrementAndGet();
+			workers[dest].inbox.add(outboxes.get(dest));
+			outboxes.set(dest, new ArrayList<Node>(batchSize));
+			messagesSent++;
+		}
+	}
+}
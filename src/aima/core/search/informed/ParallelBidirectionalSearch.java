@@ -0,0 +1,376 @@
+package aima.core.search.informed;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.evalfunc.HeuristicFunction;
+import aima.core.search.framework.problem.BidirectionalProblem;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.util.CancelableThread;
+
+/**
+ * Bidirectional search which meets in the middle (MM, Holte et al. 2016). The
+ * forward search on the original problem and the backward search on the
+ * reverse problem of a {@link BidirectionalProblem} run on separate threads.
+ * Each direction expands nodes in the order of the priority max(f, 2g) and
+ * keeps the best node found for each state in a concurrent map, which the
+ * other direction reads to detect meetings. The cheapest path found at a
+ * meeting is the incumbent solution U.<br>
+ * <br>
+ * Each direction publishes lower bounds of its open list: the minimal
+ * priority, f-value and g-value. The search stops as soon as U is not larger
+ * than max(C, fminF, fminB, gminF + gminB), where C is the smaller of the two
+ * minimal priorities. The bounds only grow during the search, so a direction
+ * can safely decide to stop based on the values the other direction
+ * published earlier. The result is optimal if both heuristics are consistent
+ * (the forward heuristic estimates the costs to the goal state, the backward
+ * heuristic the costs to the initial state). Without heuristics, the search is
+ * a bidirectional uniform cost search which stops when the sum of the minimal
+ * g-values reaches U. This is optimal for weighted problems like
+ * {@link aima.core.environment.map.BidirectionalMapProblem}, as long as the
+ * step costs of the reverse problem equal those of the original problem.<br>
+ * <br>
+ * The goal is the initial state of the reverse problem; the goal test of the
+ * original problem is not used. Metrics are reported in total and, prefixed
+ * with <code>forward.</code> and <code>backward.</code>, for each direction.
+ */
+public class ParallelBidirectionalSearch implements SearchForActions {
+
+	public static final String METRIC_NODES_GENERATED = "nodesGenerated";
+	public static final String METRIC_MEETINGS = "meetings";
+
+	private final HeuristicFunction forwardHf;
+	private final HeuristicFunction backwardHf;
+	private final NodeExpander nodeExpander = new NodeExpander();
+	private final Metrics metrics = new Metrics();
+
+	// state of the current search
+	private Direction forward;
+	private Direction backward;
+	private volatile boolean done;
+	private final Object solutionLock = new Object();
+	private volatile double bestCost;
+	private Node bestForwardNode;
+	private Node bestBackwardNode;
+	private int meetings;
+	private volatile Throwable failure;
+
+	/** Creates a bidirectional uniform cost search. */
+	public ParallelBidirectionalSearch() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a search with heuristics for both directions.
+	 *
+	 * @param forwardHf
+	 *            estimates the costs from a state to the goal state, or null
+	 * @param backwardHf
+	 *            estimates the costs from the initial state to a state, or
+	 *            null
+	 */
+	public ParallelBidirectionalSearch(HeuristicFunction forwardHf, HeuristicFunction backwardHf) {
+		this.forwardHf = forwardHf;
+		this.backwardHf = backwardHf;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		Node node = findNode(p);
+		return node == null ? SearchUtils.failure() : SearchUtils.getSequenceOfActions(node);
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the node expander which creates root and solution nodes.
+	 * Directions expand nodes with private node expanders, so node listeners
+	 * are not informed.
+	 */
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Runs both directions and returns a goal node of the original problem,
+	 * or null if the goal is not reachable or the calling thread was canceled.
+	 */
+	private synchronized Node findNode(Problem p) {
+		if (!(p instanceof BidirectionalProblem))
+			throw new IllegalArgumentException("Bidirectional problem expected.");
+		Problem orgP = ((BidirectionalProblem) p).getOriginalProblem();
+		Problem revP = ((BidirectionalProblem) p).getReverseProblem();
+		done = false;
+		bestCost = Double.POSITIVE_INFINITY;
+		bestForwardNode = null;
+		bestBackwardNode = null;
+		meetings = 0;
+		failure = null;
+		forward = new Direction("forward", orgP, forwardHf);
+		backward = new Direction("backward", revP, backwardHf);
+		forward.other = backward;
+		backward.other = forward;
+		forward.addRoot(nodeExpander.createRootNode(orgP.getInitialState()));
+		backward.addRoot(nodeExpander.createRootNode(revP.getInitialState()));
+
+		Thread[] threads = new Thread[] { new Thread(forward, "bidirectional-forward"),
+				new Thread(backward, "bidirectional-backward") };
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+		try {
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					thread.join(10);
+					if (CancelableThread.currIsCanceled())
+						done = true;
+				}
+			}
+		} catch (InterruptedException e) {
+			done = true;
+			Thread.currentThread().interrupt();
+		}
+		Node result = null;
+		if (!CancelableThread.currIsCanceled() && bestForwardNode != null)
+			result = getSolution(orgP, bestForwardNode, bestBackwardNode);
+		updateMetrics(result);
+		forward = null;
+		backward = null;
+		if (failure != null)
+			throw new RuntimeException("Bidirectional search thread failed.", failure);
+		return result;
+	}
+
+	private void offerSolution(Node forwardNode, Node backwardNode) {
+		synchronized (solutionLock) {
+			meetings++;
+			double cost = forwardNode.getPathCost() + backwardNode.getPathCost();
+			if (cost < bestCost) {
+				bestForwardNode = forwardNode;
+				bestBackwardNode = backwardNode;
+				bestCost = cost;
+			}
+		}
+	}
+
+	/** Checks the MM stopping condition with the published bounds. */
+	private boolean canStop() {
+		double c = Math.min(forward.minPriority, backward.minPriority);
+		double bound = Math.max(Math.max(c, forward.minF), Math.max(backward.minF, forward.minG + backward.minG));
+		return bestCost <= bound;
+	}
+
+	/**
+	 * Extends the forward node by the reversed path of the backward node, see
+	 * {@link aima.core.search.framework.qsearch.BidirectionalSearch}.
+	 */
+	private Node getSolution(Problem orgP, Node forwardNode, Node backwardNode) {
+		Node result = forwardNode;
+		for (Node node = backwardNode; node.getParent() != null; node = node.getParent()) {
+			Object nextState = node.getParent().getState();
+			Action action = null;
+			for (Action a : orgP.getActionsFunction().actions(node.getState())) {
+				if (nextState.equals(orgP.getResultFunction().result(node.getState(), a))) {
+					action = a;
+					break;
+				}
+			}
+			if (action == null)
+				return null;
+			double stepCosts = orgP.getStepCostFunction().c(node.getState(), action, nextState);
+			result = nodeExpander.createNode(nextState, result, action, stepCosts);
+		}
+		return result;
+	}
+
+	private void updateMetrics(Node solution) {
+		int expanded = 0;
+		int generated = 0;
+		for (Direction dir : new Direction[] { forward, backward }) {
+			String prefix = dir.name + ".";
+			metrics.set(prefix + QueueSearch.METRIC_NODES_EXPANDED, dir.nodeExpander.getNumOfExpandCalls());
+			metrics.set(prefix + METRIC_NODES_GENERATED, dir.nodesGenerated);
+			metrics.set(prefix + QueueSearch.METRIC_MAX_QUEUE_SIZE, dir.maxQueueSize);
+			expanded += dir.nodeExpander.getNumOfExpandCalls();
+			generated += dir.nodesGenerated;
+		}
+		metrics.set(QueueSearch.METRIC_NODES_EXPANDED, expanded);
+		metrics.set(METRIC_NODES_GENERATED, generated);
+		metrics.set(METRIC_MEETINGS, meetings);
+		metrics.set(QueueSearch.METRIC_PATH_COST, solution != null ? solution.getPathCost() : 0);
+	}
+
+	/** Open list element, caches the values of its node. */
+	private static class Entry {
+		final Node node;
+		final double priority;
+		final double f;
+
+		Entry(Node node, double f) {
+			this.node = node;
+			this.f = f;
+			priority = Math.max(f, 2 * node.getPathCost());
+		}
+	}
+
+	private static final Comparator<Entry> PRIORITY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int result = Double.compare(e1.priority, e2.priority);
+			// prefer deeper nodes on ties
+			return result != 0 ? result : Double.compare(e2.node.getPathCost(), e1.node.getPathCost());
+		}
+	};
+
+	private static final Comparator<Entry> F_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return Double.compare(e1.f, e2.f);
+		}
+	};
+
+	private static final Comparator<Entry> G_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return Double.compare(e1.node.getPathCost(), e2.node.getPathCost());
+		}
+	};
+
+	/** One search direction, runs on its own thread. */
+	private class Direction implements Runnable, NodeExpander.SuccessorConsumer {
+		final String name;
+		final Problem problem;
+		final HeuristicFunction hf;
+		Direction other;
+		final NodeExpander nodeExpander = new NodeExpander();
+		// best node of each generated state, read by the other direction
+		final Map<Object, Node> bestNodes = new ConcurrentHashMap<Object, Node>();
+		final Map<Object, Node> expandedNodes = new HashMap<Object, Node>();
+		// the same entries ordered in three ways, outdated entries are
+		// removed lazily
+		final PriorityQueue<Entry> byPriority = new PriorityQueue<Entry>(64, PRIORITY_COMPARATOR);
+		final PriorityQueue<Entry> byF = new PriorityQueue<Entry>(64, F_COMPARATOR);
+		final PriorityQueue<Entry> byG = new PriorityQueue<Entry>(64, G_COMPARATOR);
+		// published lower bounds of the open list
+		volatile double minPriority;
+		volatile double minF;
+		volatile double minG;
+		int nodesGenerated;
+		int maxQueueSize;
+
+		Direction(String name, Problem problem, HeuristicFunction hf) {
+			this.name = name;
+			this.problem = problem;
+			this.hf = hf;
+		}
+
+		void addRoot(Node root) {
+			add(root);
+			publishBounds();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!done) {
+					publishBounds();
+					if (canStop()) {
+						done = true;
+						break;
+					}
+					Entry entry = peekValid(byPriority);
+					if (entry.priority >= bestCost) {
+						// cannot improve the incumbent, wait for the other
+						// direction to raise its bounds
+						LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(20));
+						continue;
+					}
+					byPriority.poll();
+					expandedNodes.put(entry.node.getState(), entry.node);
+					nodeExpander.expand(entry.node, problem, this);
+				}
+			} catch (Throwable t) {
+				failure = t;
+				done = true;
+			}
+		}
+
+		@Override
+		public void accept(Node parent, Action action, Object successorState, double stepCost) {
+			nodesGenerated++;
+			Node known = bestNodes.get(successorState);
+			if (known == null || parent.getPathCost() + stepCost < known.getPathCost()) {
+				Node successor = nodeExpander.createNode(successorState, parent, action, stepCost);
+				// reopens the state if it was expanded already
+				expandedNodes.remove(successorState);
+				add(successor);
+			}
+		}
+
+		/** Stores the node as best node of its state and checks for a meeting. */
+		private void add(Node node) {
+			bestNodes.put(node.getState(), node);
+			double h = hf != null ? hf.h(node.getState()) : 0;
+			Entry entry = new Entry(node, node.getPathCost() + h);
+			byPriority.add(entry);
+			byF.add(entry);
+			byG.add(entry);
+			if (byPriority.size() > maxQueueSize)
+				maxQueueSize = byPriority.size();
+			Node otherNode = other != null ? other.bestNodes.get(node.getState()) : null;
+			if (otherNode != null) {
+				if (this == forward)
+					offerSolution(node, otherNode);
+				else
+					offerSolution(otherNode, node);
+			}
+		}
+
+		/**
+		 * Publishes the minimal values of the open list; infinity if it is
+		 * empty, because then all reachable states have been expanded.
+		 */
+		private void publishBounds() {
+			Entry entry = peekValid(byPriority);
+			minPriority = entry != null ? entry.priority : Double.POSITIVE_INFINITY;
+			entry = peekValid(byF);
+			minF = entry != null ? entry.f : Double.POSITIVE_INFINITY;
+			entry = peekValid(byG);
+			minG = entry != null ? entry.node.getPathCost() : Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * Removes outdated entries (of expanded states or with better nodes
+		 * for their states) from the head of a queue and returns the head.
+		 */
+		private Entry peekValid(PriorityQueue<Entry> queue) {
+			Entry entry;
+			while ((entry = queue.peek()) != null) {
+				Object state = entry.node.getState();
+				if (bestNodes.get(state) == entry.node && expandedNodes.get(state) != entry.node)
+					return entry;
+				queue.poll();
+			}
+			return null;
+		}
+	}
+}
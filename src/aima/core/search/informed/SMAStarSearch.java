@@ -0,0 +1,359 @@
+package aima.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.SearchUtils;
+import aima.core.search.framework.evalfunc.EvaluationFunction;
+import aima.core.search.framework.problem.Problem;
+import aima.core.util.CancelableThread;
+
+/**
+ * Artificial Intelligence A Modern Approach (3rd Edition): page 101.<br>
+ * <br>
+ * Simplified memory-bounded A* (SMA*). SMA* proceeds just like A*, expanding
+ * the best leaf until memory is full. At this point, it cannot add a new node
+ * to the search tree without dropping an old one. SMA* always drops the worst
+ * leaf node - the one with the highest f-value. Like RBFS, SMA* then backs up
+ * the value of the forgotten node to its parent. In this way, the ancestor of
+ * a forgotten subtree knows the quality of the best path in that subtree. With
+ * this information, SMA* regenerates the subtree only when all other paths
+ * have been shown to look worse than the path it has forgotten.<br>
+ * <br>
+ * Memory is measured in search tree nodes. The budget is specified on
+ * construction and never exceeded. Each node remembers the backed-up f-values
+ * of its forgotten successors, so that regenerated successors start with the
+ * knowledge gained before. If the budget is too small to hold the
+ * path to the shallowest goal, no solution is found. States which already
+ * occur on the path to the node being expanded are not added again. With an
+ * admissible evaluation function (e.g. {@link AStarEvaluationFunction}), the
+ * returned solution is optimal among all solutions which fit into memory.
+ * Besides the number of expanded nodes, metrics report the number of evicted
+ * nodes and the number of nodes which had to be regenerated after eviction.
+ */
+public class SMAStarSearch implements SearchForActions {
+
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_PATH_COST = "pathCost";
+	public static final String METRIC_EVICTIONS = "evictions";
+	public static final String METRIC_REGENERATIONS = "regenerations";
+	public static final String METRIC_MAX_NODES_IN_MEMORY = "maxNodesInMemory";
+
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+	private final EvaluationFunction evaluationFunction;
+	private final int maxNodes;
+	private final NodeExpander nodeExpander;
+	private final Metrics metrics = new Metrics();
+
+	// state of the current search
+	private TreeSet<SMANode> open;
+	private TreeSet<SMANode> leaves;
+	private int nodesInMemory;
+	private long nextId;
+	private int evictions;
+	private int regenerations;
+	private int maxNodesInMemory;
+
+	/**
+	 * Creates a search which keeps at most <code>maxNodes</code> nodes in
+	 * memory.
+	 */
+	public SMAStarSearch(EvaluationFunction ef, int maxNodes) {
+		this(ef, maxNodes, new NodeExpander());
+	}
+
+	public SMAStarSearch(EvaluationFunction ef, int maxNodes, NodeExpander nodeExpander) {
+		if (maxNodes < 2)
+			throw new IllegalArgumentException("Memory bound must be at least two nodes.");
+		evaluationFunction = ef;
+		this.maxNodes = maxNodes;
+		this.nodeExpander = nodeExpander;
+	}
+
+	@Override
+	public List<Action> findActions(Problem p) {
+		clearInstrumentation();
+		List<Action> actions = new ArrayList<Action>();
+		SMANode goal = search(p);
+		if (goal != null) {
+			actions = SearchUtils.getSequenceOfActions(goal.node);
+			metrics.set(METRIC_PATH_COST, goal.node.getPathCost());
+		}
+		updateMetrics();
+		open = null;
+		leaves = null;
+		// Empty List can indicate already at Goal
+		// or unable to find valid set of actions
+		return actions;
+	}
+
+	public EvaluationFunction getEvaluationFunction() {
+		return evaluationFunction;
+	}
+
+	/** Returns the maximum number of nodes kept in memory. */
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	@Override
+	public NodeExpander getNodeExpander() {
+		return nodeExpander;
+	}
+
+	/**
+	 * Returns all the search metrics.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		metrics.set(METRIC_NODES_EXPANDED, nodeExpander.getNumOfExpandCalls());
+		return metrics;
+	}
+
+	/**
+	 * Sets all metrics to zero.
+	 */
+	private void clearInstrumentation() {
+		nodeExpander.resetCounter();
+		metrics.set(METRIC_NODES_EXPANDED, 0);
+		metrics.set(METRIC_PATH_COST, 0.0);
+		metrics.set(METRIC_EVICTIONS, 0);
+		metrics.set(METRIC_REGENERATIONS, 0);
+		metrics.set(METRIC_MAX_NODES_IN_MEMORY, 0);
+	}
+
+	private void updateMetrics() {
+		metrics.set(METRIC_EVICTIONS, evictions);
+		metrics.set(METRIC_REGENERATIONS, regenerations);
+		metrics.set(METRIC_MAX_NODES_IN_MEMORY, maxNodesInMemory);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the goal node or null if no solution fits into memory. */
+	private SMANode search(Problem p) {
+		open = new TreeSet<SMANode>(BEST_FIRST);
+		leaves = new TreeSet<SMANode>(WORST_FIRST);
+		nodesInMemory = 0;
+		nextId = 0;
+		evictions = 0;
+		regenerations = 0;
+		maxNodesInMemory = 0;
+
+		Node rootNode = nodeExpander.createRootNode(p.getInitialState());
+		SMANode root = new SMANode(rootNode, null, evaluationFunction.f(rootNode));
+		addNode(root);
+
+		Expansion expansion = new Expansion(p);
+		while (!open.isEmpty() && !CancelableThread.currIsCanceled()) {
+			// the deepest lowest-f node
+			SMANode best = open.first();
+			if (best.f == INFINITY)
+				break;
+			if (SearchUtils.isGoalState(p, best.node))
+				return best;
+			expansion.run(best);
+			if (best.forgotten == null || best.forgotten.isEmpty())
+				open.remove(best);
+			backUp(best);
+		}
+		return null;
+	}
+
+	/**
+	 * Generates successors of a node. On the first expansion, all successors
+	 * are generated. Later expansions only regenerate forgotten successors
+	 * whose backed-up f-value does not exceed the f-value of the node. The
+	 * memory bound is maintained by evicting the worst leaves before adding
+	 * new nodes.
+	 */
+	private class Expansion implements NodeExpander.SuccessorConsumer {
+		private final Problem problem;
+		private SMANode parent;
+
+		Expansion(Problem problem) {
+			this.problem = problem;
+		}
+
+		void run(SMANode node) {
+			parent = node;
+			nodeExpander.expand(node.node, problem, this);
+			node.expanded = true;
+			parent = null;
+		}
+
+		@Override
+		public void accept(Node parentNode, Action action, Object successorState, double stepCost) {
+			double forgottenF = 0;
+			if (parent.expanded) {
+				Double value = parent.forgotten != null ? parent.forgotten.get(successorState) : null;
+				if (value == null || value > parent.f)
+					return;
+				forgottenF = value;
+			} else if (isOnPath(successorState, parent)) {
+				return;
+			}
+			Node node = nodeExpander.createNode(successorState, parentNode, action, stepCost);
+			node.setDepth(parentNode.getDepth() + 1);
+			double f;
+			if (node.getDepth() >= maxNodes - 1 && !SearchUtils.isGoalState(problem, node))
+				// the path cannot be extended within the memory bound
+				f = INFINITY;
+			else
+				f = Math.max(Math.max(parent.f, forgottenF), evaluationFunction.f(node));
+			if (nodesInMemory >= maxNodes && !evictWorstLeaf(parent)) {
+				// memory is filled by the current path, so the successor
+				// can never be stored below this parent
+				parent.forget(successorState, INFINITY);
+				return;
+			}
+			if (parent.expanded) {
+				parent.forgotten.remove(successorState);
+				regenerations++;
+			}
+			SMANode child = new SMANode(node, parent, f);
+			if (parent.children.isEmpty())
+				leaves.remove(parent);
+			parent.children.add(child);
+			addNode(child);
+		}
+	}
+
+	private boolean isOnPath(Object state, SMANode node) {
+		for (; node != null; node = node.parent)
+			if (node.node.getState().equals(state))
+				return true;
+		return false;
+	}
+
+	private void addNode(SMANode node) {
+		open.add(node);
+		leaves.add(node);
+		if (++nodesInMemory > maxNodesInMemory)
+			maxNodesInMemory = nodesInMemory;
+	}
+
+	/**
+	 * Removes the shallowest highest-f leaf from memory and remembers its
+	 * f-value in its parent. The node currently being expanded is never
+	 * evicted.
+	 *
+	 * @return false if no leaf can be evicted.
+	 */
+	private boolean evictWorstLeaf(SMANode expanding) {
+		SMANode worst = null;
+		for (Iterator<SMANode> it = leaves.iterator(); it.hasNext();) {
+			SMANode leaf = it.next();
+			if (leaf != expanding && leaf.parent != null) {
+				worst = leaf;
+				break;
+			}
+		}
+		if (worst == null)
+			return false;
+		leaves.remove(worst);
+		open.remove(worst);
+		nodesInMemory--;
+		evictions++;
+
+		SMANode parent = worst.parent;
+		parent.children.remove(worst);
+		parent.forget(worst.node.getState(), worst.f);
+		if (parent != expanding) {
+			// the parent has a forgotten successor, so it has to be
+			// reconsidered for expansion. Its f-value does not change.
+			open.add(parent);
+			if (parent.children.isEmpty())
+				leaves.add(parent);
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the f-value of the node with the minimum of its successors
+	 * (including forgotten ones) and propagates changes to the ancestors.
+	 */
+	private void backUp(SMANode node) {
+		while (node != null) {
+			double newF = INFINITY;
+			if (node.forgotten != null)
+				for (double f : node.forgotten.values())
+					newF = Math.min(newF, f);
+			for (SMANode child : node.children)
+				newF = Math.min(newF, child.f);
+			if (newF == node.f)
+				break;
+			setF(node, newF);
+			node = node.parent;
+		}
+	}
+
+	/** Changes the f-value and keeps the ordered sets consistent. */
+	private void setF(SMANode node, double f) {
+		boolean inOpen = open.remove(node);
+		boolean isLeaf = leaves.remove(node);
+		node.f = f;
+		if (inOpen)
+			open.add(node);
+		if (isLeaf)
+			leaves.add(node);
+	}
+
+	/** Search tree node. Wraps a framework node and adds SMA* bookkeeping. */
+	private class SMANode {
+		final Node node;
+		final SMANode parent;
+		final long id = nextId++;
+		final List<SMANode> children = new ArrayList<SMANode>(4);
+		// backed-up f-value
+		double f;
+		// backed-up f-values of successors which were dropped from memory
+		Map<Object, Double> forgotten;
+		boolean expanded;
+
+		SMANode(Node node, SMANode parent, double f) {
+			this.node = node;
+			this.parent = parent;
+			this.f = f;
+		}
+
+		void forget(Object state, double f) {
+			if (forgotten == null)
+				forgotten = new HashMap<Object, Double>(4);
+			forgotten.put(state, f);
+		}
+	}
+
+	/** Lowest f-value first, deeper nodes first on ties. */
+	private static final Comparator<SMANode> BEST_FIRST = new Comparator<SMANode>() {
+		public int compare(SMANode n1, SMANode n2) {
+			int result = Double.compare(n1.f, n2.f);
+			if (result == 0)
+				result = n2.node.getDepth() - n1.node.getDepth();
+			return result != 0 ? result : Long.compare(n1.id, n2.id);
+		}
+	};
+
+	/** Highest f-value first, shallower nodes first on ties. */
+	private static final Comparator<SMANode> WORST_FIRST = new Comparator<SMANode>() {
+		public int compare(SMANode n1, SMANode n2) {
+			int result = Double.compare(n2.f, n1.f);
+			if (result == 0)
+				result = n1.node.getDepth() - n2.node.getDepth();
+			return result != 0 ? result : Long.compare(n2.id, n1.id);
+		}
+	};
+}
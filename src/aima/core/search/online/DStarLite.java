@@ -0,0 +1,319 @@
+package aima.core.search.online;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import aima.core.search.framework.Metrics;
+import aima.core.util.CancelableThread;
+
+/**
+ * D* Lite (Koenig and Likhachev, 2002), an incremental version of A* for
+ * agents which move through a graph whose edge costs can change. The search
+ * runs backwards from the goal and maintains two estimates per state: g, the
+ * cost to the goal found so far, and rhs, the one-step lookahead value based
+ * on the g values of the successors. States whose values differ are
+ * inconsistent and kept in a priority queue. When edge costs change, only the
+ * affected states become inconsistent, so replanning usually expands a small
+ * part of the states a new search would expand. When the agent moves, the
+ * heuristic keys of the queue are not recomputed; an offset km is increased
+ * instead.<br>
+ * <br>
+ * The graph is accessed through the {@link Graph} interface. Whenever the cost
+ * of an edge changes, {@link #edgeCostChanged(Object, Object)} must be called,
+ * otherwise the computed paths may be wrong. Queue entries are removed lazily.
+ *
+ * @param <S>
+ *            the type of the states, which must implement equals and
+ *            hashCode.
+ */
+public class DStarLite<S> {
+
+	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
+	public static final String METRIC_TOTAL_NODES_EXPANDED = "totalNodesExpanded";
+	public static final String METRIC_PATH_COST = "pathCost";
+
+	/** Graph on which the agent plans. */
+	public interface Graph<S> {
+		List<S> getSuccessors(S state);
+
+		List<S> getPredecessors(S state);
+
+		/** Returns the cost of an edge, or infinity if it cannot be used. */
+		double getCost(S from, S to);
+
+		/**
+		 * Estimates the costs between two states. The estimate must not
+		 * overestimate and must satisfy the triangle inequality.
+		 */
+		double h(S from, S to);
+	}
+
+	private final Graph<S> graph;
+	private final S goal;
+	private S start;
+	private double km;
+	private final HashMap<S, Node<S>> nodes = new HashMap<S, Node<S>>();
+	private final PriorityQueue<Entry<S>> queue = new PriorityQueue<Entry<S>>();
+	private boolean isPlanned;
+	private Metrics metrics = new Metrics();
+	private long totalNodesExpanded;
+
+	public DStarLite(Graph<S> graph, S start, S goal) {
+		this.graph = graph;
+		this.start = start;
+		this.goal = goal;
+		Node<S> goalNode = getNode(goal);
+		goalNode.rhs = 0;
+		insert(goalNode);
+	}
+
+	public S getStart() {
+		return start;
+	}
+
+	public S getGoal() {
+		return goal;
+	}
+
+	/** Informs the planner that the agent has moved to the specified state. */
+	public void moveTo(S state) {
+		if (!state.equals(start)) {
+			km += graph.h(start, state);
+			start = state;
+			isPlanned = false;
+		}
+	}
+
+	/**
+	 * Informs the planner that the cost of an edge has changed. The graph must
+	 * already return the new cost.
+	 */
+	public void edgeCostChanged(S from, S to) {
+		if (!from.equals(goal)) {
+			Node<S> node = getNode(from);
+			node.rhs = computeRhs(from);
+			updateNode(node);
+			isPlanned = false;
+		}
+	}
+
+	/**
+	 * Returns the successor of the current state on a cheapest path to the
+	 * goal, or null if the goal cannot be reached or is reached already.
+	 * Replans if necessary.
+	 */
+	public S getNextState() {
+		plan();
+		if (start.equals(goal))
+			return null;
+		S best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (S succ : graph.getSuccessors(start)) {
+			double cost = graph.getCost(start, succ) + getG(succ);
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = succ;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns a cheapest path from the current state to the goal (including
+	 * both), or null if the goal cannot be reached. Replans if necessary.
+	 */
+	public List<S> getPath() {
+		if (getPathCost() == Double.POSITIVE_INFINITY)
+			return null;
+		List<S> result = new ArrayList<S>();
+		result.add(start);
+		S state = start;
+		while (!state.equals(goal)) {
+			S best = null;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (S succ : graph.getSuccessors(state)) {
+				double cost = graph.getCost(state, succ) + getG(succ);
+				if (cost < bestCost) {
+					bestCost = cost;
+					best = succ;
+				}
+			}
+			if (best == null || result.size() > nodes.size())
+				return null; // only possible if the graph changed unnoticed
+			result.add(best);
+			state = best;
+		}
+		return result;
+	}
+
+	/** Returns the costs of a cheapest path from the current state to the goal. */
+	public double getPathCost() {
+		plan();
+		// the start state itself may stay inconsistent, its rhs value is exact
+		return getNode(start).rhs;
+	}
+
+	/**
+	 * Returns the metrics of the last replanning and the number of nodes
+	 * expanded since creation.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void plan() {
+		if (isPlanned)
+			return;
+		metrics = new Metrics();
+		int nodesExpanded = computeShortestPath();
+		totalNodesExpanded += nodesExpanded;
+		metrics.set(METRIC_NODES_EXPANDED, nodesExpanded);
+		metrics.set(METRIC_TOTAL_NODES_EXPANDED, totalNodesExpanded);
+		metrics.set(METRIC_PATH_COST, getNode(start).rhs);
+		isPlanned = !CancelableThread.currIsCanceled();
+	}
+
+	/** Makes all states consistent which can influence the path of the agent. */
+	private int computeShortestPath() {
+		int nodesExpanded = 0;
+		Node<S> startNode = getNode(start);
+		while (true) {
+			Entry<S> top = queue.peek();
+			while (top != null && top.isOutdated()) {
+				queue.poll();
+				top = queue.peek();
+			}
+			if (top == null)
+				break;
+			double startKey1 = calculateKey1(startNode);
+			double startKey2 = Math.min(startNode.g, startNode.rhs);
+			if (compare(top.key1, top.key2, startKey1, startKey2) >= 0 && startNode.rhs <= startNode.g)
+				break;
+			if ((++nodesExpanded & 0x3FF) == 0 && CancelableThread.currIsCanceled())
+				break;
+			Node<S> u = top.node;
+			double newKey1 = calculateKey1(u);
+			double newKey2 = Math.min(u.g, u.rhs);
+			if (compare(top.key1, top.key2, newKey1, newKey2) < 0) {
+				insert(u); // the agent moved since the key was computed
+			} else if (u.g > u.rhs) {
+				queue.poll();
+				u.isQueued = false;
+				u.g = u.rhs;
+				for (S pred : graph.getPredecessors(u.state)) {
+					if (!pred.equals(goal)) {
+						Node<S> node = getNode(pred);
+						node.rhs = Math.min(node.rhs, graph.getCost(pred, u.state) + u.g);
+						updateNode(node);
+					}
+				}
+			} else {
+				double oldG = u.g;
+				u.g = Double.POSITIVE_INFINITY;
+				if (!u.state.equals(goal))
+					u.rhs = computeRhs(u.state);
+				updateNode(u);
+				for (S pred : graph.getPredecessors(u.state)) {
+					if (!pred.equals(goal)) {
+						Node<S> node = getNode(pred);
+						if (node.rhs == graph.getCost(pred, u.state) + oldG) {
+							node.rhs = computeRhs(pred);
+							updateNode(node);
+						}
+					}
+				}
+			}
+		}
+		return nodesExpanded;
+	}
+
+	private double computeRhs(S state) {
+		double result = Double.POSITIVE_INFINITY;
+		for (S succ : graph.getSuccessors(state))
+			result = Math.min(result, graph.getCost(state, succ) + getG(succ));
+		return result;
+	}
+
+	private void updateNode(Node<S> node) {
+		if (node.g != node.rhs)
+			insert(node);
+		else
+			node.isQueued = false;
+	}
+
+	/** Inserts the node with its current key, older entries become outdated. */
+	private void insert(Node<S> node) {
+		double key1 = calculateKey1(node);
+		double key2 = Math.min(node.g, node.rhs);
+		if (!node.isQueued || key1 != node.key1 || key2 != node.key2) {
+			node.key1 = key1;
+			node.key2 = key2;
+			node.isQueued = true;
+			queue.add(new Entry<S>(node));
+		}
+	}
+
+	private double calculateKey1(Node<S> node) {
+		return Math.min(node.g, node.rhs) + graph.h(start, node.state) + km;
+	}
+
+	private static int compare(double a1, double a2, double b1, double b2) {
+		int result = Double.compare(a1, b1);
+		return result != 0 ? result : Double.compare(a2, b2);
+	}
+
+	private double getG(S state) {
+		Node<S> node = nodes.get(state);
+		return node != null ? node.g : Double.POSITIVE_INFINITY;
+	}
+
+	private Node<S> getNode(S state) {
+		Node<S> result = nodes.get(state);
+		if (result == null) {
+			result = new Node<S>(state);
+			nodes.put(state, result);
+		}
+		return result;
+	}
+
+	private static class Node<S> {
+		final S state;
+		double g = Double.POSITIVE_INFINITY;
+		double rhs = Double.POSITIVE_INFINITY;
+		// key of the valid queue entry, if queued
+		double key1;
+		double key2;
+		boolean isQueued;
+
+		Node(S state) {
+			this.state = state;
+		}
+	}
+
+	private static class Entry<S> implements Comparable<Entry<S>> {
+		final Node<S> node;
+		final double key1;
+		final double key2;
+
+		Entry(Node<S> node) {
+			this.node = node;
+			key1 = node.key1;
+			key2 = node.key2;
+		}
+
+		boolean isOutdated() {
+			return !node.isQueued || key1 != node.key1 || key2 != node.key2;
+		}
+
+		@Override
+		public int compareTo(Entry<S> other) {
+			return compare(key1, key2, other.key1, other.key2);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package aima.core.search.online;
+
+import aima.core.agent.Action;
+import aima.core.agent.Percept;
+import aima.core.agent.impl.AbstractAgent;
+import aima.core.agent.impl.NoOpAction;
+
+/**
+ * Base class for agents which navigate to a goal with {@link DStarLite}. In
+ * each step, the agent determines its state from the percept, reports
+ * observed changes of edge costs to the planner, and moves to the next state
+ * of a cheapest path. Planning results are kept between steps, so after a
+ * change only the affected part of the search is repeated. The agent stops
+ * (returns NoOp and dies) when the goal is reached or cannot be reached
+ * anymore.
+ *
+ * @param <S>
+ *            the type of the states
+ */
+public abstract class DStarLiteAgent<S> extends AbstractAgent {
+
+	private final S goal;
+	private DStarLite<S> planner;
+
+	public DStarLiteAgent(S goal) {
+		this.goal = goal;
+	}
+
+	public S getGoal() {
+		return goal;
+	}
+
+	/** Returns the planner, or null before the first step. */
+	public DStarLite<S> getPlanner() {
+		return planner;
+	}
+
+	@Override
+	public Action execute(Percept p) {
+		S state = getState(p);
+		if (planner == null)
+			planner = new DStarLite<S>(createGraph(), state, goal);
+		else
+			planner.moveTo(state);
+		observeChanges(state, planner);
+		Action result = NoOpAction.NO_OP;
+		if (!state.equals(goal)) {
+			S next = planner.getNextState();
+			if (next != null)
+				result = createAction(state, next);
+		}
+		if (result.isNoOp())
+			setAlive(false);
+		return result;
+	}
+
+	//
+	// PROTECTED METHODS
+	//
+
+	/** Returns the current state of the agent. */
+	protected abstract S getState(Percept p);
+
+	/** Creates the graph which represents the knowledge of the agent. */
+	protected abstract DStarLite.Graph<S> createGraph();
+
+	/**
+	 * Updates the graph with respect to the observations the agent can make in
+	 * the current state and calls
+	 * {@link DStarLite#edgeCostChanged(Object, Object)} for each edge whose
+	 * cost has changed.
+	 */
+	protected abstract void observeChanges(S state, DStarLite<S> planner);
+
+	/** Returns the action which moves the agent from one state to the next. */
+	protected abstract Action createAction(S from, S to);
+}
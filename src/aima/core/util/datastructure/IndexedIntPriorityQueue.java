@@ -0,0 +1,164 @@
+package aima.core.util.datastructure;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority queue for integer elements from <code>0</code> to
+ * <code>capacity-1</code> with <code>double</code> priorities. It is
+ * implemented as 4-ary heap together with a position array, so it supports
+ * decrease-key in O(log n) and needs no objects per element. Typical
+ * elements are vertex indices of graphs. The element with the smallest
+ * priority comes first.
+ */
+public class IndexedIntPriorityQueue {
+
+	private static final int ARITY = 4;
+
+	private int[] heap;
+	private double[] keys;
+	// position of each element in the heap, -1 if not contained
+	private int[] positions;
+	private int size;
+
+	public IndexedIntPriorityQueue(int capacity) {
+		heap = new int[Math.max(capacity, 1)];
+		keys = new double[Math.max(capacity, 1)];
+		positions = new int[Math.max(capacity, 1)];
+		Arrays.fill(positions, -1);
+	}
+
+	/** Returns the number of elements which can be stored. */
+	public int capacity() {
+		return positions.length;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int element) {
+		return positions[element] != -1;
+	}
+
+	/** Returns the priority of a contained element. */
+	public double getPriority(int element) {
+		if (positions[element] == -1)
+			throw new NoSuchElementException("Element " + element + " is not contained.");
+		return keys[element];
+	}
+
+	/**
+	 * Inserts the element with the specified priority, or lowers its priority
+	 * if it is already contained with a higher priority.
+	 *
+	 * @return true if the queue changed.
+	 */
+	public boolean offer(int element, double priority) {
+		int pos = positions[element];
+		if (pos == -1) {
+			keys[element] = priority;
+			pos = size++;
+			heap[pos] = element;
+			positions[element] = pos;
+			siftUp(pos);
+			return true;
+		} else if (priority < keys[element]) {
+			keys[element] = priority;
+			siftUp(pos);
+			return true;
+		}
+		return false;
+	}
+
+	/** Returns the element with the smallest priority without removing it. */
+	public int peek() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return heap[0];
+	}
+
+	/** Returns the smallest priority. */
+	public double peekPriority() {
+		return keys[peek()];
+	}
+
+	/** Removes and returns the element with the smallest priority. */
+	public int poll() {
+		int result = peek();
+		positions[result] = -1;
+		int last = heap[--size];
+		if (size > 0) {
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	/** Removes the element if it is contained. */
+	public boolean remove(int element) {
+		int pos = positions[element];
+		if (pos == -1)
+			return false;
+		positions[element] = -1;
+		int last = heap[--size];
+		if (pos < size) {
+			heap[pos] = last;
+			positions[last] = pos;
+			siftDown(pos);
+			if (heap[pos] == last)
+				siftUp(pos);
+		}
+		return true;
+	}
+
+	/** Removes all elements in O(size). */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			positions[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int pos) {
+		int element = heap[pos];
+		double key = keys[element];
+		while (pos > 0) {
+			int parent = (pos - 1) / ARITY;
+			int p = heap[parent];
+			if (key >= keys[p])
+				break;
+			heap[pos] = p;
+			positions[p] = pos;
+			pos = parent;
+		}
+		heap[pos] = element;
+		positions[element] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int element = heap[pos];
+		double key = keys[element];
+		while (true) {
+			int first = pos * ARITY + 1;
+			if (first >= size)
+				break;
+			int last = Math.min(first + ARITY, size);
+			int best = first;
+			for (int c = first + 1; c < last; c++)
+				if (keys[heap[c]] < keys[heap[best]])
+					best = c;
+			if (keys[heap[best]] >= key)
+				break;
+			heap[pos] = heap[best];
+			positions[heap[pos]] = pos;
+			pos = best;
+		}
+		heap[pos] = element;
+		positions[element] = pos;
+	}
+}
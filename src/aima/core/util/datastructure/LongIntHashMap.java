@@ -0,0 +1,137 @@
+package aima.core.util.datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive <code>long</code> keys to primitive <code>int</code>
+ * values. Entries are stored in two parallel arrays using open addressing with
+ * linear probing, so neither keys nor values are boxed. This is the data
+ * structure of choice for explored sets and lookup tables of packed search
+ * states. Entries cannot be removed, only the whole map can be cleared.
+ */
+public class LongIntHashMap {
+
+	private static final long EMPTY = 0L;
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int threshold;
+	private int mask;
+
+	// the empty marker is a legal key, so its value is kept separately
+	private boolean hasZeroKey;
+	private int zeroValue;
+
+	/** Creates a map with a default initial capacity. */
+	public LongIntHashMap() {
+		this(1024);
+	}
+
+	/** Creates a map which can hold the specified number of entries without resizing. */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/** Returns the number of entries. */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == EMPTY)
+			return hasZeroKey;
+		return keys[indexOf(key)] != EMPTY;
+	}
+
+	/**
+	 * Returns the value associated with the key or the specified default value
+	 * if the map does not contain the key.
+	 */
+	public int get(long key, int defaultValue) {
+		if (key == EMPTY)
+			return hasZeroKey ? zeroValue : defaultValue;
+		int idx = indexOf(key);
+		return keys[idx] != EMPTY ? values[idx] : defaultValue;
+	}
+
+	/**
+	 * Associates the value with the key and returns the value previously
+	 * associated with the key, or the specified default value if there was
+	 * none.
+	 */
+	public int put(long key, int value, int defaultValue) {
+		if (key == EMPTY) {
+			int result = hasZeroKey ? zeroValue : defaultValue;
+			if (!hasZeroKey)
+				size++;
+			hasZeroKey = true;
+			zeroValue = value;
+			return result;
+		}
+		int idx = indexOf(key);
+		if (keys[idx] != EMPTY) {
+			int result = values[idx];
+			values[idx] = value;
+			return result;
+		}
+		keys[idx] = key;
+		values[idx] = value;
+		if (++size > threshold)
+			rehash(keys.length << 1);
+		return defaultValue;
+	}
+
+	/** Removes all entries but keeps the allocated capacity. */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		hasZeroKey = false;
+	}
+
+	/** Returns the index of the slot holding the key or of the free slot where it belongs. */
+	private int indexOf(long key) {
+		int idx = mix(key) & mask;
+		long k;
+		while ((k = keys[idx]) != EMPTY && k != key)
+			idx = (idx + 1) & mask;
+		return idx;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != EMPTY) {
+				int idx = indexOf(key);
+				keys[idx] = key;
+				values[idx] = oldValues[i];
+			}
+		}
+	}
+
+	/** Spreads the bits of the key (finalizer of the MurmurHash3 64 bit hash). */
+	private static int mix(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -15,8 +15,10 @@ import aima.core.search.framework.SearchForActions;
 import aima.core.search.framework.problem.Problem;
 import aima.core.search.framework.qsearch.GraphSearch;
 import aima.core.search.framework.qsearch.TreeSearch;
+import aima.core.search.informed.AStarEvaluationFunction;
 import aima.core.search.informed.AStarSearch;
 import aima.core.search.informed.GreedyBestFirstSearch;
+import aima.core.search.informed.SMAStarSearch;
 import aima.core.search.local.SimulatedAnnealingSearch;
 import aima.core.search.uninformed.BreadthFirstSearch;
 import aima.core.search.uninformed.DepthFirstSearch;
@@ -42,6 +44,7 @@ public class EightPuzzleDemo {
 //		eightPuzzleGreedyBestFirstManhattanDemo();
 //		eightPuzzleAStarDemo();
 //		eightPuzzleAStarManhattanDemo();
+//		eightPuzzleSMAStarManhattanDemo();
 //		eightPuzzleSimulatedAnnealingDemo();
 
 //		eightPuzzleBreadthFirstSearchDemo();
@@ -155,6 +158,22 @@ public class EightPuzzleDemo {
 
 	}
 
+	private static void eightPuzzleSMAStarManhattanDemo() {
+		System.out.println("\nEightPuzzleDemo SMAStar Search (ManhattanHeursitic, 200 nodes)-->");
+		try {
+			Problem problem = new Problem(random1, EightPuzzleFunctionFactory.getActionsFunction(),
+					EightPuzzleFunctionFactory.getResultFunction(), new EightPuzzleGoalTest());
+			SearchForActions search = new SMAStarSearch(new AStarEvaluationFunction(new ManhattanHeuristicFunction()),
+					200);
+			SearchAgent agent = new SearchAgent(problem, search);
+			printActions(agent.getActions());
+			printInstrumentation(agent.getInstrumentation());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+	}
+
 	private static void eightPuzzleBreadthFirstSearchDemo() {
 		System.out.println("\nEightPuzzleDemo Breadth First Search-->");
 		try {
@@ -0,0 +1,439 @@
+package aima.gui.demo.search;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import aima.core.environment.eightpuzzle.BidirectionalEightPuzzleProblem;
+import aima.core.environment.eightpuzzle.EightPuzzleBoard;
+import aima.core.environment.eightpuzzle.ManhattanHeuristicFunction;
+import aima.core.environment.map.BidirectionalMapProblem;
+import aima.core.environment.map.CsrMap;
+import aima.core.environment.map.CsrMapSearch;
+import aima.core.environment.map.ExtendableMap;
+import aima.core.environment.map.Map;
+import aima.core.environment.map.MapFunctionFactory;
+import aima.core.environment.map.SimplifiedRoadMapOfPartOfRomania;
+import aima.core.environment.nqueens.NQueensBoard;
+import aima.core.environment.nqueens.NQueensFunctionFactory;
+import aima.core.environment.nqueens.NQueensGoalTest;
+import aima.core.search.framework.SearchForActions;
+import aima.core.search.framework.problem.Problem;
+import aima.core.search.framework.qsearch.BidirectionalSearch;
+import aima.core.search.framework.qsearch.GraphSearch;
+import aima.core.search.framework.qsearch.QueueSearch;
+import aima.core.search.framework.qsearch.TreeSearch;
+import aima.core.search.informed.AStarEvaluationFunction;
+import aima.core.search.informed.AStarSearch;
+import aima.core.search.informed.RecursiveBestFirstSearch;
+import aima.core.search.uninformed.BreadthFirstSearch;
+import aima.core.search.uninformed.DepthFirstSearch;
+import aima.core.search.uninformed.UniformCostSearch;
+
+/**
+ * Micro benchmark suite for the search framework. Each benchmark solves a
+ * fixed problem (random instances are generated from fixed seeds) with one
+ * search algorithm. After a warmup phase, the benchmark is repeated for a
+ * given time and operations per second, allocated bytes per operation and
+ * nodes expanded per second are reported. Allocation is measured per thread,
+ * if the JVM supports it.<br>
+ * <br>
+ * Usage: <code>SearchBenchmark [-filter text] [-time ms] [-save file]
+ * [-baseline file] [-tolerance fraction]</code><br>
+ * With <code>-save</code>, the measured throughput is stored as properties
+ * file. With <code>-baseline</code>, the results are compared with a stored
+ * file and the program exits with status 1 if some benchmark became slower
+ * than the tolerance allows (default 0.1). This can be used to gate
+ * performance regressions. Unknown arguments are rejected with a usage
+ * message.<br>
+ * <br>
+ * Grid benchmarks use a 300x300 grid (90,000 locations) for the generic
+ * search framework and a 1000x1000 grid (one million locations) for the
+ * index-based searches of {@link CsrMap}.
+ */
+public class SearchBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		String filter = "";
+		long timeMillis = 2000;
+		String saveFile = null;
+		String baselineFile = null;
+		double tolerance = 0.1;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 == args.length)
+				usage("Missing value of " + args[i]);
+			else if (args[i].equals("-filter"))
+				filter = args[i + 1];
+			else if (args[i].equals("-time"))
+				timeMillis = Long.parseLong(args[i + 1]);
+			else if (args[i].equals("-save"))
+				saveFile = args[i + 1];
+			else if (args[i].equals("-baseline"))
+				baselineFile = args[i + 1];
+			else if (args[i].equals("-tolerance"))
+				tolerance = Double.parseDouble(args[i + 1]);
+			else
+				usage("Unknown argument: " + args[i]);
+		}
+		Properties baseline = new Properties();
+		if (baselineFile != null) {
+			InputStream in = new FileInputStream(baselineFile);
+			try {
+				baseline.load(in);
+			} finally {
+				in.close();
+			}
+		}
+
+		Properties results = new Properties();
+		boolean regression = false;
+		System.out.println(String.format(Locale.US, "%-36s %12s %14s %14s %10s", "benchmark", "ops/s", "bytes/op",
+				"nodes/s", "baseline"));
+		for (Benchmark b : createBenchmarks()) {
+			if (!b.name.contains(filter))
+				continue;
+			Result r = b.run(timeMillis / 2, timeMillis);
+			results.setProperty(b.name, Double.toString(r.opsPerSecond));
+			String comparison = "";
+			String base = baseline.getProperty(b.name);
+			if (base != null) {
+				double ratio = r.opsPerSecond / Double.parseDouble(base);
+				comparison = String.format(Locale.US, "%.2fx", ratio);
+				if (ratio < 1 - tolerance) {
+					comparison += " !";
+					regression = true;
+				}
+			}
+			System.out.println(String.format(Locale.US, "%-36s %12.1f %14.0f %14.0f %10s", b.name, r.opsPerSecond,
+					r.bytesPerOp, r.nodesPerSecond, comparison));
+		}
+		if (saveFile != null) {
+			OutputStream out = new FileOutputStream(saveFile);
+			try {
+				results.store(out, "SearchBenchmark ops/s");
+			} finally {
+				out.close();
+			}
+		}
+		if (regression) {
+			System.out.println("Performance regression detected.");
+			System.exit(1);
+		}
+	}
+
+	/** Returns all benchmarks of the suite. */
+	public static List<Benchmark> createBenchmarks() {
+		List<Benchmark> result = new ArrayList<Benchmark>();
+		final EightPuzzleBoard puzzle = createRandomBoard(new Random(17), 30);
+		final Map romania = new SimplifiedRoadMapOfPartOfRomania();
+		final ExtendableMap grid = createGridMap(new Random(42), 300, 300);
+		final String gridGoal = "x299_299";
+		final CsrMap csrGrid = createCsrGridMap(new Random(42), 1000, 1000);
+		final String csrGridGoal = "x999_999";
+
+		result.add(new Benchmark("8-puzzle BFS") {
+			Problem createProblem() {
+				return new BidirectionalEightPuzzleProblem(puzzle);
+			}
+
+			SearchForActions createSearch() {
+				return new BreadthFirstSearch(new GraphSearch());
+			}
+		});
+		result.add(new Benchmark("8-puzzle UCS") {
+			Problem createProblem() {
+				return new BidirectionalEightPuzzleProblem(puzzle);
+			}
+
+			SearchForActions createSearch() {
+				return new UniformCostSearch(new GraphSearch());
+			}
+		});
+		result.add(new Benchmark("8-puzzle A* (Manhattan)") {
+			Problem createProblem() {
+				return new BidirectionalEightPuzzleProblem(puzzle);
+			}
+
+			SearchForActions createSearch() {
+				return new AStarSearch(new GraphSearch(), new ManhattanHeuristicFunction());
+			}
+		});
+		result.add(new Benchmark("8-puzzle RBFS (Manhattan)") {
+			Problem createProblem() {
+				return new BidirectionalEightPuzzleProblem(puzzle);
+			}
+
+			SearchForActions createSearch() {
+				return new RecursiveBestFirstSearch(new AStarEvaluationFunction(new ManhattanHeuristicFunction()));
+			}
+		});
+		result.add(new Benchmark("8-puzzle bidirectional BFS") {
+			Problem createProblem() {
+				return new BidirectionalEightPuzzleProblem(puzzle);
+			}
+
+			SearchForActions createSearch() {
+				return new BreadthFirstSearch(new BidirectionalSearch());
+			}
+		});
+		result.add(new Benchmark("8-queens DFS (incremental)") {
+			Problem createProblem() {
+				return new Problem(new NQueensBoard(8), NQueensFunctionFactory.getIActionsFunction(),
+						NQueensFunctionFactory.getResultFunction(), new NQueensGoalTest());
+			}
+
+			SearchForActions createSearch() {
+				return new DepthFirstSearch(new TreeSearch());
+			}
+		});
+		result.add(new Benchmark("Romania UCS") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(romania, SimplifiedRoadMapOfPartOfRomania.ARAD,
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST);
+			}
+
+			SearchForActions createSearch() {
+				return new UniformCostSearch(new GraphSearch());
+			}
+		});
+		result.add(new Benchmark("Romania A* (SLD)") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(romania, SimplifiedRoadMapOfPartOfRomania.ARAD,
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST);
+			}
+
+			SearchForActions createSearch() {
+				return new AStarSearch(new GraphSearch(), MapFunctionFactory
+						.getSLDHeuristicFunction(SimplifiedRoadMapOfPartOfRomania.BUCHAREST, romania));
+			}
+		});
+		result.add(new Benchmark("Romania bidirectional UCS") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(romania, SimplifiedRoadMapOfPartOfRomania.ARAD,
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST);
+			}
+
+			SearchForActions createSearch() {
+				return new UniformCostSearch(new BidirectionalSearch());
+			}
+		});
+		result.add(new Benchmark("Grid 300x300 UCS") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(grid, "x0_0", gridGoal);
+			}
+
+			SearchForActions createSearch() {
+				return new UniformCostSearch(new GraphSearch());
+			}
+		});
+		result.add(new Benchmark("Grid 300x300 A* (SLD)") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(grid, "x0_0", gridGoal);
+			}
+
+			SearchForActions createSearch() {
+				return new AStarSearch(new GraphSearch(), MapFunctionFactory.getSLDHeuristicFunction(gridGoal, grid));
+			}
+		});
+		result.add(new Benchmark("Grid 300x300 bidirectional UCS") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(grid, "x0_0", gridGoal);
+			}
+
+			SearchForActions createSearch() {
+				return new UniformCostSearch(new BidirectionalSearch());
+			}
+		});
+		result.add(new Benchmark("Grid 1000x1000 CSR UCS") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(csrGrid, "x0_0", csrGridGoal);
+			}
+
+			SearchForActions createSearch() {
+				return new CsrMapSearch(csrGrid, CsrMapSearch.ZERO_HEURISTIC);
+			}
+		});
+		result.add(new Benchmark("Grid 1000x1000 CSR A* (SLD)") {
+			Problem createProblem() {
+				return new BidirectionalMapProblem(csrGrid, "x0_0", csrGridGoal);
+			}
+
+			SearchForActions createSearch() {
+				return new CsrMapSearch(csrGrid);
+			}
+		});
+		return result;
+	}
+
+	/** Creates a board by applying random gap moves to the goal board. */
+	public static EightPuzzleBoard createRandomBoard(Random random, int moves) {
+		EightPuzzleBoard board = new EightPuzzleBoard(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8 });
+		for (int i = 0; i < moves; i++) {
+			switch (random.nextInt(4)) {
+			case 0:
+				board.moveGapUp();
+				break;
+			case 1:
+				board.moveGapDown();
+				break;
+			case 2:
+				board.moveGapLeft();
+				break;
+			default:
+				board.moveGapRight();
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Creates a map whose locations form a grid. Location names have the form
+	 * <code>x&lt;row&gt;_&lt;col&gt;</code>, neighbors are connected in both
+	 * directions, and link lengths are at least the euclidean distance of
+	 * the locations (10) plus some random detour.
+	 */
+	public static ExtendableMap createGridMap(Random random, int rows, int cols) {
+		ExtendableMap map = new ExtendableMap();
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				String loc = "x" + i + "_" + j;
+				map.setPosition(loc, i * 10, j * 10);
+				if (i + 1 < rows)
+					map.addBidirectionalLink(loc, "x" + (i + 1) + "_" + j, 10.0 + random.nextInt(20));
+				if (j + 1 < cols)
+					map.addBidirectionalLink(loc, "x" + i + "_" + (j + 1), 10.0 + random.nextInt(20));
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Creates a grid map like {@link #createGridMap(Random, int, int)}, but
+	 * directly in compact form, which also works for grids too large for an
+	 * {@link ExtendableMap}.
+	 */
+	public static CsrMap createCsrGridMap(Random random, int rows, int cols) {
+		int n = rows * cols;
+		String[] names = new String[n];
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		int maxEdges = 4 * n;
+		int[] tails = new int[maxEdges];
+		int[] heads = new int[maxEdges];
+		double[] weights = new double[maxEdges];
+		int edgeCount = 0;
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				int v = i * cols + j;
+				names[v] = "x" + i + "_" + j;
+				xs[v] = i * 10;
+				ys[v] = j * 10;
+				if (i + 1 < rows)
+					edgeCount = addBidirectionalLink(tails, heads, weights, edgeCount, v, v + cols,
+							10.0 + random.nextInt(20));
+				if (j + 1 < cols)
+					edgeCount = addBidirectionalLink(tails, heads, weights, edgeCount, v, v + 1,
+							10.0 + random.nextInt(20));
+			}
+		}
+		return new CsrMap(names, n, xs, ys, tails, heads, weights, edgeCount);
+	}
+
+	/** Measurement results of one benchmark. */
+	public static class Result {
+		public double opsPerSecond;
+		public double bytesPerOp;
+		public double nodesPerSecond;
+	}
+
+	/**
+	 * A benchmark solves a problem with a search. Both are created freshly for
+	 * each operation.
+	 */
+	public static abstract class Benchmark {
+		private final String name;
+
+		protected Benchmark(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		abstract Problem createProblem();
+
+		abstract SearchForActions createSearch();
+
+		/** Runs one operation and returns the number of expanded nodes. */
+		long runOnce() {
+			SearchForActions search = createSearch();
+			search.findActions(createProblem());
+			String nodes = search.getMetrics().get(QueueSearch.METRIC_NODES_EXPANDED);
+			return nodes != null ? Long.parseLong(nodes) : 0;
+		}
+
+		/** Warms up for the first period, then measures during the second. */
+		public Result run(long warmupMillis, long measureMillis) {
+			long end = System.currentTimeMillis() + warmupMillis;
+			while (System.currentTimeMillis() < end)
+				runOnce();
+
+			long ops = 0;
+			long nodes = 0;
+			long bytesBefore = getAllocatedBytes();
+			long start = System.nanoTime();
+			end = start + measureMillis * 1000000L;
+			long now;
+			do {
+				nodes += runOnce();
+				ops++;
+			} while ((now = System.nanoTime()) < end);
+			long bytesAfter = getAllocatedBytes();
+
+			double seconds = (now - start) / 1e9;
+			Result result = new Result();
+			result.opsPerSecond = ops / seconds;
+			result.nodesPerSecond = nodes / seconds;
+			result.bytesPerOp = bytesBefore >= 0 ? (bytesAfter - bytesBefore) / (double) ops : Double.NaN;
+			return result;
+		}
+	}
+
+	private static int addBidirectionalLink(int[] tails, int[] heads, double[] weights, int edgeCount, int from,
+			int to, double weight) {
+		tails[edgeCount] = from;
+		heads[edgeCount] = to;
+		weights[edgeCount++] = weight;
+		tails[edgeCount] = to;
+		heads[edgeCount] = from;
+		weights[edgeCount++] = weight;
+		return edgeCount;
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: SearchBenchmark [-filter text] [-time ms] [-save file] [-baseline file]"
+				+ " [-tolerance fraction]");
+		System.exit(2);
+	}
+
+	/** Returns the bytes allocated by the current thread, or -1 if unknown. */
+	private static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
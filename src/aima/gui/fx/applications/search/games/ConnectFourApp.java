@@ -63,7 +63,8 @@ public class ConnectFourApp extends IntegrableApplication {
 		clearBtn.setOnAction(ev -> model.initGame());
 
 		strategyCombo = new ComboBox<String>();
-		strategyCombo.getItems().addAll("Iterative Deepening Alpha-Beta", "Advanced Alpha-Beta");
+		strategyCombo.getItems().addAll("Iterative Deepening Alpha-Beta", "Advanced Alpha-Beta",
+				"Monte Carlo Tree Search");
 		strategyCombo.getSelectionModel().select(0);
 		timeCombo = new ComboBox<String>();
 		timeCombo.getItems().addAll("2sec", "4sec", "6sec", "8sec");
@@ -5,7 +5,9 @@ import java.util.Observable;
 import aima.core.environment.connectfour.ConnectFourAIPlayer;
 import aima.core.environment.connectfour.ConnectFourGame;
 import aima.core.environment.connectfour.ConnectFourState;
+import aima.core.search.adversarial.AdversarialSearch;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
+import aima.core.search.adversarial.MonteCarloTreeSearch;
 import aima.core.search.framework.Metrics;
 
 /**
@@ -20,6 +22,11 @@ public class ConnectFourModel extends Observable {
 	private ConnectFourState currState;
 	Metrics searchMetrics;
 	boolean enableLog;
+	// reused during a game, so that searches can profit from their tables
+	// and trees
+	private AdversarialSearch<ConnectFourState, Integer> search;
+	private int searchTime;
+	private int searchStrategy;
 	
 
 	public ConnectFourModel() {
@@ -63,6 +70,7 @@ public class ConnectFourModel extends Observable {
 	public void initGame() {
 		currState = game.getInitialState();
 		searchMetrics = null;
+		search = null;
 		setChanged();
 		notifyObservers();
 	}
@@ -80,17 +88,35 @@ public class ConnectFourModel extends Observable {
 
 	/** Uses adversarial search for selecting the next action. */
 	public void proposeMove(int time, int strategy) {
-		IterativeDeepeningAlphaBetaSearch<ConnectFourState, Integer, String> search;
-		if (strategy == 0)
-			search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0, 1.0, time);
-		else
-			search = new ConnectFourAIPlayer(game, time);
-		if (enableLog)
-			search.setLogEnabled(true);
+		if (search == null || time != searchTime || strategy != searchStrategy)
+			search = createSearch(time, strategy);
+		if (search instanceof IterativeDeepeningAlphaBetaSearch)
+			((IterativeDeepeningAlphaBetaSearch<?, ?, ?>) search).setLogEnabled(enableLog);
 		Integer action = search.makeDecision(currState);
 		searchMetrics = search.getMetrics();
 		currState = game.getResult(currState, action);
 		setChanged();
 		notifyObservers();
 	}
+
+	/**
+	 * Creates the search for the specified settings. It is reused until a new
+	 * game starts or the settings change.
+	 */
+	private AdversarialSearch<ConnectFourState, Integer> createSearch(int time, int strategy) {
+		AdversarialSearch<ConnectFourState, Integer> search;
+		if (strategy == 0) {
+			search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0, 1.0, time);
+		} else if (strategy == 1) {
+			search = new ConnectFourAIPlayer(game, time);
+		} else {
+			MonteCarloTreeSearch<ConnectFourState, Integer, String> mcts = MonteCarloTreeSearch.createFor(game, 0.0,
+					1.0, time);
+			mcts.setParallelism(MonteCarloTreeSearch.Parallelism.ROOT, Runtime.getRuntime().availableProcessors());
+			search = mcts;
+		}
+		searchTime = time;
+		searchStrategy = strategy;
+		return search;
+	}
 }
@@ -6,6 +6,7 @@ import aima.core.search.adversarial.AdversarialSearch;
 import aima.core.search.adversarial.AlphaBetaSearch;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
 import aima.core.search.adversarial.MinimaxSearch;
+import aima.core.search.adversarial.MonteCarloTreeSearch;
 import aima.core.search.framework.Metrics;
 import aima.core.util.datastructure.XYLocation;
 import aima.gui.fx.framework.IntegrableApplication;
@@ -37,6 +38,10 @@ public class TicTacToeApp extends IntegrableApplication {
     TicTacToeGame game;
     TicTacToeState currState;
     Metrics searchMetrics;
+    // reused during a game, so that searches can profit from their tables
+    // and trees
+    private AdversarialSearch<TicTacToeState, XYLocation> search;
+    private int searchStrategy;
 
 
     @Override
@@ -56,7 +61,8 @@ public class TicTacToeApp extends IntegrableApplication {
         strategyCombo = new ComboBox<String>();
         strategyCombo.getItems().addAll("Minimax",
                 "Alpha-Beta", "Iterative Deepening Alpha-Beta",
-                "Iterative Deepening Alpha-Beta (log)");
+                "Iterative Deepening Alpha-Beta (log)",
+                "Monte Carlo Tree Search");
         strategyCombo.getSelectionModel().select(0);
 
         proposeBtn = new Button("Propose Move");
@@ -106,6 +112,7 @@ public class TicTacToeApp extends IntegrableApplication {
         game = new TicTacToeGame();
         currState = game.getInitialState();
         searchMetrics = null;
+        search = null;
         update();
     }
 
@@ -142,9 +149,21 @@ public class TicTacToeApp extends IntegrableApplication {
 
     /** Uses adversarial search for selecting the next action. */
     private void proposeMove() {
-        AdversarialSearch<TicTacToeState, XYLocation> search;
-        XYLocation action;
-        switch (strategyCombo.getSelectionModel().getSelectedIndex()) {
+        XYLocation action = getSearch().makeDecision(currState);
+        searchMetrics = search.getMetrics();
+        currState = game.getResult(currState, action);
+        update();
+    }
+
+    /**
+     * Returns the search for the selected strategy. It is created when a game
+     * starts or the strategy changes.
+     */
+    private AdversarialSearch<TicTacToeState, XYLocation> getSearch() {
+        int strategy = strategyCombo.getSelectionModel().getSelectedIndex();
+        if (search != null && strategy == searchStrategy)
+            return search;
+        switch (strategy) {
             case 0:
                 search = MinimaxSearch.createFor(game);
                 break;
@@ -155,16 +174,17 @@ public class TicTacToeApp extends IntegrableApplication {
                 search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0,
                         1.0, 1000);
                 break;
+            case 4:
+                search = MonteCarloTreeSearch.createFor(game, 0.0, 1.0, 1);
+                break;
             default:
                 search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0,
                         1.0, 1000);
                 ((IterativeDeepeningAlphaBetaSearch<?, ?, ?>) search)
                         .setLogEnabled(true);
         }
-        action = search.makeDecision(currState);
-        searchMetrics = search.getMetrics();
-        currState = game.getResult(currState, action);
-        update();
+        searchStrategy = strategy;
+        return search;
     }
 
     /** Handles user moves. */
@@ -23,6 +23,7 @@ import aima.core.search.adversarial.AdversarialSearch;
 import aima.core.search.adversarial.AlphaBetaSearch;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
 import aima.core.search.adversarial.MinimaxSearch;
+import aima.core.search.adversarial.MonteCarloTreeSearch;
 import aima.core.search.framework.Metrics;
 
 /**
@@ -64,6 +65,11 @@ public class ConnectFourApp {
 		ConnectFourGame game;
 		ConnectFourState currState;
 		Metrics searchMetrics;
+		// reused during a game, so that searches can profit from their
+		// tables and trees
+		AdversarialSearch<ConnectFourState, Integer> search;
+		int searchStrategy;
+		int searchTime;
 
 		/** Standard constructor. */
 		ConnectFourPanel() {
@@ -78,7 +84,7 @@ public class ConnectFourApp {
 					"Minimax (not recommended)",
 					"Alpha-Beta (not recommended)",
 					"Iterative Deepening Alpha-Beta", "Advanced Alpha-Beta",
-					"Advanced Alpha-Beta (log)" });
+					"Advanced Alpha-Beta (log)", "Monte Carlo Tree Search" });
 			strategyCombo.setSelectedIndex(3);
 			toolBar.add(strategyCombo);
 			timeCombo = new JComboBox<String>(new String[] { "5sec", "10sec", "15sec",
@@ -120,6 +126,7 @@ public class ConnectFourApp {
 			searchMetrics = null;
 			if (e == null || e.getSource() == clearButton) {
 				currState = game.getInitialState();
+				search = null;
 			} else if (!game.isTerminal(currState)) {
 				if (e.getSource() == proposeButton) {
 					proposeMove();
@@ -135,10 +142,21 @@ public class ConnectFourApp {
 
 		/** Uses adversarial search for selecting the next action. */
 		private void proposeMove() {
-			Integer action;
+			Integer action = getSearch().makeDecision(currState);
+			searchMetrics = search.getMetrics();
+			currState = game.getResult(currState, action);
+		}
+
+		/**
+		 * Returns the search for the selected strategy and time. It is created
+		 * when a game starts or the settings change.
+		 */
+		private AdversarialSearch<ConnectFourState, Integer> getSearch() {
+			int strategy = strategyCombo.getSelectedIndex();
 			int time = (timeCombo.getSelectedIndex() + 1) * 5;
-			AdversarialSearch<ConnectFourState, Integer> search;
-			switch (strategyCombo.getSelectedIndex()) {
+			if (search != null && strategy == searchStrategy && time == searchTime)
+				return search;
+			switch (strategy) {
 			case 0:
 				search = MinimaxSearch.createFor(game);
 				break;
@@ -152,13 +170,20 @@ public class ConnectFourApp {
 			case 3:
 				search = new ConnectFourAIPlayer(game, time);
 				break;
+			case 5:
+				MonteCarloTreeSearch<ConnectFourState, Integer, String> mcts = MonteCarloTreeSearch
+						.createFor(game, 0.0, 1.0, time);
+				mcts.setParallelism(MonteCarloTreeSearch.Parallelism.ROOT,
+						Runtime.getRuntime().availableProcessors());
+				search = mcts;
+				break;
 			default:
 				search = new ConnectFourAIPlayer(game, time);
 				((ConnectFourAIPlayer) search).setLogEnabled(true);
 			}
-			action = search.makeDecision(currState);
-			searchMetrics = search.getMetrics();
-			currState = game.getResult(currState, action);
+			searchStrategy = strategy;
+			searchTime = time;
+			return search;
 		}
 
 		/** Updates the status bar. */
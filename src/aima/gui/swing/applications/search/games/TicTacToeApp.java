@@ -22,6 +22,7 @@ import aima.core.search.adversarial.AdversarialSearch;
 import aima.core.search.adversarial.AlphaBetaSearch;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
 import aima.core.search.adversarial.MinimaxSearch;
+import aima.core.search.adversarial.MonteCarloTreeSearch;
 import aima.core.search.framework.Metrics;
 import aima.core.util.datastructure.XYLocation;
 
@@ -62,6 +63,10 @@ public class TicTacToeApp {
 		TicTacToeGame game;
 		TicTacToeState currState;
 		Metrics searchMetrics;
+		// reused during a game, so that searches can profit from their
+		// tables and trees
+		AdversarialSearch<TicTacToeState, XYLocation> search;
+		int searchStrategy;
 
 		/** Standard constructor. */
 		TicTacToePanel() {
@@ -70,7 +75,8 @@ public class TicTacToeApp {
 			tbar.setFloatable(false);
 			strategyCombo = new JComboBox<String>(new String[] { "Minimax",
 					"Alpha-Beta", "Iterative Deepening Alpha-Beta",
-					"Iterative Deepening Alpha-Beta (log)" });
+					"Iterative Deepening Alpha-Beta (log)",
+					"Monte Carlo Tree Search" });
 			strategyCombo.setSelectedIndex(1);
 			tbar.add(strategyCombo);
 			tbar.add(Box.createHorizontalGlue());
@@ -107,9 +113,10 @@ public class TicTacToeApp {
 		@Override
 		public void actionPerformed(ActionEvent ae) {
 			searchMetrics = null;
-			if (ae == null || ae.getSource() == clearButton)
+			if (ae == null || ae.getSource() == clearButton) {
 				currState = game.getInitialState();
-			else if (!game.isTerminal(currState)) {
+				search = null;
+			} else if (!game.isTerminal(currState)) {
 				if (ae.getSource() == proposeButton)
 					proposeMove();
 				else {
@@ -130,9 +137,20 @@ public class TicTacToeApp {
 
 		/** Uses adversarial search for selecting the next action. */
 		private void proposeMove() {
-			AdversarialSearch<TicTacToeState, XYLocation> search;
-			XYLocation action;
-			switch (strategyCombo.getSelectedIndex()) {
+			XYLocation action = getSearch().makeDecision(currState);
+			searchMetrics = search.getMetrics();
+			currState = game.getResult(currState, action);
+		}
+
+		/**
+		 * Returns the search for the selected strategy. It is created when a
+		 * game starts or the strategy changes.
+		 */
+		private AdversarialSearch<TicTacToeState, XYLocation> getSearch() {
+			int strategy = strategyCombo.getSelectedIndex();
+			if (search != null && strategy == searchStrategy)
+				return search;
+			switch (strategy) {
 			case 0:
 				search = MinimaxSearch.createFor(game);
 				break;
@@ -143,15 +161,17 @@ public class TicTacToeApp {
 				search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0,
 						1.0, 1000);
 				break;
+			case 4:
+				search = MonteCarloTreeSearch.createFor(game, 0.0, 1.0, 1);
+				break;
 			default:
 				search = IterativeDeepeningAlphaBetaSearch.createFor(game, 0.0,
 						1.0, 1000);
 				((IterativeDeepeningAlphaBetaSearch<?, ?, ?>) search)
 						.setLogEnabled(true);
 			}
-			action = search.makeDecision(currState);
-			searchMetrics = search.getMetrics();
-			currState = game.getResult(currState, action);
+			searchStrategy = strategy;
+			return search;
 		}
 
 		/** Updates the status bar. */
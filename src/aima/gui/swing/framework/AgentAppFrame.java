@@ -1,7 +1,6 @@
 package aima.gui.swing.framework;
 
 import Presentation.EightPuzzleApp;
-import Presentation.EightPuzzleTree;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -313,10 +312,9 @@ public class AgentAppFrame extends JFrame {
 						messageLogger.clear();
 						statusLabel.setText("");
 						controller.clear();
-						EightPuzzleTree.clearTree();
+						EightPuzzleApp.mainView.setSearchTree(null);
 						EightPuzzleApp.mainView.setClearView(true);
 						EightPuzzleApp.mainView.removeAll();
-						EightPuzzleTree.numberOfExpandedNodes = 0;
 					} else if (source == prepareButton) {
 						err = "when preparing simulation ";
 						controller.prepare(null);
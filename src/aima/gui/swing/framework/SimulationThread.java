@@ -3,7 +3,6 @@ package aima.gui.swing.framework;
 import java.awt.EventQueue;
 
 import Presentation.EightPuzzleApp;
-import Presentation.EightPuzzleTree;
 import aima.core.util.CancelableThread;
 
 /**
@@ -53,7 +52,7 @@ public class SimulationThread extends CancelableThread {
 			else if (isDrawingTree) {
 				EightPuzzleApp.mainView.drawTree2();
 				isDrawingTree = false;
-				EightPuzzleTree.clearTree();
+				EightPuzzleApp.mainView.setSearchTree(null);
 			} else {
 				if (!stepMode)
 					controller.run(frame.getMessageLogger());